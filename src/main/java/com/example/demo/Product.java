@@ -6,12 +6,26 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_product_name_id", columnList = "name, id"),
+        @Index(name = "idx_product_price_id", columnList = "price, id"),
+        @Index(name = "idx_product_quantity_id", columnList = "quantity, id"),
+        @Index(name = "idx_product_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_product_updated_at_id", columnList = "updated_at, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Product {
+    /**
+     * Ids are handed out by a pooled sequence, so Hibernate can batch inserts and a bulk
+     * import needs only one sequence call per {@value #ID_ALLOCATION_SIZE} rows.
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     
     @NotBlank(message = "Product name is required")
@@ -23,6 +37,14 @@ public class Product {
 
     @DecimalMin(value = "0.01", message = "Price must be greater than 0")
     private double price;
+
+    /**
+     * Optimistic lock. Bumped on every write, including atomic stock adjustments, and
+     * exposed to clients as the product's {@code ETag}.
+     */
+    @Version
+    @Column(nullable = false)
+    private Long version;
     
     @Column(name = "created_at")
     private LocalDateTime createdAt;
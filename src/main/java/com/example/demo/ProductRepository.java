@@ -1,13 +1,144 @@
 package com.example.demo;
 
+import com.example.demo.catalog.ProductName;
+import com.example.demo.catalog.ProductRow;
+import com.example.demo.catalog.ProductSummary;
+import com.example.demo.catalog.ProductVersion;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.AvailableHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.AvailableHints.HINT_READ_ONLY;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
+
+    /**
+     * Trigram match on PostgreSQL: substring or similarity above {@code pg_trgm.similarity_threshold}.
+     * Both operators are served by the {@code idx_product_name_trgm} GIN index.
+     */
+    String TRIGRAM_MATCH = "FROM product p WHERE lower(p.name) LIKE :pattern ESCAPE '\\' OR lower(p.name) % :query";
+    String TRIGRAM_RANKING = " ORDER BY similarity(lower(p.name), :query) DESC, p.id";
+
+    String SELECT_SUMMARY = "select new com.example.demo.catalog.ProductSummary("
+            + "p.id, p.name, p.quantity, p.price, p.version, p.createdAt, p.updatedAt) from Product p";
+    String NAME_LIKE = " where lower(p.name) like :pattern escape '\\'";
+
     List<Product> findByNameContainingIgnoreCase(String name);
-    Page<Product> findByNameContainingIgnoreCase(String name, Pageable pageable);
+
+    /**
+     * Page of the catalog as {@link ProductSummary} projections, for read-only listings.
+     */
+    @Query(value = SELECT_SUMMARY, countQuery = "select count(p) from Product p")
+    Page<ProductSummary> findSummaries(Pageable pageable);
+
+    /**
+     * Projections of the products whose lower-cased name matches the {@code LIKE} pattern,
+     * which must escape its wildcards with a backslash.
+     */
+    @Query(value = SELECT_SUMMARY + NAME_LIKE, countQuery = "select count(p) from Product p" + NAME_LIKE)
+    Page<ProductSummary> findSummariesByNameLike(@Param("pattern") String pattern, Pageable pageable);
+
+    @Query(SELECT_SUMMARY + " where p.id in :ids")
+    List<ProductSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Page of the catalog without the {@code COUNT(*)} query a {@link Page} needs;
+     * one extra row is fetched to tell whether a next page exists.
+     */
+    Slice<Product> findSliceBy(Pageable pageable);
+
+    Slice<Product> findSliceByNameContainingIgnoreCase(String name, Pageable pageable);
+
+    @Query(value = "SELECT p.* " + TRIGRAM_MATCH + TRIGRAM_RANKING, nativeQuery = true)
+    List<Product> searchByTrigram(@Param("query") String query, @Param("pattern") String pattern);
+
+    @Query(value = "SELECT p.* " + TRIGRAM_MATCH + TRIGRAM_RANKING, nativeQuery = true)
+    Slice<Product> searchSliceByTrigram(@Param("query") String query, @Param("pattern") String pattern, Pageable pageable);
+
+    @Query(value = "SELECT p.* " + TRIGRAM_MATCH, nativeQuery = true)
+    Slice<Product> searchSliceByTrigramUnranked(@Param("query") String query, @Param("pattern") String pattern, Pageable pageable);
+
+    /**
+     * Keyset (seek) pagination: the position is turned into a {@code WHERE (key, id) > (?, ?)}
+     * predicate, so every page is an index range scan regardless of depth.
+     */
+    Window<Product> findBy(ScrollPosition position, Sort sort, Limit limit);
+
+    /**
+     * Forward-only cursor over the whole catalog. The JDBC driver fetches
+     * {@value ProductService#CURSOR_FETCH_SIZE} rows per round trip, so callers
+     * must consume it inside a transaction and close it when done.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + ProductService.CURSOR_FETCH_SIZE),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    Stream<Product> streamAllByOrderByIdAsc();
+
+    /**
+     * Ids and names of the whole catalog, streamed without hydrating entities.
+     * Used to build the in-memory name index.
+     */
+    @Query("select new com.example.demo.catalog.ProductName(p.id, p.name) from Product p order by p.id")
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + ProductService.CURSOR_FETCH_SIZE),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    Stream<ProductName> streamNamesByOrderByIdAsc();
+
+    /**
+     * The exported columns of the whole catalog, streamed without hydrating entities.
+     */
+    @Query("select new com.example.demo.catalog.ProductRow(p.id, p.name, p.quantity, p.price) from Product p order by p.id")
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + ProductService.CURSOR_FETCH_SIZE),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    Stream<ProductRow> streamRowsByOrderByIdAsc();
+
+    /**
+     * Add {@code delta} to the stock of one product in a single conditional statement,
+     * so concurrent adjustments cannot overwrite each other. Nothing is changed if the
+     * quantity would become negative.
+     *
+     * @return 1 if the product was adjusted, 0 if it does not exist or has too little stock
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Product p set p.quantity = p.quantity + :delta, p.version = p.version + 1, p.updatedAt = :now "
+            + "where p.id = :id and p.quantity + :delta >= 0")
+    int adjustQuantity(@Param("id") Long id, @Param("delta") int delta, @Param("now") LocalDateTime now);
+
+    @Query("select p.quantity from Product p where p.id = :id")
+    Optional<Integer> findQuantityById(@Param("id") Long id);
+
+    @Query("select new com.example.demo.catalog.ProductVersion(p.version, p.updatedAt) from Product p where p.id = :id")
+    Optional<ProductVersion> findVersionById(@Param("id") Long id);
+
+    /**
+     * Products changed after the position {@code (time, id)} in {@code (updatedAt, id)}
+     * order, up to {@code until}. Served by the {@code (updated_at, id)} index.
+     */
+    @Query("select p from Product p where p.updatedAt <= :until "
+            + "and (p.updatedAt > :time or (p.updatedAt = :time and p.id > :id)) "
+            + "order by p.updatedAt, p.id")
+    List<Product> findChangedAfter(@Param("time") LocalDateTime time, @Param("id") Long id,
+                                   @Param("until") LocalDateTime until, Pageable pageable);
 }
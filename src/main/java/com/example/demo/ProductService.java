@@ -1,72 +1,390 @@
 package com.example.demo;
 
+import com.example.demo.catalog.CatalogVersion;
+import com.example.demo.catalog.ProductCache;
+import com.example.demo.catalog.ProductChangeFeed;
+import com.example.demo.catalog.ProductCountEstimator;
+import com.example.demo.catalog.ProductEvent;
+import com.example.demo.catalog.ProductEventBus;
+import com.example.demo.catalog.ProductNameIndex;
+import com.example.demo.catalog.ProductNameSearch;
+import com.example.demo.catalog.ProductSummary;
+import com.example.demo.catalog.ProductVersion;
+import com.example.demo.inventory.InsufficientStockException;
+import com.example.demo.inventory.InventoryLedger;
+import com.example.demo.inventory.MovementReason;
+import com.example.demo.inventory.StockReservationService;
 import com.lowagie.text.*;
 import com.lowagie.text.pdf.PdfPTable;
 import com.lowagie.text.pdf.PdfWriter;
+import jakarta.persistence.EntityManager;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.mapping.PropertyPath;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
 public class ProductService {
 
+    /**
+     * Rows fetched per JDBC round trip when walking the catalog with a cursor.
+     */
+    public static final int CURSOR_FETCH_SIZE = 500;
+
+    /**
+     * Number of table rows buffered before they are flushed to the PDF stream.
+     */
+    static final int INVOICE_CHUNK_SIZE = 500;
+
     private final ProductRepository repository;
+    private final EntityManager entityManager;
+    private final CatalogVersion catalogVersion;
+    private final ProductCountEstimator countEstimator;
+    private final ProductNameIndex nameIndex;
+    private final ProductNameSearch nameSearch;
+    private final StockReservationService reservations;
+    private final InventoryLedger ledger;
+    private final ProductCache productCache;
+    private final ProductChangeFeed changeFeed;
+    private final ProductEventBus eventBus;
 
-    public ProductService(ProductRepository repository) {
+    public ProductService(ProductRepository repository, EntityManager entityManager,
+                          CatalogVersion catalogVersion, ProductCountEstimator countEstimator,
+                          ProductNameIndex nameIndex, ProductNameSearch nameSearch,
+                          StockReservationService reservations, InventoryLedger ledger,
+                          ProductCache productCache, ProductChangeFeed changeFeed,
+                          ProductEventBus eventBus) {
         this.repository = repository;
+        this.entityManager = entityManager;
+        this.catalogVersion = catalogVersion;
+        this.countEstimator = countEstimator;
+        this.nameIndex = nameIndex;
+        this.nameSearch = nameSearch;
+        this.reservations = reservations;
+        this.ledger = ledger;
+        this.productCache = productCache;
+        this.changeFeed = changeFeed;
+        this.eventBus = eventBus;
     }
 
     public List<Product> getAllProducts() {
         return repository.findAll();
     }
 
-    public Page<Product> getAllProducts(Pageable pageable) {
-        return repository.findAll(pageable);
+    /**
+     * Page of the catalog as {@link ProductSummary} projections. The read-only transaction
+     * runs with flush mode {@code MANUAL}, and nothing is loaded into the persistence
+     * context, so a page costs one query and no dirty checking.
+     *
+     * @throws org.springframework.data.mapping.PropertyReferenceException if the sort
+     *         names a property products do not have
+     */
+    @Transactional(readOnly = true)
+    public Page<ProductSummary> getAllProducts(Pageable pageable) {
+        checkSortable(pageable);
+        return repository.findSummaries(pageable);
+    }
+
+    public Slice<Product> getProductSlice(Pageable pageable) {
+        return repository.findSliceBy(pageable);
     }
 
+    /**
+     * Approximate number of products; see {@link ProductCountEstimator}.
+     */
+    public long estimateProductCount() {
+        return countEstimator.estimate();
+    }
+
+    public Window<Product> getProducts(ScrollPosition position, Sort sort, int size) {
+        return repository.findBy(position, sort, Limit.of(size));
+    }
+
+    /**
+     * Served from the {@link ProductCache}; the product returned is a detached copy.
+     */
     public Optional<Product> getProductById(Long id) {
-        return repository.findById(id);
+        return productCache.get(id, repository::findById);
+    }
+
+    /**
+     * Version and modification time of a product, taken from the {@link ProductCache} if it
+     * holds the product and otherwise read without loading the entity.
+     */
+    public Optional<ProductVersion> getProductVersion(Long id) {
+        return productCache.peek(id)
+                .map(product -> new ProductVersion(product.getVersion(), product.getUpdatedAt()))
+                .or(() -> repository.findVersionById(id));
     }
 
+    /**
+     * Weak entity tag shared by all listings, taken before the listing is read; see
+     * {@link CatalogVersion#etag()}.
+     */
+    public String getCatalogTag() {
+        return catalogVersion.etag();
+    }
+
+    /**
+     * The catalog tag to send with a listing read under {@code etag}, or null if it may be
+     * older than the tag; see {@link CatalogVersion#responseTag(String)}.
+     */
+    public String getResponseCatalogTag(String etag) {
+        return catalogVersion.responseTag(etag);
+    }
+
+    /**
+     * Case-insensitive substring search. Served from the {@link ProductNameIndex} when it
+     * can answer the query, otherwise by the database through {@link ProductNameSearch}.
+     */
     public List<Product> searchByName(String name) {
-        return repository.findByNameContainingIgnoreCase(name);
+        if (nameIndex.canServe(name)) {
+            long[] ids = nameIndex.search(name);
+            return loadInIdOrder(ids, 0, ids.length);
+        }
+        return nameSearch.search(name);
+    }
+
+    /**
+     * Paged variant of {@link #searchByName(String)}, answered with read-only
+     * {@link ProductSummary} projections like {@link #getAllProducts(Pageable)}. Index
+     * results are ordered by id, so requests with an explicit sort always go to the database.
+     */
+    @Transactional(readOnly = true)
+    public Page<ProductSummary> searchByName(String name, Pageable pageable) {
+        checkSortable(pageable);
+        if (canUseIndex(name, pageable)) {
+            long[] ids = nameIndex.search(name);
+            return new PageImpl<>(loadSummaryPage(ids, pageable), pageable, ids.length);
+        }
+        return nameSearch.search(name, pageable);
+    }
+
+    public Slice<Product> searchByNameSlice(String name, Pageable pageable) {
+        if (canUseIndex(name, pageable)) {
+            long[] ids = nameIndex.search(name);
+            boolean hasNext = pageable.getOffset() + pageable.getPageSize() < ids.length;
+            return new SliceImpl<>(loadPage(ids, pageable), pageable, hasNext);
+        }
+        return nameSearch.searchSlice(name, pageable);
+    }
+
+    private boolean canUseIndex(String name, Pageable pageable) {
+        return pageable.isPaged() && pageable.getSort().isUnsorted() && nameIndex.canServe(name);
+    }
+
+    private List<Product> loadPage(long[] ids, Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), ids.length);
+        int to = Math.min(from + pageable.getPageSize(), ids.length);
+        return loadInIdOrder(ids, from, to);
     }
 
-    public Page<Product> searchByName(String name, Pageable pageable) {
-        return repository.findByNameContainingIgnoreCase(name, pageable);
+    private List<ProductSummary> loadSummaryPage(long[] ids, Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), ids.length);
+        int to = Math.min(from + pageable.getPageSize(), ids.length);
+        if (from == to) {
+            return List.of();
+        }
+        List<Long> page = Arrays.stream(ids, from, to).boxed().toList();
+        return repository.findSummariesByIdIn(page).stream()
+                .sorted(Comparator.comparing(ProductSummary::id))
+                .toList();
+    }
+
+    /**
+     * Projection queries are not checked against the entity, so an unknown sort property
+     * is rejected here the way the derived queries reject it.
+     */
+    private static void checkSortable(Pageable pageable) {
+        pageable.getSort().forEach(order -> PropertyPath.from(order.getProperty(), Product.class));
     }
 
+    private List<Product> loadInIdOrder(long[] ids, int from, int to) {
+        if (from == to) {
+            return List.of();
+        }
+        List<Long> page = Arrays.stream(ids, from, to).boxed().toList();
+        return repository.findAllById(page).stream()
+                .sorted(Comparator.comparing(Product::getId))
+                .toList();
+    }
+
+    @Transactional
     public Product saveProduct(Product product) {
-        return repository.save(product);
+        boolean isNew = product.getId() == null;
+        int previousQuantity = isNew ? 0 : repository.findQuantityById(product.getId()).orElse(0);
+        if (!isNew && product.getQuantity() < previousQuantity) {
+            reservations.withdraw(product.getId(), previousQuantity - product.getQuantity());
+        }
+        Product saved = repository.save(product);
+        catalogVersion.bump();
+        nameIndex.put(saved);
+        productCache.evict(saved.getId());
+        if (isNew) {
+            countEstimator.recordCreated(1);
+            ledger.record(saved.getId(), saved.getQuantity(), MovementReason.INITIAL_STOCK);
+        } else {
+            ledger.record(saved.getId(), saved.getQuantity() - previousQuantity, MovementReason.CORRECTION);
+            reservations.refresh(saved.getId());
+        }
+        eventBus.publish(ProductEvent.upserted(saved.getId(), saved.getQuantity()));
+        return saved;
     }
 
     public Optional<Product> updateProduct(Long id, Product updatedProduct) {
+        return updateProduct(id, updatedProduct, null);
+    }
+
+    /**
+     * Full update of name, quantity and price. If {@code expectedVersion} is given, the
+     * update only applies while the product still has that version. Lowering the quantity
+     * cannot take stock that is reserved or confirmed, see {@link StockReservationService#withdraw}.
+     *
+     * @throws ObjectOptimisticLockingFailureException if the version does not match, or
+     *         another write to the product commits first
+     * @throws InsufficientStockException if the quantity is lowered by more than is available to promise
+     */
+    @Transactional
+    public Optional<Product> updateProduct(Long id, Product updatedProduct, Long expectedVersion) {
         return repository.findById(id).map(existing -> {
+            if (expectedVersion != null && !expectedVersion.equals(existing.getVersion())) {
+                throw new ObjectOptimisticLockingFailureException(Product.class, id);
+            }
+            int previousQuantity = existing.getQuantity();
+            if (updatedProduct.getQuantity() < previousQuantity) {
+                reservations.withdraw(id, previousQuantity - updatedProduct.getQuantity());
+            }
             existing.setName(updatedProduct.getName());
             existing.setQuantity(updatedProduct.getQuantity());
             existing.setPrice(updatedProduct.getPrice());
-            return repository.save(existing);
+            Product saved = repository.save(existing);
+            ledger.record(id, saved.getQuantity() - previousQuantity, MovementReason.CORRECTION);
+            catalogVersion.bump();
+            nameIndex.put(saved);
+            productCache.evict(id);
+            reservations.refresh(id);
+            eventBus.publish(ProductEvent.upserted(id, saved.getQuantity()));
+            return saved;
         });
     }
 
+    /**
+     * Change the stock of a product by {@code delta} with one conditional {@code UPDATE},
+     * without reading the product first. Concurrent adjustments are applied exactly once
+     * each, and the quantity never drops below zero. A negative delta is first withdrawn
+     * from what is available to promise, so stock that is reserved or confirmed is not
+     * picked. The change is recorded in the {@link InventoryLedger} as a receipt or a pick,
+     * depending on its sign.
+     *
+     * @return false if there is no such product
+     * @throws InsufficientStockException if less than {@code -delta} is in stock and not
+     *         reserved or confirmed
+     */
+    public boolean adjustStock(Long id, int delta) {
+        return adjustStock(id, delta, null);
+    }
+
+    /**
+     * Like {@link #adjustStock(Long, int)}, recorded under {@code reason} if one is given.
+     */
+    @Transactional
+    public boolean adjustStock(Long id, int delta, MovementReason reason) {
+        if (delta < 0 && !reservations.withdraw(id, -delta)) {
+            return false;
+        }
+        if (repository.adjustQuantity(id, delta, LocalDateTime.now()) == 0) {
+            if (!repository.existsById(id)) {
+                return false;
+            }
+            throw new InsufficientStockException(id, delta);
+        }
+        if (reason == null) {
+            reason = delta > 0 ? MovementReason.RECEIPT : MovementReason.PICK;
+        }
+        ledger.record(id, delta, reason);
+        catalogVersion.bump();
+        productCache.evict(id);
+        reservations.refresh(id);
+        eventBus.publish(ProductEvent.stock(id, delta));
+        return true;
+    }
+
+    @Transactional
     public boolean deleteProduct(Long id) {
-        if (repository.existsById(id)) {
+        Optional<Integer> quantity = repository.findQuantityById(id);
+        if (quantity.isPresent()) {
             repository.deleteById(id);
+            ledger.record(id, -quantity.get(), MovementReason.DELETION);
+            changeFeed.recordDeletion(id);
+            catalogVersion.bump();
+            productCache.evict(id);
+            nameIndex.remove(id);
+            countEstimator.recordDeleted(1);
+            reservations.forget(id);
+            eventBus.publish(ProductEvent.deleted(id));
             return true;
         }
         return false;
     }
 
+    /**
+     * Renders the delivery note into memory. Prefer {@link #writeInvoicePdf(OutputStream)}
+     * for large catalogs, which never holds the whole document on the heap.
+     *
+     * @return the finished PDF
+     */
+    @Transactional(readOnly = true)
     public byte[] generateInvoicePdf() {
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeInvoicePdf(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Renders the delivery note straight into {@code out}. Products are read through a
+     * forward-only cursor and written in chunks of {@value #INVOICE_CHUNK_SIZE} rows; each
+     * entity is detached once its row is written, so heap use does not grow with the catalog.
+     *
+     * @param out the stream to write the PDF to; it is not closed
+     */
+    @Transactional(readOnly = true)
+    public void writeInvoicePdf(OutputStream out) {
+        writeInvoicePdf(out, LocalDateTime.now());
+    }
+
+    /**
+     * Renders the delivery note as issued at {@code issuedAt}. The document number is
+     * derived from that time, so renders with the same time carry the same number.
+     *
+     * @param out the stream to write the PDF to; it is not closed
+     */
+    @Transactional(readOnly = true)
+    public void writeInvoicePdf(OutputStream out, LocalDateTime issuedAt) {
+        try (Stream<Product> products = repository.streamAllByOrderByIdAsc()) {
             Document document = new Document();
-            PdfWriter.getInstance(document, out);
+            PdfWriter writer = PdfWriter.getInstance(document, out);
+            writer.setCloseStream(false);
             document.open();
 
             Font fontTitle = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 20);
@@ -75,8 +393,8 @@ public class ProductService {
             document.add(title);
 
             Font fontSubtitle = FontFactory.getFont(FontFactory.HELVETICA, 12);
-            String invoiceNumber = "LS-" + System.currentTimeMillis();
-            String date = LocalDateTime.now().format(DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm"));
+            String invoiceNumber = "LS-" + issuedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            String date = issuedAt.format(DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm"));
 
             document.add(new Paragraph(" "));
             document.add(new Paragraph("Dokument Nr.: " + invoiceNumber, fontSubtitle));
@@ -90,6 +408,8 @@ public class ProductService {
             PdfPTable table = new PdfPTable(4);
             table.setWidthPercentage(100);
             table.setWidths(new float[]{1, 3, 2, 2});
+            table.setHeaderRows(1);
+            table.setComplete(false);
 
             Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11);
             addTableHeader(table, "Nr.", headerFont);
@@ -97,18 +417,25 @@ public class ProductService {
             addTableHeader(table, "Menge (Stk.)", headerFont);
             addTableHeader(table, "Preis (€)", headerFont);
 
-            List<Product> products = repository.findAll();
             int counter = 1;
             double totalValue = 0;
 
-            for (Product p : products) {
-                table.addCell(String.valueOf(counter++));
+            Iterator<Product> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                Product p = iterator.next();
+                table.addCell(String.valueOf(counter));
                 table.addCell(p.getName());
                 table.addCell(String.valueOf(p.getQuantity()));
                 table.addCell(String.format("%.2f", p.getPrice()));
                 totalValue += p.getPrice() * p.getQuantity();
+                entityManager.detach(p);
+
+                if (counter++ % INVOICE_CHUNK_SIZE == 0) {
+                    document.add(table);
+                }
             }
 
+            table.setComplete(true);
             document.add(table);
             document.add(new Paragraph(" "));
 
@@ -126,7 +453,6 @@ public class ProductService {
             document.add(new Paragraph("Mini-ERP System | Altenburg", footerFont));
 
             document.close();
-            return out.toByteArray();
         } catch (Exception e) {
             throw new RuntimeException("Fehler bei der PDF-Generierung: " + e.getMessage(), e);
         }
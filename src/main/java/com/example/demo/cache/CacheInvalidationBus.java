@@ -0,0 +1,26 @@
+package com.example.demo.cache;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Keeps node-local caches coherent across application instances. A node that changes
+ * cached data evicts its own entries and publishes the keys; every other node's
+ * subscribers for the same region then evict them too.
+ * <p>
+ * An empty key collection stands for the whole region, both when publishing and when
+ * delivered to a subscriber.
+ */
+public interface CacheInvalidationBus {
+
+    /**
+     * Tell the other nodes that entries of {@code region} changed. Inside a transaction
+     * the message is sent only if and when the transaction commits.
+     */
+    void publish(String region, Collection<Long> ids);
+
+    /**
+     * Receive the invalidations other nodes publish for {@code region}.
+     */
+    void subscribe(String region, Consumer<Collection<Long>> subscriber);
+}
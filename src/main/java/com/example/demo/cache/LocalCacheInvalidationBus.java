@@ -0,0 +1,23 @@
+package com.example.demo.cache;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Single-node setup: every cache already evicts its own entries, so there is nobody to tell.
+ */
+@Component
+@Profile("!postgres")
+public class LocalCacheInvalidationBus implements CacheInvalidationBus {
+
+    @Override
+    public void publish(String region, Collection<Long> ids) {
+    }
+
+    @Override
+    public void subscribe(String region, Consumer<Collection<Long>> subscriber) {
+    }
+}
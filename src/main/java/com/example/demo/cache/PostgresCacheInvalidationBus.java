@@ -0,0 +1,257 @@
+package com.example.demo.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Cache coherence over PostgreSQL {@code LISTEN}/{@code NOTIFY}, so several nodes sharing
+ * one database need no message broker. Invalidations published inside a transaction are
+ * collected per region and sent just before commit; PostgreSQL delivers a notification
+ * only once its transaction commits, so a rolled-back write never evicts anything elsewhere.
+ * <p>
+ * Each node keeps one connection out of the pool that listens on {@value #CHANNEL} and
+ * hands incoming keys to the region's subscribers. Messages from the node itself are
+ * skipped. If the listening connection is lost, notifications sent in the meantime are
+ * gone, so after reconnecting every subscribed region is cleared.
+ */
+@Slf4j
+@Component
+@Profile("postgres")
+public class PostgresCacheInvalidationBus implements CacheInvalidationBus {
+
+    static final String CHANNEL = "cache_invalidation";
+
+    /**
+     * Payloads are kept below PostgreSQL's 8000 byte limit; larger key sets are split.
+     */
+    static final int MAX_PAYLOAD_LENGTH = 7900;
+
+    static final String ALL = "*";
+
+    private static final String NOTIFY = "SELECT pg_notify(?, ?)";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final int pollMillis;
+    private final long reconnectDelayMillis;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, List<Consumer<Collection<Long>>>> subscribers = new ConcurrentHashMap<>();
+    private final Counter published;
+    private final Counter received;
+    private volatile boolean running;
+    private Thread listener;
+
+    public PostgresCacheInvalidationBus(
+            DataSource dataSource,
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${cache.invalidation.poll-millis:500}") int pollMillis,
+            @Value("${cache.invalidation.reconnect-delay-millis:5000}") long reconnectDelayMillis
+    ) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.pollMillis = pollMillis;
+        this.reconnectDelayMillis = reconnectDelayMillis;
+        this.published = Counter.builder("cache.invalidations").tag("direction", "published").register(meterRegistry);
+        this.received = Counter.builder("cache.invalidations").tag("direction", "received").register(meterRegistry);
+    }
+
+    @Override
+    public void publish(String region, Collection<Long> ids) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            send(Map.of(region, Set.copyOf(ids)));
+            return;
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new Pending();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.add(region, ids);
+    }
+
+    @Override
+    public void subscribe(String region, Consumer<Collection<Long>> subscriber) {
+        subscribers.computeIfAbsent(region, key -> new CopyOnWriteArrayList<>()).add(subscriber);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        listener = Thread.ofPlatform().name("cache-invalidation-listener").daemon().start(this::listen);
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    /**
+     * Deliver one notification payload to the subscribers of its region.
+     */
+    void handle(String payload) {
+        String[] parts = payload.split("\\|", 3);
+        if (parts.length != 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        List<Consumer<Collection<Long>>> regionSubscribers = subscribers.get(parts[1]);
+        if (regionSubscribers == null) {
+            return;
+        }
+        received.increment();
+        List<Long> ids = new ArrayList<>();
+        if (!ALL.equals(parts[2])) {
+            for (String id : parts[2].split(",")) {
+                ids.add(Long.parseLong(id));
+            }
+        }
+        regionSubscribers.forEach(subscriber -> subscriber.accept(ids));
+    }
+
+    /**
+     * The payloads announcing {@code invalidations}, each below {@value #MAX_PAYLOAD_LENGTH} characters.
+     */
+    static List<String> payloads(String nodeId, Map<String, Set<Long>> invalidations) {
+        List<String> payloads = new ArrayList<>();
+        invalidations.forEach((region, ids) -> {
+            String prefix = nodeId + "|" + region + "|";
+            if (ids.isEmpty()) {
+                payloads.add(prefix + ALL);
+                return;
+            }
+            StringBuilder payload = new StringBuilder(prefix);
+            for (Long id : ids) {
+                String key = id.toString();
+                if (payload.length() > prefix.length()
+                        && payload.length() + 1 + key.length() > MAX_PAYLOAD_LENGTH) {
+                    payloads.add(payload.toString());
+                    payload.setLength(prefix.length());
+                }
+                if (payload.length() > prefix.length()) {
+                    payload.append(',');
+                }
+                payload.append(key);
+            }
+            payloads.add(payload.toString());
+        });
+        return payloads;
+    }
+
+    String nodeId() {
+        return nodeId;
+    }
+
+    private void send(Map<String, Set<Long>> invalidations) {
+        for (String payload : payloads(nodeId, invalidations)) {
+            jdbcTemplate.queryForList(NOTIFY, CHANNEL, payload);
+            published.increment();
+        }
+    }
+
+    private void listen() {
+        boolean reconnect = false;
+        while (running) {
+            try (Connection con = dataSource.getConnection()) {
+                con.setAutoCommit(true);
+                try (Statement statement = con.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                if (reconnect) {
+                    log.info("Cache invalidation listener reconnected, clearing subscribed caches");
+                    subscribers.values().forEach(list -> list.forEach(subscriber -> subscriber.accept(List.of())));
+                }
+                PGConnection pg = con.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications = pg.getNotifications(pollMillis);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        try {
+                            handle(notification.getParameter());
+                        } catch (RuntimeException e) {
+                            log.warn("Ignoring malformed cache invalidation '{}': {}",
+                                    notification.getParameter(), e.getMessage());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Cache invalidation listener lost its connection: {}", e.getMessage());
+                reconnect = true;
+                try {
+                    Thread.sleep(reconnectDelayMillis);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidations of one transaction, coalesced per region.
+     */
+    private final class Pending implements TransactionSynchronization {
+
+        private final Map<String, Set<Long>> regions = new LinkedHashMap<>();
+        private final Set<String> wholeRegions = new LinkedHashSet<>();
+
+        void add(String region, Collection<Long> ids) {
+            if (ids.isEmpty()) {
+                wholeRegions.add(region);
+                regions.remove(region);
+            } else if (!wholeRegions.contains(region)) {
+                regions.computeIfAbsent(region, key -> new LinkedHashSet<>()).addAll(ids);
+            }
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            Map<String, Set<Long>> invalidations = new LinkedHashMap<>(regions);
+            wholeRegions.forEach(region -> invalidations.put(region, Set.of()));
+            send(invalidations);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(PostgresCacheInvalidationBus.this);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.demo.catalog;
+
+import com.example.demo.cache.CacheInvalidationBus;
+import com.example.demo.datasource.PrimaryReads;
+import com.example.demo.datasource.ReplicaRoutingDataSource;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic counter that changes whenever any product is created, updated or deleted.
+ * Derived artefacts such as rendered documents and listing ETags are keyed by it, so a
+ * version mismatch is enough to know they are stale.
+ * <p>
+ * A bump inside a transaction is repeated after commit, so nothing rendered from the
+ * uncommitted state can keep the final version. Product changes published by other
+ * nodes on the {@link CacheInvalidationBus} bump it as well.
+ * <p>
+ * With {@code products.catalog-version.shared} the listing ETag is taken from the
+ * {@code catalog_version} row instead of this node's counter, so every node behind a load
+ * balancer hands out the same tag for the same catalog. Committed changes are counted on
+ * the row once per {@code products.catalog-version.shared-interval}, however many there
+ * were, in a transaction of its own that also announces the new value on the bus; the value
+ * read for a tag is kept until this node's counter moves again. Until the row has counted a
+ * change, a client may still be told its listing from before it is current.
+ * <p>
+ * Listings may be read from a replica, which can miss a change for up to
+ * {@link PrimaryReads#replicaWindow()}. A listing read from one that soon after the last
+ * change is sent without a tag, see {@link #responseTag(String)}, so no client keeps a
+ * listing from before the change under the new tag.
+ */
+@Slf4j
+@Component
+public class CatalogVersion {
+
+    /**
+     * Bus region announcing that the shared counter was incremented.
+     */
+    static final String REGION = "catalog-version";
+
+    private static final String INCREMENT = "UPDATE catalog_version SET version = version + 1 WHERE id = 1";
+    private static final String SELECT = "SELECT version FROM catalog_version WHERE id = 1";
+
+    /**
+     * Distinguishes this node's counter from the counters of other nodes and earlier runs.
+     */
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final AtomicLong version = new AtomicLong();
+    private final CacheInvalidationBus invalidationBus;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate primary;
+    private final PrimaryReads primaryReads;
+    private final long replicaWindowNanos;
+    private final boolean shared;
+    private final AtomicBoolean sharedPending = new AtomicBoolean();
+    private volatile SharedTag sharedTag;
+    private volatile long changedAt = System.nanoTime();
+
+    public CatalogVersion(
+            CacheInvalidationBus invalidationBus,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            PrimaryReads primaryReads,
+            @Value("${products.catalog-version.shared:false}") boolean shared
+    ) {
+        this.invalidationBus = invalidationBus;
+        this.jdbcTemplate = jdbcTemplate;
+        this.primary = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.primary.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.primaryReads = primaryReads;
+        this.replicaWindowNanos = primaryReads.replicaWindow().toNanos();
+        this.shared = shared;
+        invalidationBus.subscribe(ProductCache.NAME, ids -> advance());
+        invalidationBus.subscribe(REGION, ids -> advance());
+    }
+
+    public long current() {
+        return version.get();
+    }
+
+    /**
+     * Weak entity tag for responses derived from the whole catalog, such as listings. Take
+     * it before reading the response, and send it with {@link #responseTag(String)}.
+     */
+    public String etag() {
+        long local = version.get();
+        if (!shared) {
+            return "W/\"" + epoch + "-" + local + "\"";
+        }
+        SharedTag tag = sharedTag;
+        if (tag == null || tag.local() != local) {
+            Long value = primaryReads.read(() -> jdbcTemplate.queryForObject(SELECT, Long.class));
+            tag = new SharedTag(local, "W/\"" + value + "\"");
+            sharedTag = tag;
+        }
+        return tag.etag();
+    }
+
+    /**
+     * The tag to send with a response read under {@code etag}: null if the current request
+     * read from a replica, which may still miss a change made less than
+     * {@link PrimaryReads#replicaWindow()} ago.
+     */
+    public String responseTag(String etag) {
+        if (replicaWindowNanos > 0 && System.nanoTime() - changedAt < replicaWindowNanos
+                && ReplicaRoutingDataSource.readFromReplica()) {
+            return null;
+        }
+        return etag;
+    }
+
+    /**
+     * Record a catalog change.
+     *
+     * @return the new version
+     */
+    public long bump() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    sharedPending.set(shared);
+                    advance();
+                }
+            });
+            return advance();
+        }
+        sharedPending.set(shared);
+        return advance();
+    }
+
+    /**
+     * Count the changes committed since the last call on the shared row, if there were any.
+     */
+    @Scheduled(fixedDelayString = "${products.catalog-version.shared-interval:1000}")
+    @PreDestroy
+    public void publishShared() {
+        if (!sharedPending.getAndSet(false)) {
+            return;
+        }
+        if (incrementShared()) {
+            advance();
+        } else {
+            sharedPending.set(true);
+        }
+    }
+
+    private long advance() {
+        changedAt = System.nanoTime();
+        return version.incrementAndGet();
+    }
+
+    private boolean incrementShared() {
+        try {
+            primary.executeWithoutResult(status -> {
+                jdbcTemplate.update(INCREMENT);
+                invalidationBus.publish(REGION, List.of());
+            });
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Could not increment the shared catalog version, listing ETags may be stale: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private record SharedTag(long local, String etag) {
+    }
+}
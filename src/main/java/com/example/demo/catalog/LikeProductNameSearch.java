@@ -0,0 +1,40 @@
+package com.example.demo.catalog;
+
+import com.example.demo.Product;
+import com.example.demo.ProductRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Portable search through the derived {@code LIKE '%name%'} repository queries.
+ */
+@Component
+@Profile("!postgres")
+public class LikeProductNameSearch implements ProductNameSearch {
+
+    private final ProductRepository repository;
+
+    public LikeProductNameSearch(ProductRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public List<Product> search(String name) {
+        return repository.findByNameContainingIgnoreCase(name);
+    }
+
+    @Override
+    public Page<ProductSummary> search(String name, Pageable pageable) {
+        return repository.findSummariesByNameLike(ProductNameSearch.likePattern(name), pageable);
+    }
+
+    @Override
+    public Slice<Product> searchSlice(String name, Pageable pageable) {
+        return repository.findSliceByNameContainingIgnoreCase(name, pageable);
+    }
+}
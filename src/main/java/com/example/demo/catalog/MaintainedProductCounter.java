@@ -0,0 +1,46 @@
+package com.example.demo.catalog;
+
+import com.example.demo.ProductRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts products once and then keeps the figure current from the write path.
+ * Writes made by other nodes or directly in the database are not seen, so the
+ * value is reported as approximate.
+ */
+@Component
+@Profile("!postgres")
+public class MaintainedProductCounter implements ProductCountEstimator {
+
+    private static final long UNINITIALIZED = -1;
+
+    private final ProductRepository repository;
+    private final AtomicLong count = new AtomicLong(UNINITIALIZED);
+
+    public MaintainedProductCounter(ProductRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public long estimate() {
+        long current = count.get();
+        if (current == UNINITIALIZED) {
+            count.compareAndSet(UNINITIALIZED, repository.count());
+            current = count.get();
+        }
+        return current;
+    }
+
+    @Override
+    public void recordCreated(long created) {
+        count.updateAndGet(c -> c == UNINITIALIZED ? c : c + created);
+    }
+
+    @Override
+    public void recordDeleted(long deleted) {
+        count.updateAndGet(c -> c == UNINITIALIZED ? c : Math.max(0, c - deleted));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.demo.catalog;
+
+import com.example.demo.ProductRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads the planner's row estimate for the product table from {@code pg_class}.
+ * It is maintained by autovacuum/ANALYZE, shared by all nodes and costs a single
+ * catalog lookup. Falls back to an exact count while the table has never been analysed.
+ */
+@Component
+@Profile("postgres")
+public class PostgresProductCountEstimator implements ProductCountEstimator {
+
+    private static final String RELTUPLES_QUERY =
+            "SELECT reltuples::bigint FROM pg_class WHERE oid = 'product'::regclass";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductRepository repository;
+
+    public PostgresProductCountEstimator(JdbcTemplate jdbcTemplate, ProductRepository repository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.repository = repository;
+    }
+
+    @Override
+    public long estimate() {
+        Long estimate = jdbcTemplate.queryForObject(RELTUPLES_QUERY, Long.class);
+        if (estimate == null || estimate < 0) {
+            return repository.count();
+        }
+        return estimate;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.demo.catalog;
+
+import com.example.demo.Product;
+import com.example.demo.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Search backed by the {@code pg_trgm} GIN index on {@code lower(name)}. A product
+ * matches if its name contains the query or is at least
+ * {@code products.search.similarity-threshold} similar to it, so small typos still
+ * find results; matches are ranked by similarity. Requests with an explicit sort
+ * keep that order instead of the ranking.
+ * <p>
+ * Paged searches for listings are read with plain JDBC into {@link ProductSummary}
+ * projections, as Spring Data cannot map native query results to records.
+ */
+@Component
+@Profile("postgres")
+public class PostgresTrigramProductNameSearch implements ProductNameSearch {
+
+    private static final String SET_THRESHOLD =
+            "SELECT set_config('pg_trgm.similarity_threshold', ?, true)";
+
+    private static final String SELECT_SUMMARY =
+            "SELECT p.id, p.name, p.quantity, p.price, p.version, p.created_at, p.updated_at ";
+
+    /**
+     * Columns behind the sortable {@link ProductSummary} properties.
+     */
+    private static final Map<String, String> SORT_COLUMNS = Map.of(
+            "id", "p.id",
+            "name", "p.name",
+            "quantity", "p.quantity",
+            "price", "p.price",
+            "version", "p.version",
+            "createdAt", "p.created_at",
+            "updatedAt", "p.updated_at"
+    );
+
+    private static final RowMapper<ProductSummary> SUMMARY = (rs, rowNum) -> new ProductSummary(
+            rs.getLong("id"),
+            rs.getString("name"),
+            rs.getInt("quantity"),
+            rs.getDouble("price"),
+            rs.getLong("version"),
+            rs.getObject("created_at", LocalDateTime.class),
+            rs.getObject("updated_at", LocalDateTime.class));
+
+    private final ProductRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final double similarityThreshold;
+
+    public PostgresTrigramProductNameSearch(
+            ProductRepository repository,
+            JdbcTemplate jdbcTemplate,
+            NamedParameterJdbcTemplate namedJdbcTemplate,
+            @Value("${products.search.similarity-threshold:0.3}") double similarityThreshold
+    ) {
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.similarityThreshold = similarityThreshold;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Product> search(String name) {
+        applyThreshold();
+        String query = normalize(name);
+        return repository.searchByTrigram(query, ProductNameSearch.likePattern(query));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<ProductSummary> search(String name, Pageable pageable) {
+        applyThreshold();
+        String query = normalize(name);
+        MapSqlParameterSource parameters = new MapSqlParameterSource()
+                .addValue("query", query)
+                .addValue("pattern", ProductNameSearch.likePattern(query));
+        String sql = SELECT_SUMMARY + ProductRepository.TRIGRAM_MATCH + (pageable.getSort().isSorted()
+                ? orderBy(pageable.getSort())
+                : ProductRepository.TRIGRAM_RANKING);
+        if (pageable.isPaged()) {
+            sql += " LIMIT :limit OFFSET :offset";
+            parameters.addValue("limit", pageable.getPageSize()).addValue("offset", pageable.getOffset());
+        }
+        List<ProductSummary> content = namedJdbcTemplate.query(sql, parameters, SUMMARY);
+        return PageableExecutionUtils.getPage(content, pageable, () -> namedJdbcTemplate.queryForObject(
+                "SELECT count(*) " + ProductRepository.TRIGRAM_MATCH, parameters, Long.class));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Product> searchSlice(String name, Pageable pageable) {
+        applyThreshold();
+        String query = normalize(name);
+        if (pageable.getSort().isSorted()) {
+            return repository.searchSliceByTrigramUnranked(query, ProductNameSearch.likePattern(query), pageable);
+        }
+        return repository.searchSliceByTrigram(query, ProductNameSearch.likePattern(query), pageable);
+    }
+
+    /**
+     * Scope the similarity threshold used by the {@code %} operator to the current transaction.
+     */
+    private void applyThreshold() {
+        jdbcTemplate.queryForObject(SET_THRESHOLD, String.class, String.valueOf(similarityThreshold));
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * {@code ORDER BY} for an explicit sort, with the id as tie-breaker.
+     *
+     * @throws IllegalArgumentException if a property cannot be sorted by
+     */
+    static String orderBy(Sort sort) {
+        List<String> orders = new ArrayList<>();
+        boolean byId = false;
+        for (Sort.Order order : sort) {
+            String column = SORT_COLUMNS.get(order.getProperty());
+            if (column == null) {
+                throw new IllegalArgumentException("Products cannot be sorted by " + order.getProperty());
+            }
+            orders.add(column + (order.isAscending() ? " ASC" : " DESC"));
+            byId |= order.getProperty().equals("id");
+        }
+        if (!byId) {
+            orders.add("p.id");
+        }
+        return " ORDER BY " + String.join(", ", orders);
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.demo.catalog;
+
+import com.example.demo.Product;
+import com.example.demo.cache.CacheInvalidationBus;
+import com.example.demo.datasource.PrimaryReads;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache for single-product lookups. Eviction is Caffeine's
+ * W-TinyLFU, so a burst of one-off lookups does not push out the products that are
+ * read all the time; entries also expire after {@code products.cache.ttl} as a backstop
+ * for writes that bypass the application.
+ * <p>
+ * The cache holds detached copies and hands out copies, so callers may modify what they
+ * get. Writers evict the products they change; inside a transaction the entry is evicted
+ * again after commit, so a concurrent read cannot put the pre-commit row back.
+ * Evictions are also published on the {@link CacheInvalidationBus}, so other nodes drop
+ * their copies of the same products.
+ * Hit, miss and eviction counts are published as the {@code cache.*} meters with
+ * {@code cache=products}.
+ */
+@Component
+public class ProductCache {
+
+    static final String NAME = "products";
+
+    private final Cache<Long, Product> cache;
+    private final CacheInvalidationBus invalidationBus;
+    private final PrimaryReads primaryReads;
+
+    public ProductCache(
+            MeterRegistry meterRegistry,
+            CacheInvalidationBus invalidationBus,
+            PrimaryReads primaryReads,
+            @Value("${products.cache.maximum-size:10000}") long maximumSize,
+            @Value("${products.cache.ttl:10m}") Duration ttl
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NAME);
+        this.invalidationBus = invalidationBus;
+        this.primaryReads = primaryReads;
+        invalidationBus.subscribe(NAME, ids -> {
+            if (ids.isEmpty()) {
+                cache.invalidateAll();
+            } else {
+                cache.invalidateAll(ids);
+            }
+        });
+    }
+
+    /**
+     * The product with {@code id}, loaded by {@code loader} on a miss. The loader reads from
+     * the primary, see {@link PrimaryReads}, so a lagging replica cannot put back a row
+     * that was just evicted. Products that do not exist are not cached.
+     */
+    public Optional<Product> get(Long id, Function<Long, Optional<Product>> loader) {
+        Product cached = cache.get(id, key -> primaryReads.read(() -> loader.apply(key))
+                .map(ProductCache::copy)
+                .orElse(null));
+        return Optional.ofNullable(cached).map(ProductCache::copy);
+    }
+
+    /**
+     * The cached product with {@code id}, without loading it on a miss.
+     */
+    public Optional<Product> peek(Long id) {
+        return Optional.ofNullable(cache.getIfPresent(id)).map(ProductCache::copy);
+    }
+
+    public void evict(Long id) {
+        cache.invalidate(id);
+        afterCommit(() -> cache.invalidate(id));
+        invalidationBus.publish(NAME, List.of(id));
+    }
+
+    public void evictAll(Collection<Long> ids) {
+        cache.invalidateAll(ids);
+        afterCommit(() -> cache.invalidateAll(ids));
+        invalidationBus.publish(NAME, ids);
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+        afterCommit(cache::invalidateAll);
+        invalidationBus.publish(NAME, List.of());
+    }
+
+    long size() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    private static Product copy(Product product) {
+        Product copy = new Product();
+        copy.setId(product.getId());
+        copy.setName(product.getName());
+        copy.setQuantity(product.getQuantity());
+        copy.setPrice(product.getPrice());
+        copy.setVersion(product.getVersion());
+        copy.setCreatedAt(product.getCreatedAt());
+        copy.setUpdatedAt(product.getUpdatedAt());
+        return copy;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        }
+    }
+}
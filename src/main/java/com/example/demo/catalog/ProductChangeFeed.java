@@ -0,0 +1,213 @@
+package com.example.demo.catalog;
+
+import com.example.demo.Product;
+import com.example.demo.ProductRepository;
+import com.example.demo.datasource.PrimaryReads;
+import com.example.demo.dto.ProductChangesResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Delta sync for clients that keep a copy of the catalog. Changes are read in
+ * {@code (updated_at, id)} order from the product table and, for deletions, from
+ * {@link ProductTombstone}s; the change token is the position of the last change handed
+ * out, so a client only ever downloads what changed since its previous call.
+ * <p>
+ * A row's timestamp is taken before its transaction commits. Changes younger than
+ * {@code products.sync.settle} are therefore held back, so that a transaction that was
+ * still open cannot commit a change behind a token that has already moved past it.
+ * Writers whose transaction may stay open longer than that, such as bulk imports, take a
+ * {@link #hold()} first; the feed then stays behind the oldest hold until it is released.
+ * Holds older than {@code products.sync.max-hold} are left by crashed writers and ignored.
+ * <p>
+ * Pages are read through {@link PrimaryReads}: a replica that is behind would report
+ * nothing for the last changes while the token still moves past them, and the client
+ * would never see them.
+ */
+@Slf4j
+@Service
+public class ProductChangeFeed {
+
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final ProductRepository productRepository;
+    private final ProductTombstoneRepository tombstoneRepository;
+    private final ProductSyncHoldRepository holdRepository;
+    private final PrimaryReads primaryReads;
+    private final Duration settle;
+    private final Duration tombstoneRetention;
+    private final Duration maxHold;
+
+    public ProductChangeFeed(
+            ProductRepository productRepository,
+            ProductTombstoneRepository tombstoneRepository,
+            ProductSyncHoldRepository holdRepository,
+            PrimaryReads primaryReads,
+            @Value("${products.sync.settle:5s}") Duration settle,
+            @Value("${products.sync.tombstone-retention:30d}") Duration tombstoneRetention,
+            @Value("${products.sync.max-hold:1h}") Duration maxHold
+    ) {
+        this.productRepository = productRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.holdRepository = holdRepository;
+        this.primaryReads = primaryReads;
+        this.settle = settle;
+        this.tombstoneRetention = tombstoneRetention;
+        this.maxHold = maxHold;
+    }
+
+    /**
+     * Up to {@code size} changes after {@code since}, or from the beginning if it is {@code null}.
+     *
+     * @throws IllegalArgumentException if {@code since} is not a token issued by this feed
+     */
+    public ProductChangesResponse changesSince(String since, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must not be less than one");
+        }
+        return primaryReads.read(() -> page(since, size));
+    }
+
+    private ProductChangesResponse page(String since, int size) {
+        Position from = since == null || since.isBlank() ? new Position(BEGINNING, 0L) : Position.decode(since);
+        LocalDateTime now = LocalDateTime.now();
+        if (since != null && !since.isBlank() && from.time().isBefore(now.minus(tombstoneRetention))) {
+            return ProductChangesResponse.builder()
+                    .upserted(List.of())
+                    .deleted(List.of())
+                    .resetRequired(true)
+                    .build();
+        }
+        LocalDateTime horizon = holdRepository.findOldestHeldSinceAfter(now.minus(maxHold))
+                .filter(heldSince -> heldSince.isBefore(now))
+                .orElse(now);
+        LocalDateTime until = horizon.minus(settle).truncatedTo(ChronoUnit.MICROS);
+        if (until.isBefore(from.time())) {
+            until = from.time();
+        }
+
+        PageRequest limit = PageRequest.of(0, size + 1);
+        List<Change> changes = new ArrayList<>(2 * size + 2);
+        productRepository.findChangedAfter(from.time(), from.id(), until, limit)
+                .forEach(product -> changes.add(new Change(product.getUpdatedAt(), product.getId(), product)));
+        tombstoneRepository.findDeletedAfter(from.time(), from.id(), until, limit)
+                .forEach(tombstone -> changes.add(new Change(tombstone.getDeletedAt(), tombstone.getProductId(), null)));
+        changes.sort(Comparator.comparing(Change::time).thenComparing(Change::id));
+
+        boolean hasMore = changes.size() > size;
+        List<Change> page = hasMore ? changes.subList(0, size) : changes;
+        List<Product> upserted = new ArrayList<>();
+        List<Long> deleted = new ArrayList<>();
+        for (Change change : page) {
+            if (change.product() == null) {
+                deleted.add(change.id());
+            } else {
+                upserted.add(change.product());
+            }
+        }
+        Position next;
+        if (hasMore) {
+            Change last = page.get(page.size() - 1);
+            next = new Position(last.time(), last.id());
+        } else {
+            next = new Position(until, Long.MAX_VALUE);
+        }
+        return ProductChangesResponse.builder()
+                .upserted(upserted)
+                .deleted(deleted)
+                .nextToken(next.encode())
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Keep the feed from handing out changes from now on until the hold is closed. Take it
+     * before, not inside, a transaction that may stay open longer than
+     * {@code products.sync.settle}; it is committed at once, so every node sees it.
+     */
+    public Hold hold() {
+        ProductSyncHold hold = holdRepository.save(
+                new ProductSyncHold(UUID.randomUUID().toString(), LocalDateTime.now()));
+        return new Hold(hold.getId());
+    }
+
+    /**
+     * Leave a tombstone for a deleted product. Joins the caller's transaction.
+     */
+    public void recordDeletion(Long productId) {
+        tombstoneRepository.save(new ProductTombstone(productId, LocalDateTime.now()));
+    }
+
+    @Scheduled(fixedDelayString = "${products.sync.purge-interval:86400000}")
+    @Transactional
+    public void purgeTombstones() {
+        int purged = tombstoneRepository.purgeBefore(LocalDateTime.now().minus(tombstoneRetention));
+        if (purged > 0) {
+            log.info("Purged {} product tombstones older than {}", purged, tombstoneRetention);
+        }
+        int abandoned = holdRepository.purgeBefore(LocalDateTime.now().minus(maxHold));
+        if (abandoned > 0) {
+            log.warn("Purged {} delta sync holds older than {}", abandoned, maxHold);
+        }
+    }
+
+    /**
+     * A registered {@link #hold()}; closing it lets the feed move on.
+     */
+    public final class Hold implements AutoCloseable {
+
+        private final String id;
+
+        private Hold(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void close() {
+            try {
+                holdRepository.deleteById(id);
+            } catch (RuntimeException e) {
+                log.warn("Could not release delta sync hold {}, it expires after {}: {}", id, maxHold, e.getMessage());
+            }
+        }
+    }
+
+    private record Change(LocalDateTime time, Long id, Product product) {
+    }
+
+    /**
+     * Position in {@code (time, id)} order; the opaque change token handed to clients.
+     */
+    record Position(LocalDateTime time, Long id) {
+
+        String encode() {
+            String raw = time + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Position decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new Position(LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.valueOf(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid change token: " + token);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.demo.catalog;
+
+/**
+ * Cheap, possibly approximate number of products, used where an exact
+ * {@code COUNT(*)} would cost more than the page being returned.
+ */
+public interface ProductCountEstimator {
+
+    long estimate();
+
+    /**
+     * Called after products were inserted.
+     */
+    default void recordCreated(long count) {
+    }
+
+    /**
+     * Called after products were deleted.
+     */
+    default void recordDeleted(long count) {
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.demo.catalog;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Converts keyset scroll positions over products to and from the opaque {@code after}
+ * tokens handed to API clients. A token carries the last row's sort key and id plus the
+ * sort it was issued for, so it cannot be replayed against a different ordering.
+ */
+@Component
+public class ProductCursorCodec {
+
+    /**
+     * Sortable properties and how to restore their values from a token.
+     */
+    private static final Map<String, Function<String, Object>> SORT_FIELDS = Map.of(
+            "id", Long::valueOf,
+            "name", value -> value,
+            "price", Double::valueOf,
+            "quantity", Integer::valueOf,
+            "createdAt", LocalDateTime::parse
+    );
+
+    private static final String SORT_KEY = "_sort";
+
+    private final ObjectMapper objectMapper;
+
+    public ProductCursorCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Build the sort for a keyset listing. The id is always appended as tie-breaker so
+     * that every row has a unique position.
+     *
+     * @throws IllegalArgumentException if the property is not supported for keyset paging
+     */
+    public Sort sort(String sortBy, String sortDir) {
+        if (!SORT_FIELDS.containsKey(sortBy)) {
+            throw new IllegalArgumentException("Cursor pagination is not supported for sort property: " + sortBy);
+        }
+        Sort.Direction direction = sortDir.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC;
+        Sort sort = Sort.by(direction, sortBy);
+        return sortBy.equals("id") ? sort : sort.and(Sort.by(direction, "id"));
+    }
+
+    public String encode(ScrollPosition position, Sort sort) {
+        if (!(position instanceof KeysetScrollPosition keyset)) {
+            throw new IllegalArgumentException("Only keyset positions can be encoded");
+        }
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put(SORT_KEY, sort.toString());
+        keyset.getKeys().forEach((key, value) -> values.put(key, String.valueOf(value)));
+        try {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(objectMapper.writeValueAsBytes(values));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot encode cursor", e);
+        }
+    }
+
+    /**
+     * Restore the position encoded in {@code token}, or the start of the listing when
+     * no token is given.
+     *
+     * @throws IllegalArgumentException if the token is malformed or was issued for another sort
+     */
+    public ScrollPosition decode(String token, Sort sort) {
+        if (token == null || token.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        Map<String, String> values;
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(token.getBytes(StandardCharsets.US_ASCII));
+            values = objectMapper.readValue(json, new TypeReference<LinkedHashMap<String, String>>() { });
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        if (!sort.toString().equals(values.remove(SORT_KEY))) {
+            throw new IllegalArgumentException("Cursor does not match the requested sort order");
+        }
+
+        Map<String, Object> keys = new LinkedHashMap<>();
+        for (Sort.Order order : sort) {
+            String value = values.get(order.getProperty());
+            if (value == null) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            try {
+                keys.put(order.getProperty(), SORT_FIELDS.get(order.getProperty()).apply(value));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+        return ScrollPosition.forward(keys);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.demo.catalog;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A catalog change as pushed to {@link ProductEventBus} subscribers. Only the fields that
+ * apply to the {@link Type} are set.
+ *
+ * @param quantity stock after an upsert
+ * @param delta    stock change of a {@link Type#STOCK} event
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ProductEvent(Type type, Long productId, Integer quantity, Long delta) {
+
+    public enum Type {
+        /** Created or updated; carries the new quantity. */
+        UPSERTED,
+        /** Stock moved by {@code delta} without any other change. */
+        STOCK,
+        DELETED,
+        /** Changed on another node; the details are not known here. */
+        CHANGED,
+        /** Events were lost; the subscriber has to reload what it shows. */
+        RESYNC
+    }
+
+    public static ProductEvent upserted(Long productId, int quantity) {
+        return new ProductEvent(Type.UPSERTED, productId, quantity, null);
+    }
+
+    public static ProductEvent stock(Long productId, long delta) {
+        return new ProductEvent(Type.STOCK, productId, null, delta);
+    }
+
+    public static ProductEvent deleted(Long productId) {
+        return new ProductEvent(Type.DELETED, productId, null, null);
+    }
+
+    public static ProductEvent changed(Long productId) {
+        return new ProductEvent(Type.CHANGED, productId, null, null);
+    }
+
+    public static ProductEvent resync() {
+        return new ProductEvent(Type.RESYNC, null, null, null);
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.demo.catalog;
+
+import com.example.demo.cache.CacheInvalidationBus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process fan-out of {@link ProductEvent}s to push subscribers such as the SSE stream.
+ * Events published inside a transaction are delivered after commit. Changes announced by
+ * other nodes on the {@link CacheInvalidationBus} arrive as {@link ProductEvent.Type#CHANGED}.
+ * <p>
+ * Publishing never waits for a subscriber: each one has a buffer of
+ * {@code products.events.buffer-size} events that a virtual thread drains only while there
+ * is something to send, so idle subscribers hold no thread at all. A subscriber that falls
+ * behind loses its buffer and gets a single {@link ProductEvent.Type#RESYNC} instead, as does
+ * one that reconnects with an event id other than the latest.
+ */
+@Slf4j
+@Component
+public class ProductEventBus {
+
+    private static final Entry HEARTBEAT = new Entry(null, null);
+
+    /**
+     * Part of every event id, so ids from another node or an earlier run never match.
+     */
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final AtomicLong sequence = new AtomicLong();
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("product-events-", 0).factory());
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final Counter published;
+    private final Counter dropped;
+
+    public ProductEventBus(
+            CacheInvalidationBus invalidationBus,
+            MeterRegistry meterRegistry,
+            @Value("${products.events.buffer-size:256}") int bufferSize,
+            @Value("${products.events.max-subscribers:10000}") int maxSubscribers
+    ) {
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        Gauge.builder("products.events.subscribers", subscriptions, Set::size)
+                .description("Open product event subscriptions")
+                .register(meterRegistry);
+        this.published = Counter.builder("products.events.published").register(meterRegistry);
+        this.dropped = Counter.builder("products.events.dropped")
+                .description("Events discarded because a subscriber fell behind")
+                .register(meterRegistry);
+        invalidationBus.subscribe(ProductCache.NAME, ids -> {
+            if (ids.isEmpty()) {
+                dispatch(List.of(ProductEvent.resync()));
+            } else {
+                dispatch(ids.stream().map(ProductEvent::changed).toList());
+            }
+        });
+    }
+
+    /**
+     * Deliver {@code event} to every subscriber; inside a transaction, once it has committed.
+     */
+    public void publish(ProductEvent event) {
+        publishAll(List.of(event));
+    }
+
+    public void publishAll(Collection<ProductEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            List<ProductEvent> committed = List.copyOf(events);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(committed);
+                }
+            });
+        } else {
+            dispatch(events);
+        }
+    }
+
+    /**
+     * Start sending events to {@code sink}. A subscriber that reconnects passes the id of
+     * the last event it saw; unless that is the latest event, it is sent a resync first.
+     *
+     * @throws RejectedExecutionException if {@code products.events.max-subscribers} are already open
+     */
+    public Subscription subscribe(Sink sink, String lastEventId) {
+        if (subscriptions.size() >= maxSubscribers) {
+            throw new RejectedExecutionException("Too many product event subscribers, try again later");
+        }
+        Subscription subscription = new Subscription(sink);
+        subscriptions.add(subscription);
+        if (lastEventId != null && !lastEventId.equals(currentId())) {
+            subscription.offer(new Entry(currentId(), ProductEvent.resync()));
+        }
+        return subscription;
+    }
+
+    /**
+     * Keeps idle connections open through proxies and detects clients that went away.
+     */
+    @Scheduled(fixedDelayString = "${products.events.heartbeat-interval:15000}")
+    public void heartbeat() {
+        subscriptions.forEach(subscription -> subscription.offer(HEARTBEAT));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscriptions.forEach(Subscription::close);
+        senders.shutdownNow();
+    }
+
+    int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    private String currentId() {
+        return epoch + "-" + sequence.get();
+    }
+
+    /**
+     * Synchronized so that every subscriber sees events in id order.
+     */
+    private synchronized void dispatch(Collection<ProductEvent> events) {
+        for (ProductEvent event : events) {
+            Entry entry = new Entry(epoch + "-" + sequence.incrementAndGet(), event);
+            subscriptions.forEach(subscription -> subscription.offer(entry));
+            published.increment();
+        }
+    }
+
+    /**
+     * Where a subscriber's events go. Calls for one subscriber never overlap.
+     */
+    public interface Sink {
+
+        void send(String id, ProductEvent event) throws IOException;
+
+        void heartbeat() throws IOException;
+
+        /**
+         * The subscription ended on the server side, after a failed send or at shutdown.
+         */
+        void close();
+    }
+
+    public final class Subscription {
+
+        private final Sink sink;
+        private final ArrayDeque<Entry> buffer = new ArrayDeque<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean cancelled;
+
+        private Subscription(Sink sink) {
+            this.sink = sink;
+        }
+
+        /**
+         * Stop delivering events, for example because the client disconnected.
+         */
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            synchronized (buffer) {
+                buffer.clear();
+            }
+        }
+
+        void offer(Entry entry) {
+            synchronized (buffer) {
+                if (cancelled || (entry == HEARTBEAT && !buffer.isEmpty())) {
+                    return;
+                }
+                if (buffer.size() >= bufferSize) {
+                    dropped.increment(buffer.size());
+                    buffer.clear();
+                    buffer.add(new Entry(entry.id(), ProductEvent.resync()));
+                } else {
+                    buffer.add(entry);
+                }
+            }
+            if (draining.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    draining.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Entry entry;
+                synchronized (buffer) {
+                    entry = buffer.poll();
+                    if (entry == null || cancelled) {
+                        draining.set(false);
+                        return;
+                    }
+                }
+                try {
+                    if (entry == HEARTBEAT) {
+                        sink.heartbeat();
+                    } else {
+                        sink.send(entry.id(), entry.event());
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log.debug("Dropping product event subscriber: {}", e.getMessage());
+                    close();
+                    draining.set(false);
+                    return;
+                }
+            }
+        }
+
+        private void close() {
+            cancel();
+            sink.close();
+        }
+    }
+
+    private record Entry(String id, ProductEvent event) {
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.demo.catalog;
+
+/**
+ * Id and name of a product, read without loading the entity.
+ */
+public record ProductName(Long id, String name) {
+}
@@ -0,0 +1,362 @@
+package com.example.demo.catalog;
+
+import com.example.demo.Product;
+import com.example.demo.ProductRepository;
+import com.example.demo.datasource.PrimaryReads;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-process trigram index over product names for case-insensitive substring search.
+ * Every lower-cased name is split into overlapping three-character grams, and each gram
+ * maps to a sorted list of product ids. A query is answered by intersecting the lists of
+ * its own grams, shortest first, and confirming the surviving candidates against the
+ * stored names; the database is only asked for the rows that actually match.
+ * <p>
+ * The index is built once the application is ready and kept current by
+ * {@link com.example.demo.ProductService}. Changes made inside a transaction are applied
+ * after it commits, so a rollback leaves the index untouched. A rebuild scans the table
+ * without holding the lock and swaps the result in, replaying the changes applied while it
+ * ran; searches keep using the previous index meanwhile. The scan reads from the primary,
+ * see {@link PrimaryReads}, so it cannot miss what a replica has not received yet. Until
+ * the first build, and for
+ * queries shorter than a trigram, {@link #canServe(String)} is false and callers fall back
+ * to the database.
+ */
+@Slf4j
+@Component
+public class ProductNameIndex {
+
+    static final int GRAM_LENGTH = 3;
+
+    private final ProductRepository repository;
+    private final PrimaryReads primaryReads;
+    private final boolean enabled;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Map<Long, IntPostingList> postings = new HashMap<>();
+    private Map<Integer, String> names = new HashMap<>();
+    private List<Change> changesDuringRebuild;
+    private volatile boolean ready;
+
+    public ProductNameIndex(
+            ProductRepository repository,
+            PrimaryReads primaryReads,
+            @Value("${products.search.index.enabled:true}") boolean enabled
+    ) {
+        this.repository = repository;
+        this.primaryReads = primaryReads;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Load every product name. Runs after startup so that data seeded by runners is included.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long started = System.nanoTime();
+        Map<Long, IntPostingList> freshPostings = new HashMap<>();
+        Map<Integer, String> freshNames = new HashMap<>();
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            primaryReads.run(() -> {
+                try (Stream<ProductName> rows = repository.streamNamesByOrderByIdAsc()) {
+                    rows.forEach(row -> add(freshPostings, freshNames, row.id(), row.name()));
+                }
+            });
+            freshPostings.values().forEach(IntPostingList::trim);
+        } catch (IllegalArgumentException e) {
+            log.warn("Product name index disabled: {}", e.getMessage());
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+                ready = false;
+                postings = new HashMap<>();
+                names = new HashMap<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        int indexed;
+        lock.writeLock().lock();
+        try {
+            postings = freshPostings;
+            names = freshNames;
+            List<Change> replay = changesDuringRebuild;
+            changesDuringRebuild = null;
+            ready = true;
+            replay.forEach(this::apply);
+            indexed = names.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Indexed {} product names into {} trigrams in {} ms",
+                indexed, freshPostings.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Whether {@link #search(String)} can answer this query.
+     */
+    public boolean canServe(String query) {
+        return ready && query != null && normalize(query).length() >= GRAM_LENGTH;
+    }
+
+    /**
+     * Ids of all products whose name contains {@code query}, ignoring case, in ascending order.
+     *
+     * @throws IllegalStateException if the index cannot serve the query
+     */
+    public long[] search(String query) {
+        if (!canServe(query)) {
+            throw new IllegalStateException("Query cannot be served by the name index");
+        }
+        String needle = normalize(query);
+        lock.readLock().lock();
+        try {
+            List<IntPostingList> lists = new ArrayList<>();
+            for (long gram : grams(needle)) {
+                IntPostingList list = postings.get(gram);
+                if (list == null) {
+                    return new long[0];
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(IntPostingList::size));
+
+            int[] candidates = lists.get(0).toArray();
+            int count = candidates.length;
+            for (int i = 1; i < lists.size() && count > 0; i++) {
+                count = lists.get(i).retainAll(candidates, count);
+            }
+
+            long[] matches = new long[count];
+            int found = 0;
+            for (int i = 0; i < count; i++) {
+                if (names.get(candidates[i]).contains(needle)) {
+                    matches[found++] = candidates[i];
+                }
+            }
+            return Arrays.copyOf(matches, found);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Index a newly created or renamed product, once the current transaction commits.
+     */
+    public void put(Product product) {
+        if (product.getId() == null) {
+            return;
+        }
+        onCommit(new Change(product.getId(), product.getName()));
+    }
+
+    /**
+     * Drop a deleted product, once the current transaction commits.
+     */
+    public void remove(Long id) {
+        onCommit(new Change(id, null));
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return names.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void onCommit(Change change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    applyLocked(change);
+                }
+            });
+        } else {
+            applyLocked(change);
+        }
+    }
+
+    private void applyLocked(Change change) {
+        lock.writeLock().lock();
+        try {
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+            if (ready) {
+                apply(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Caller holds the write lock and the index is ready.
+     */
+    private void apply(Change change) {
+        Long id = change.id();
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            if (change.name() != null) {
+                log.warn("Product name index disabled: id {} is out of range", id);
+                ready = false;
+            }
+            return;
+        }
+        String previous = names.remove(toKey(id));
+        if (previous != null) {
+            for (long gram : grams(previous)) {
+                IntPostingList list = postings.get(gram);
+                if (list != null && list.remove(toKey(id)) && list.size() == 0) {
+                    postings.remove(gram);
+                }
+            }
+        }
+        add(postings, names, id, change.name());
+    }
+
+    private static void add(Map<Long, IntPostingList> postings, Map<Integer, String> names, Long id, String name) {
+        if (name == null) {
+            return;
+        }
+        int key = toKey(id);
+        String normalized = normalize(name);
+        names.put(key, normalized);
+        for (long gram : grams(normalized)) {
+            postings.computeIfAbsent(gram, g -> new IntPostingList()).add(key);
+        }
+    }
+
+    private static int toKey(Long id) {
+        if (id < 0 || id > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Product id out of range for the name index: " + id);
+        }
+        return id.intValue();
+    }
+
+    static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Distinct trigrams of {@code text}, each packed into a long as three 16-bit chars.
+     */
+    static long[] grams(String text) {
+        int count = Math.max(0, text.length() - GRAM_LENGTH + 1);
+        long[] grams = new long[count];
+        for (int i = 0; i < count; i++) {
+            grams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        return Arrays.stream(grams).distinct().toArray();
+    }
+
+    /**
+     * A committed rename or creation, or a deletion if {@code name} is null.
+     */
+    private record Change(Long id, String name) {
+    }
+
+    /**
+     * Growable, sorted array of ids. Ids are assigned in increasing order, so adds are
+     * almost always appends.
+     */
+    static final class IntPostingList {
+
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size > 0 && ids[size - 1] >= id) {
+                int at = Arrays.binarySearch(ids, 0, size, id);
+                if (at >= 0) {
+                    return;
+                }
+                insertAt(-at - 1, id);
+                return;
+            }
+            insertAt(size, id);
+        }
+
+        boolean remove(int id) {
+            int at = Arrays.binarySearch(ids, 0, size, id);
+            if (at < 0) {
+                return false;
+            }
+            System.arraycopy(ids, at + 1, ids, at, size - at - 1);
+            size--;
+            return true;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+
+        /**
+         * Keep only the first {@code count} entries of {@code candidates} that are also in
+         * this list, compacting them to the front.
+         *
+         * @return the number of entries kept
+         */
+        int retainAll(int[] candidates, int count) {
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < count && from < size; i++) {
+                int at = Arrays.binarySearch(ids, from, size, candidates[i]);
+                if (at >= 0) {
+                    candidates[kept++] = candidates[i];
+                    from = at + 1;
+                } else {
+                    from = -at - 1;
+                }
+            }
+            return kept;
+        }
+
+        void trim() {
+            ids = Arrays.copyOf(ids, size);
+        }
+
+        private void insertAt(int at, int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(4, size + (size >> 1)));
+            }
+            System.arraycopy(ids, at, ids, at + 1, size - at);
+            ids[at] = id;
+            size++;
+        }
+    }
+}
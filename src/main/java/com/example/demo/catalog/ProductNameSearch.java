@@ -0,0 +1,37 @@
+package com.example.demo.catalog;
+
+import com.example.demo.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Database-side, case-insensitive product name search, used whenever the
+ * {@link ProductNameIndex} cannot answer a query.
+ */
+public interface ProductNameSearch {
+
+    List<Product> search(String name);
+
+    /**
+     * Paged search for listings, answered with read-only projections.
+     */
+    Page<ProductSummary> search(String name, Pageable pageable);
+
+    Slice<Product> searchSlice(String name, Pageable pageable);
+
+    /**
+     * Case-insensitive {@code LIKE} pattern for names containing {@code query}, with the
+     * wildcards in the query escaped by a backslash.
+     */
+    static String likePattern(String query) {
+        String escaped = query.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.demo.catalog;
+
+/**
+ * The exported columns of a product, read without loading the entity, so rows streamed
+ * from the database are never tracked by the persistence context.
+ */
+public record ProductRow(Long id, String name, int quantity, double price) {
+}
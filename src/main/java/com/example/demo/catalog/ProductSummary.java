@@ -0,0 +1,13 @@
+package com.example.demo.catalog;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read model of a product for listings and search results. It has the same properties,
+ * and therefore the same JSON, as {@link com.example.demo.Product}, but is built straight
+ * from the result set: nothing is registered in the persistence context, snapshotted for
+ * dirty checking or proxied.
+ */
+public record ProductSummary(Long id, String name, int quantity, double price, Long version,
+                             LocalDateTime createdAt, LocalDateTime updatedAt) {
+}
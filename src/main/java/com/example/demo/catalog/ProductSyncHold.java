@@ -0,0 +1,28 @@
+package com.example.demo.catalog;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Marker of a writer whose transaction may stay open longer than
+ * {@code products.sync.settle}; while it exists, {@link ProductChangeFeed} does not move
+ * past the time it was taken. See {@link ProductChangeFeed#hold()}.
+ */
+@Entity
+@Table(name = "product_sync_hold")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSyncHold {
+
+    @Id
+    @Column(name = "id", length = 36)
+    private String id;
+
+    @Column(name = "held_since", nullable = false)
+    private LocalDateTime heldSince;
+}
@@ -0,0 +1,21 @@
+package com.example.demo.catalog;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface ProductSyncHoldRepository extends JpaRepository<ProductSyncHold, String> {
+
+    @Query("select min(h.heldSince) from ProductSyncHold h where h.heldSince > :after")
+    Optional<LocalDateTime> findOldestHeldSinceAfter(@Param("after") LocalDateTime after);
+
+    @Modifying
+    @Query("delete from ProductSyncHold h where h.heldSince < :before")
+    int purgeBefore(@Param("before") LocalDateTime before);
+}
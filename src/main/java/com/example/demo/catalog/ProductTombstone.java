@@ -0,0 +1,29 @@
+package com.example.demo.catalog;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Marker left behind by a deleted product, so that {@link ProductChangeFeed} can tell
+ * syncing clients to drop it. Purged after {@code products.sync.tombstone-retention}.
+ */
+@Entity
+@Table(name = "product_tombstone", indexes = {
+        @Index(name = "idx_product_tombstone_deleted_at_id", columnList = "deleted_at, product_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductTombstone {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+}
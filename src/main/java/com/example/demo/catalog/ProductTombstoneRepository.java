@@ -0,0 +1,25 @@
+package com.example.demo.catalog;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ProductTombstoneRepository extends JpaRepository<ProductTombstone, Long> {
+
+    @Query("select t from ProductTombstone t where t.deletedAt <= :until "
+            + "and (t.deletedAt > :time or (t.deletedAt = :time and t.productId > :id)) "
+            + "order by t.deletedAt, t.productId")
+    List<ProductTombstone> findDeletedAfter(@Param("time") LocalDateTime time, @Param("id") Long id,
+                                            @Param("until") LocalDateTime until, Pageable pageable);
+
+    @Modifying
+    @Query("delete from ProductTombstone t where t.deletedAt < :before")
+    int purgeBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,10 @@
+package com.example.demo.catalog;
+
+import java.time.LocalDateTime;
+
+/**
+ * Optimistic-lock version and last modification time of a product, read without loading
+ * the entity; enough to answer a conditional request.
+ */
+public record ProductVersion(Long version, LocalDateTime updatedAt) {
+}
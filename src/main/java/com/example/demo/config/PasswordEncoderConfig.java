@@ -1,18 +1,50 @@
 package com.example.demo.config;
 
+import com.example.demo.security.BCryptStrength;
+import com.example.demo.security.BoundedPasswordEncoder;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.time.Duration;
+
 /**
  * Separate configuration for PasswordEncoder to avoid circular dependencies.
+ * <p>
+ * Unless {@code security.password.strength} pins it, the BCrypt cost is calibrated at
+ * startup to the highest one that hashes within {@code security.password.target-latency}
+ * on this machine. Hashing runs on its own bounded pool, see {@link BoundedPasswordEncoder}.
+ * <p>
+ * Calibration is meant for a single node. Nodes sharing a user table should pin the same
+ * strength, as the postgres profile does; otherwise each one hashes new passwords with the
+ * cost its own hardware allows.
  */
+@Slf4j
 @Configuration
 public class PasswordEncoderConfig {
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(
+            MeterRegistry meterRegistry,
+            @Value("${security.password.strength:0}") int strength,
+            @Value("${security.password.target-latency:200ms}") Duration targetLatency,
+            @Value("${security.password.min-strength:10}") int minStrength,
+            @Value("${security.password.max-strength:14}") int maxStrength,
+            @Value("${security.password.workers:0}") int workers,
+            @Value("${security.password.queue-capacity:64}") int queueCapacity
+    ) {
+        if (strength <= 0) {
+            strength = BCryptStrength.calibrate(targetLatency, minStrength, maxStrength);
+            log.info("Calibrated BCrypt strength {} for a target hash latency of {}", strength, targetLatency);
+        }
+        if (workers <= 0) {
+            workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        }
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength), strength, workers, queueCapacity,
+                meterRegistry);
     }
 }
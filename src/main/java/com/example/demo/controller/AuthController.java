@@ -3,20 +3,27 @@ package com.example.demo.controller;
 import com.example.demo.dto.LoginRequest;
 import com.example.demo.dto.LoginResponse;
 import com.example.demo.dto.RefreshTokenRequest;
+import com.example.demo.dto.RevokeTokenRequest;
 import com.example.demo.security.JwtService;
+import com.example.demo.security.TokenRevocations;
 import com.example.demo.user.User;
 import com.example.demo.user.UserService;
 import com.example.demo.user.dto.RegisterRequest;
 import com.example.demo.user.dto.UserResponse;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -31,6 +38,7 @@ public class AuthController {
     private final AuthenticationManager authenticationManager;
     private final UserService userService;
     private final JwtService jwtService;
+    private final TokenRevocations tokenRevocations;
 
     @PostMapping("/register")
     public ResponseEntity<UserResponse> register(@Valid @RequestBody RegisterRequest request) {
@@ -55,9 +63,15 @@ public class AuthController {
     @PostMapping("/login")
     public ResponseEntity<LoginResponse> login(@Valid @RequestBody LoginRequest request) {
         log.info("Login request for username: {}", request.getUsername());
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword())
-        );
+        Authentication authentication;
+        try {
+            authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword())
+            );
+        } catch (BadCredentialsException e) {
+            userService.recordFailedLoginAttempt(request.getUsername());
+            throw e;
+        }
 
         User user = (User) authentication.getPrincipal();
         List<String> roles = authentication.getAuthorities().stream()
@@ -92,7 +106,15 @@ public class AuthController {
         User user = (User) userService.loadUserByUsername(username);
 
         // Validate refresh token
-        if (!jwtService.isTokenValid(refreshToken, user)) {
+        if (!jwtService.isTokenValid(refreshToken, user)
+                || tokenRevocations.isRevoked(jwtService.extractTokenId(refreshToken))) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        // Locked or deactivated users, and tokens issued before the last security change, get no new tokens
+        Long epoch = jwtService.extractSecurityEpoch(refreshToken);
+        if (!user.isAccountNonLocked() || !user.isEnabled() || epoch == null || epoch < user.getSecurityEpoch()) {
+            log.info("Refused token refresh for user {}", username);
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
 
@@ -115,9 +137,39 @@ public class AuthController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Revoke the bearer access token of the request and, if given, the refresh token.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(
+            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization,
+            @RequestBody(required = false) RefreshTokenRequest request) {
+        if (authorization != null && authorization.startsWith("Bearer ")) {
+            revokeQuietly(authorization.substring(7));
+        }
+        if (request != null && request.getRefreshToken() != null) {
+            revokeQuietly(request.getRefreshToken());
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Revoke an access or refresh token. As in RFC 7009, tokens that are invalid or have
+     * already expired are not an error.
+     */
+    @PostMapping("/revoke")
+    public ResponseEntity<Void> revoke(@Valid @RequestBody RevokeTokenRequest request) {
+        revokeQuietly(request.getToken());
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/me")
     public ResponseEntity<UserResponse> getCurrentUser(Authentication authentication) {
-        User user = (User) authentication.getPrincipal();
+        User user = authentication.getPrincipal() instanceof User principal
+                ? principal
+                : userService.getUserByUsername(authentication.getName())
+                        .orElseThrow(() -> new UsernameNotFoundException("User not found with username: "
+                                + authentication.getName()));
         UserResponse response = UserResponse.builder()
                 .id(user.getId())
                 .username(user.getUsername())
@@ -136,4 +188,14 @@ public class AuthController {
                 .build();
         return ResponseEntity.ok(response);
     }
+
+    private void revokeQuietly(String token) {
+        try {
+            Claims claims = jwtService.verify(token);
+            tokenRevocations.revoke(jwtService.extractTokenId(claims), claims.getExpiration().toInstant());
+            log.info("Revoked token of user {}", claims.getSubject());
+        } catch (JwtException e) {
+            log.debug("Not revoking invalid token: {}", e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,75 @@
+package com.example.demo.controller;
+
+import com.example.demo.document.DocumentJob;
+import com.example.demo.document.DocumentJobService;
+import com.example.demo.dto.DocumentJobResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+
+@RestController
+@RequestMapping("/api/v1/documents/jobs")
+@RequiredArgsConstructor
+public class DocumentJobController {
+
+    private static final String BASE_PATH = "/api/v1/documents/jobs/";
+
+    private final DocumentJobService jobService;
+
+    @PostMapping("/invoice")
+    public ResponseEntity<DocumentJobResponse> submitInvoice() {
+        DocumentJob job = jobService.submitInvoice();
+        return ResponseEntity.accepted()
+                .location(URI.create(BASE_PATH + job.getId()))
+                .body(toResponse(job));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<DocumentJobResponse> getStatus(@PathVariable String id) {
+        return jobService.getJob(id)
+                .map(job -> ResponseEntity.ok(toResponse(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{id}/file")
+    public ResponseEntity<Resource> download(@PathVariable String id) {
+        DocumentJob job = jobService.getJob(id).orElse(null);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!job.isFinished()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return jobService.getResult(id)
+                .<ResponseEntity<Resource>>map(path -> {
+                    HttpHeaders headers = new HttpHeaders();
+                    headers.setContentType(MediaType.APPLICATION_PDF);
+                    headers.setContentDispositionFormData("attachment", "Lieferschein_Altenburg.pdf");
+                    return ResponseEntity.ok().headers(headers).body(new FileSystemResource(path));
+                })
+                .orElse(ResponseEntity.status(HttpStatus.GONE).build());
+    }
+
+    private DocumentJobResponse toResponse(DocumentJob job) {
+        boolean completed = job.getStatus() == DocumentJob.Status.COMPLETED;
+        return DocumentJobResponse.builder()
+                .id(job.getId())
+                .type(job.getType())
+                .status(job.getStatus().name())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .expiresAt(jobService.getExpiresAt(job))
+                .sizeBytes(completed ? job.getSizeBytes() : null)
+                .error(job.getError())
+                .downloadUrl(completed ? BASE_PATH + job.getId() + "/file" : null)
+                .build();
+    }
+}
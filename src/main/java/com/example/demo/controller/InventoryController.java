@@ -0,0 +1,61 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.PagedResponse;
+import com.example.demo.dto.ReconciliationReport;
+import com.example.demo.dto.StockLevelResponse;
+import com.example.demo.inventory.InventoryLedger;
+import com.example.demo.inventory.InventoryMovement;
+import com.example.demo.inventory.InventoryMovementRepository;
+import com.example.demo.inventory.InventoryReconciliationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+
+@RestController
+@RequestMapping("/api/v1/inventory")
+@RequiredArgsConstructor
+public class InventoryController {
+
+    private final InventoryLedger ledger;
+    private final InventoryMovementRepository movementRepository;
+    private final InventoryReconciliationService reconciliationService;
+
+    /**
+     * Stock movements of a product, newest first.
+     */
+    @GetMapping("/products/{id}/movements")
+    public ResponseEntity<PagedResponse<InventoryMovement>> movements(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        return ResponseEntity.ok(PagedResponse.of(
+                movementRepository.findByProductIdOrderByOccurredAtDescIdDesc(id, PageRequest.of(page, size))));
+    }
+
+    /**
+     * Quantity of a product according to the ledger, now or at {@code asOf}.
+     */
+    @GetMapping("/products/{id}/quantity")
+    public ResponseEntity<StockLevelResponse> quantity(
+            @PathVariable Long id,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf
+    ) {
+        LocalDateTime at = asOf == null ? LocalDateTime.now() : asOf;
+        return ResponseEntity.ok(new StockLevelResponse(id, ledger.quantityAsOf(id, at), at));
+    }
+
+    /**
+     * Run the ledger reconciliation now instead of waiting for the nightly job.
+     */
+    @PostMapping("/reconciliation")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ReconciliationReport> reconcile() {
+        return ResponseEntity.ok(reconciliationService.reconcile());
+    }
+}
@@ -2,20 +2,48 @@ package com.example.demo.controller;
 
 import com.example.demo.Product;
 import com.example.demo.ProductService;
+import com.example.demo.catalog.ProductChangeFeed;
+import com.example.demo.catalog.ProductCursorCodec;
+import com.example.demo.catalog.ProductEvent;
+import com.example.demo.catalog.ProductEventBus;
+import com.example.demo.catalog.ProductSummary;
+import com.example.demo.catalog.ProductVersion;
+import com.example.demo.document.InvoiceCache;
+import com.example.demo.dto.CursorPagedResponse;
 import com.example.demo.dto.PagedResponse;
+import com.example.demo.dto.ProductChangesResponse;
+import com.example.demo.dto.ProductImportResponse;
+import com.example.demo.dto.SliceResponse;
+import com.example.demo.dto.StockAdjustmentRequest;
+import com.example.demo.imports.ImportFormat;
+import com.example.demo.imports.ProductBulkLoader;
+import com.example.demo.imports.ProductExportService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Locale;
 import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/v1/products")
@@ -23,39 +51,183 @@ import java.util.List;
 public class ProductController {
 
     private final ProductService service;
+    private final InvoiceCache invoiceCache;
+    private final ProductCursorCodec cursorCodec;
+    private final ProductBulkLoader bulkLoader;
+    private final ProductExportService exportService;
+    private final ProductChangeFeed changeFeed;
+    private final ProductEventBus eventBus;
 
+    /**
+     * Listings and searches carry the weak catalog ETag and answer a matching
+     * {@code If-None-Match} with 304 before anything is read from the database.
+     */
     @GetMapping
-    public ResponseEntity<PagedResponse<Product>> getAllProducts(
+    public ResponseEntity<PagedResponse<ProductSummary>> getAllProducts(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDir
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestHeader HttpHeaders headers
     ) {
+        String etag = service.getCatalogTag();
+        if (notModified(headers, etag, -1)) {
+            return notModifiedResponse(etag);
+        }
         Sort sort = sortDir.equalsIgnoreCase("asc") ?
                 Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
         Pageable pageable = PageRequest.of(page, size, sort);
-        Page<Product> products = service.getAllProducts(pageable);
+        Page<ProductSummary> products = service.getAllProducts(pageable);
+
+        PagedResponse<ProductSummary> response = PagedResponse.of(products);
+        return withCatalogTag(etag, response);
+    }
+
+    @GetMapping("/slice")
+    public ResponseEntity<SliceResponse<Product>> getProductSlice(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(defaultValue = "true") boolean withTotal,
+            @RequestHeader HttpHeaders headers
+    ) {
+        String etag = service.getCatalogTag();
+        if (notModified(headers, etag, -1)) {
+            return notModifiedResponse(etag);
+        }
+        Sort sort = sortDir.equalsIgnoreCase("asc") ?
+                Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
+        Slice<Product> products = service.getProductSlice(PageRequest.of(page, size, sort));
 
-        PagedResponse<Product> response = PagedResponse.of(products);
-        return ResponseEntity.ok(response);
+        SliceResponse<Product> response = withTotal
+                ? SliceResponse.of(products, service.estimateProductCount())
+                : SliceResponse.of(products);
+        return withCatalogTag(etag, response);
     }
 
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPagedResponse<Product>> getProductsAfter(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "id") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestHeader HttpHeaders headers
+    ) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must not be less than one");
+        }
+        String etag = service.getCatalogTag();
+        if (notModified(headers, etag, -1)) {
+            return notModifiedResponse(etag);
+        }
+        Sort sort = cursorCodec.sort(sortBy, sortDir);
+        ScrollPosition position = cursorCodec.decode(after, sort);
+        Window<Product> window = service.getProducts(position, sort, size);
+
+        String nextCursor = window.hasNext() && !window.isEmpty()
+                ? cursorCodec.encode(window.positionAt(window.size() - 1), sort)
+                : null;
+        CursorPagedResponse<Product> response = CursorPagedResponse.<Product>builder()
+                .content(window.getContent())
+                .size(size)
+                .nextCursor(nextCursor)
+                .hasNext(nextCursor != null)
+                .build();
+        return withCatalogTag(etag, response);
+    }
+
+    /**
+     * Products created, updated or deleted since the change token {@code since}; without a
+     * token, the whole catalog page by page. Clients keep the returned {@code nextToken}
+     * and poll with it instead of downloading the catalog again.
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<ProductChangesResponse> getChanges(
+            @RequestParam(required = false) String since,
+            @RequestParam(defaultValue = "500") int size
+    ) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(changeFeed.changesSince(since, size));
+    }
+
+    /**
+     * Server-Sent Events stream of catalog changes, named after {@link ProductEvent.Type}.
+     * The connection is held asynchronously, so an idle subscriber ties up no request
+     * thread. A {@code resync} event means changes were missed and the client has to
+     * reload; browsers send {@code Last-Event-ID} when reconnecting, which triggers it
+     * only if something happened in between. Unlike the other reads it requires
+     * authentication, so anonymous clients cannot use up {@code products.events.max-subscribers}.
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId
+    ) {
+        SseEmitter emitter = new SseEmitter(0L);
+        ProductEventBus.Subscription subscription = eventBus.subscribe(new EmitterSink(emitter), lastEventId);
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(e -> subscription.cancel());
+        return emitter;
+    }
+
+    /**
+     * Single product with its version as strong ETag and {@code updatedAt} as
+     * {@code Last-Modified}. A conditional request is checked against the version alone,
+     * so a 304 never loads the entity.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<Product> getById(@PathVariable Long id) {
+    public ResponseEntity<Product> getById(@PathVariable Long id, @RequestHeader HttpHeaders headers) {
+        if (!headers.getIfNoneMatch().isEmpty() || headers.getIfModifiedSince() >= 0) {
+            Optional<ProductVersion> version = service.getProductVersion(id);
+            if (version.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            String etag = versionTag(version.get().version());
+            long lastModified = lastModified(version.get().updatedAt());
+            if (notModified(headers, etag, lastModified)) {
+                ResponseEntity.HeadersBuilder<?> response = ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag);
+                if (lastModified >= 0) {
+                    response.lastModified(lastModified);
+                }
+                return response.build();
+            }
+        }
         return service.getProductById(id)
-                .map(ResponseEntity::ok)
+                .map(ProductController::withVersionTag)
                 .orElse(ResponseEntity.notFound().build());
     }
 
     @GetMapping("/search")
-    public ResponseEntity<PagedResponse<Product>> search(
+    public ResponseEntity<PagedResponse<ProductSummary>> search(
             @RequestParam String name,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size
+            @RequestParam(defaultValue = "20") int size,
+            @RequestHeader HttpHeaders headers
     ) {
+        String etag = service.getCatalogTag();
+        if (notModified(headers, etag, -1)) {
+            return notModifiedResponse(etag);
+        }
         Pageable pageable = PageRequest.of(page, size);
-        Page<Product> products = service.searchByName(name, pageable);
-        return ResponseEntity.ok(PagedResponse.of(products));
+        Page<ProductSummary> products = service.searchByName(name, pageable);
+        return withCatalogTag(etag, PagedResponse.of(products));
+    }
+
+    @GetMapping("/search/slice")
+    public ResponseEntity<SliceResponse<Product>> searchSlice(
+            @RequestParam String name,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestHeader HttpHeaders headers
+    ) {
+        String etag = service.getCatalogTag();
+        if (notModified(headers, etag, -1)) {
+            return notModifiedResponse(etag);
+        }
+        Slice<Product> products = service.searchByNameSlice(name, PageRequest.of(page, size));
+        return withCatalogTag(etag, SliceResponse.of(products));
     }
 
     @PostMapping
@@ -64,14 +236,76 @@ public class ProductController {
                 .body(service.saveProduct(product));
     }
 
+    /**
+     * Bulk import from a CSV ({@code text/csv}) or NDJSON ({@code application/x-ndjson})
+     * request body. The body is read as a stream, so files of any size can be sent.
+     * Rows carrying the id of an existing product update it, so an export can be loaded back.
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<ProductImportResponse> importProducts(HttpServletRequest request) throws IOException {
+        ImportFormat format = ImportFormat.fromContentType(request.getContentType());
+        return ResponseEntity.ok(bulkLoader.load(request.getInputStream(), format));
+    }
+
+    /**
+     * Full catalog as CSV or NDJSON, streamed from the database without materializing it.
+     * The body is gzip-compressed on the fly if the client accepts it.
+     */
+    @GetMapping(value = "/export", produces = {"text/csv", "application/x-ndjson"})
+    public ResponseEntity<StreamingResponseBody> exportProducts(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+    ) {
+        ImportFormat exportFormat = ImportFormat.fromName(format);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(exportFormat.getMediaType());
+        String extension = exportFormat.name().toLowerCase(Locale.ROOT);
+        headers.setContentDispositionFormData("attachment", "products." + extension);
+        headers.setCacheControl(CacheControl.noStore());
+        headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+
+        StreamingResponseBody body = exportFormat == ImportFormat.NDJSON
+                ? exportService::exportNdjson
+                : bulkLoader::export;
+        if (acceptsGzip(acceptEncoding)) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            StreamingResponseBody uncompressed = body;
+            body = out -> {
+                GZIPOutputStream gzip = new GZIPOutputStream(out, 64 * 1024);
+                uncompressed.writeTo(gzip);
+                gzip.finish();
+            };
+        }
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+
+    /**
+     * Full update. With an {@code If-Match} header carrying the product's {@code ETag}, the
+     * update is refused with 412 if the product was changed in the meantime.
+     */
     @PutMapping("/{id}")
     public ResponseEntity<Product> update(@PathVariable Long id,
+                                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                                          @Valid @RequestBody Product product) {
-        return service.updateProduct(id, product)
-                .map(ResponseEntity::ok)
+        return service.updateProduct(id, product, expectedVersion(ifMatch))
+                .map(ProductController::withVersionTag)
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Relative stock change applied atomically in the database; answers 409 if it would
+     * take the quantity below zero. The change is recorded in the inventory ledger under
+     * the given reason, or as a receipt or pick if none is given.
+     */
+    @PostMapping("/{id}/stock")
+    public ResponseEntity<Void> adjustStock(@PathVariable Long id,
+                                            @Valid @RequestBody StockAdjustmentRequest request) {
+        if (service.adjustStock(id, request.getDelta(), request.getReason())) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.notFound().build();
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> delete(@PathVariable Long id) {
         if (service.deleteProduct(id)) {
@@ -81,11 +315,149 @@ public class ProductController {
     }
 
     @GetMapping("/invoice")
-    public ResponseEntity<byte[]> downloadInvoice() {
-        byte[] pdf = service.generateInvoicePdf();
+    public ResponseEntity<StreamingResponseBody> downloadInvoice(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch
+    ) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_PDF);
         headers.setContentDispositionFormData("attachment", "Lieferschein_Altenburg.pdf");
-        return ResponseEntity.ok().headers(headers).body(pdf);
+        headers.setCacheControl(CacheControl.noCache());
+
+        Optional<InvoiceCache.CachedInvoice> cached = invoiceCache.getCurrent();
+        if (cached.isPresent()) {
+            InvoiceCache.CachedInvoice invoice = cached.get();
+            if (etagMatches(ifNoneMatch, invoice.etag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(invoice.etag()).build();
+            }
+            headers.setETag(invoice.etag());
+            headers.setLastModified(invoice.issuedAt().atZone(ZoneId.systemDefault()));
+            headers.setContentLength(invoice.content().length);
+            StreamingResponseBody body = out -> out.write(invoice.content());
+            return ResponseEntity.ok().headers(headers).body(body);
+        }
+
+        StreamingResponseBody body = invoiceCache::render;
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+
+    private record EmitterSink(SseEmitter emitter) implements ProductEventBus.Sink {
+
+        @Override
+        public void send(String id, ProductEvent event) throws IOException {
+            emitter.send(SseEmitter.event()
+                    .id(id)
+                    .name(event.type().name().toLowerCase())
+                    .data(event, MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void heartbeat() throws IOException {
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+        }
+
+        @Override
+        public void close() {
+            emitter.complete();
+        }
+    }
+
+    private static ResponseEntity<Product> withVersionTag(Product product) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(CacheControl.noCache());
+        if (product.getVersion() != null) {
+            response.eTag(versionTag(product.getVersion()));
+        }
+        long lastModified = lastModified(product.getUpdatedAt());
+        if (lastModified >= 0) {
+            response.lastModified(lastModified);
+        }
+        return response.body(product);
+    }
+
+    private <T> ResponseEntity<T> withCatalogTag(String etag, T body) {
+        String tag = service.getResponseCatalogTag(etag);
+        if (tag == null) {
+            return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(body);
+        }
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).eTag(tag).body(body);
+    }
+
+    private static <T> ResponseEntity<T> notModifiedResponse(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+    }
+
+    private static String versionTag(Long version) {
+        return version == null ? null : "\"" + version + "\"";
+    }
+
+    private static long lastModified(LocalDateTime updatedAt) {
+        return updatedAt == null ? -1 : updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Whether a conditional GET can be answered with 304. {@code If-None-Match} takes
+     * precedence; {@code If-Modified-Since} is only consulted without it, and compared
+     * at the one-second resolution of HTTP dates.
+     */
+    static boolean notModified(HttpHeaders request, String etag, long lastModified) {
+        List<String> ifNoneMatch = request.getIfNoneMatch();
+        if (!ifNoneMatch.isEmpty()) {
+            return etag != null && etagMatches(String.join(",", ifNoneMatch), etag);
+        }
+        long ifModifiedSince = request.getIfModifiedSince();
+        return ifModifiedSince >= 0 && lastModified >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * Whether an {@code Accept-Encoding} header admits gzip; codings with {@code q=0} are refused.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].replace(" ", "");
+                    if (parameter.matches("q=0(\\.0*)?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The product version named by an {@code If-Match} header, or {@code null} if any
+     * version is acceptable.
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new IllegalArgumentException("If-Match must be a single strong product ETag");
+        }
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("If-Match does not name a product version: " + tag);
+        }
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
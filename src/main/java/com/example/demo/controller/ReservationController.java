@@ -0,0 +1,89 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.ReservationRequest;
+import com.example.demo.dto.ReservationResponse;
+import com.example.demo.dto.StockAvailabilityResponse;
+import com.example.demo.inventory.Reservation;
+import com.example.demo.inventory.StockReservationService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1/reservations")
+@RequiredArgsConstructor
+public class ReservationController {
+
+    private static final String BASE_PATH = "/api/v1/reservations/";
+
+    private final StockReservationService reservationService;
+
+    /**
+     * Hold stock for a cart or pick list. Answers 409 if not enough is available to promise.
+     * Holding, confirming and releasing stock is reserved to administrators and managers.
+     */
+    @PostMapping
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    public ResponseEntity<ReservationResponse> reserve(@Valid @RequestBody ReservationRequest request) {
+        Duration ttl = request.getTtlSeconds() == null ? null : Duration.ofSeconds(request.getTtlSeconds());
+        return reservationService.reserve(request.getProductId(), request.getQuantity(), ttl)
+                .map(reservation -> ResponseEntity.created(URI.create(BASE_PATH + reservation.getId()))
+                        .body(toResponse(reservation)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ReservationResponse> get(@PathVariable UUID id) {
+        return reservationService.getReservation(id)
+                .map(reservation -> ResponseEntity.ok(toResponse(reservation)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Deduct the held stock from the product. Answers 409 if the product no longer has it,
+     * in which case the reservation is released.
+     */
+    @PostMapping("/{id}/confirm")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    public ResponseEntity<Void> confirm(@PathVariable UUID id) {
+        if (reservationService.confirm(id)) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    public ResponseEntity<Void> release(@PathVariable UUID id) {
+        if (reservationService.release(id)) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/availability/{productId}")
+    public ResponseEntity<StockAvailabilityResponse> availability(@PathVariable Long productId) {
+        OptionalLong available = reservationService.availableToPromise(productId);
+        if (available.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(new StockAvailabilityResponse(productId, available.getAsLong()));
+    }
+
+    private ReservationResponse toResponse(Reservation reservation) {
+        return ReservationResponse.builder()
+                .id(reservation.getId().toString())
+                .productId(reservation.getProductId())
+                .quantity(reservation.getQuantity())
+                .status(reservation.getStatus().name())
+                .expiresAt(reservation.getExpiresAt())
+                .build();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.demo.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Reads whose result is kept beyond the current request, such as cache fills, and must
+ * therefore not come from a replica that has not caught up yet. With read replicas they
+ * run in a read-only transaction of their own, pinned to the primary by
+ * {@link ReplicaRoutingDataSource#onPrimary(Supplier)}. Inside a read-write transaction,
+ * which is on the primary anyway, or without replicas they simply run in the caller's
+ * context.
+ */
+@Component
+public class PrimaryReads {
+
+    private final TransactionTemplate transactionTemplate;
+    private final boolean replicated;
+    private final Duration replicaWindow;
+
+    public PrimaryReads(
+            TransactionTemplate transactionTemplate,
+            @Value("${datasource.replicas.urls:}") String replicaUrls,
+            @Value("${datasource.replicas.sticky-window:10s}") Duration stickyWindow
+    ) {
+        this.transactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.replicated = !replicaUrls.isBlank();
+        this.replicaWindow = replicated ? stickyWindow : Duration.ZERO;
+    }
+
+    public <T> T read(Supplier<T> read) {
+        if (!replicated || (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly())) {
+            return read.get();
+        }
+        return ReplicaRoutingDataSource.onPrimary(() -> transactionTemplate.execute(status -> read.get()));
+    }
+
+    public void run(Runnable read) {
+        read(() -> {
+            read.run();
+            return null;
+        });
+    }
+
+    /**
+     * How long after a commit a replica may still be missing it; zero without replicas.
+     */
+    public Duration replicaWindow() {
+        return replicaWindow;
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.demo.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Sends the work of read-only transactions to replica pools and everything else to the
+ * primary. Must be wrapped in a {@link LazyConnectionDataSourceProxy}, so the connection is
+ * only taken once the transaction, and whether it is read-only, is known.
+ * <p>
+ * Replicas are probed every {@code datasource.replicas.check-interval} with
+ * {@code datasource.replicas.lag-query}; one that cannot be reached or lags more than
+ * {@code datasource.replicas.max-lag} gets no reads until it has caught up. With no replica
+ * left, reads fall back to the primary. A user who wrote within
+ * {@code datasource.replicas.sticky-window} reads from the primary as well, so they see
+ * their own changes even before the replicas have them. Reads that outlive the request,
+ * such as cache fills, are pinned to the primary with {@link #onPrimary(Supplier)}.
+ * A web request that read from a replica is marked, see {@link #readFromReplica()}.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    /**
+     * Replay lag of a PostgreSQL standby in milliseconds; zero once it has replayed all WAL
+     * it received, so an idle primary does not make it look stale.
+     */
+    public static final String POSTGRES_LAG_QUERY = "SELECT CASE WHEN NOT pg_is_in_recovery() "
+            + "OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE CAST(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 AS BIGINT) END";
+
+    /**
+     * Request attribute set once the request has taken a connection from a replica.
+     */
+    public static final String REPLICA_READ_ATTRIBUTE = ReplicaRoutingDataSource.class.getName() + ".REPLICA_READ";
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final String lagQuery;
+    private final long maxLagMillis;
+    private final Cache<String, Boolean> recentWriters;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter replicaReads;
+    private final Counter stickyReads;
+    private final Counter fallbackReads;
+    private final Counter pinnedReads;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, MeterRegistry meterRegistry,
+                                    String lagQuery, Duration maxLag, Duration stickyWindow) {
+        this.primary = primary;
+        this.lagQuery = lagQuery;
+        this.maxLagMillis = maxLag.toMillis();
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(stickyWindow)
+                .maximumSize(100_000)
+                .build();
+        this.replicas = new ArrayList<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = new Replica("replica-" + (i + 1), replicas.get(i));
+            this.replicas.add(replica);
+            Gauge.builder("datasource.replica.lag", replica, r -> r.lagMillis)
+                    .baseUnit("milliseconds")
+                    .tag("replica", replica.name)
+                    .register(meterRegistry);
+        }
+        this.replicaReads = Counter.builder("datasource.reads").tag("target", "replica").register(meterRegistry);
+        this.stickyReads = Counter.builder("datasource.reads").tag("target", "primary-sticky").register(meterRegistry);
+        this.fallbackReads = Counter.builder("datasource.reads").tag("target", "primary-fallback").register(meterRegistry);
+        this.pinnedReads = Counter.builder("datasource.reads").tag("target", "primary-pinned").register(meterRegistry);
+        checkReplicas();
+    }
+
+    /**
+     * Run {@code action} with every connection it takes coming from the primary, even in
+     * read-only transactions. A connection the current transaction already holds is not
+     * replaced, so the action should start a transaction of its own.
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        if (PINNED.get() != null) {
+            return action.get();
+        }
+        PINNED.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            PINNED.remove();
+        }
+    }
+
+    /**
+     * Whether the current web request has read from a replica; always false outside of one.
+     */
+    public static boolean readFromReplica() {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        return request != null && request.getAttribute(REPLICA_READ_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return target().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return target().getConnection(username, password);
+    }
+
+    /**
+     * Probe every replica and take lagging or unreachable ones out of rotation.
+     */
+    @Scheduled(fixedDelayString = "${datasource.replicas.check-interval:5000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean wasHealthy = replica.healthy;
+            try (Connection con = replica.dataSource.getConnection();
+                 Statement statement = con.createStatement()) {
+                statement.setQueryTimeout(5);
+                try (ResultSet rs = statement.executeQuery(lagQuery)) {
+                    rs.next();
+                    replica.lagMillis = rs.getLong(1);
+                }
+                replica.healthy = replica.lagMillis <= maxLagMillis;
+                if (wasHealthy && !replica.healthy) {
+                    log.warn("Taking {} out of rotation, it lags {} ms behind the primary", replica.name, replica.lagMillis);
+                }
+            } catch (SQLException | RuntimeException e) {
+                replica.healthy = false;
+                if (wasHealthy) {
+                    log.warn("Taking {} out of rotation, health check failed: {}", replica.name, e.getMessage());
+                }
+            }
+            if (!wasHealthy && replica.healthy) {
+                log.info("Routing reads to {} ({} ms behind the primary)", replica.name, replica.lagMillis);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+        if (primary instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    private DataSource target() {
+        String user = currentUser();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (user != null) {
+                recordWrite(user);
+            }
+            return primary;
+        }
+        if (PINNED.get() != null) {
+            pinnedReads.increment();
+            return primary;
+        }
+        if (user != null && recentWriters.getIfPresent(user) != null) {
+            stickyReads.increment();
+            return primary;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                replicaReads.increment();
+                RequestAttributes request = RequestContextHolder.getRequestAttributes();
+                if (request != null) {
+                    request.setAttribute(REPLICA_READ_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+                }
+                return replica.dataSource;
+            }
+        }
+        fallbackReads.increment();
+        return primary;
+    }
+
+    /**
+     * Start the user's sticky window now and again once the transaction has committed,
+     * so it covers the time the replicas need to receive the commit.
+     */
+    private void recordWrite(String user) {
+        recentWriters.put(user, Boolean.TRUE);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recentWriters.put(user, Boolean.TRUE);
+                }
+            });
+        }
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken
+                || !authentication.isAuthenticated()) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private static final class Replica {
+
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy;
+        private volatile long lagMillis;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.demo.document;
+
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+/**
+ * A document rendering job tracked by {@link DocumentJobService}.
+ * Status fields are written by the worker thread and read by pollers.
+ */
+@Getter
+public class DocumentJob {
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    private final String id;
+    private final String type;
+    private final LocalDateTime createdAt;
+
+    private volatile Status status = Status.QUEUED;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile Path file;
+    private volatile long sizeBytes;
+    private volatile String error;
+
+    DocumentJob(String id, String type) {
+        this(id, type, LocalDateTime.now());
+    }
+
+    private DocumentJob(String id, String type, LocalDateTime createdAt) {
+        this.id = id;
+        this.type = type;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * A job of another node, rebuilt from its files in the shared storage directory.
+     */
+    static DocumentJob restore(String id, String type, LocalDateTime createdAt, Status status,
+                               LocalDateTime finishedAt, Path file, long sizeBytes, String error) {
+        DocumentJob job = new DocumentJob(id, type, createdAt);
+        job.status = status;
+        job.finishedAt = finishedAt;
+        job.file = file;
+        job.sizeBytes = sizeBytes;
+        job.error = error;
+        return job;
+    }
+
+    void markRunning() {
+        startedAt = LocalDateTime.now();
+        status = Status.RUNNING;
+    }
+
+    void markCompleted(Path file, long sizeBytes) {
+        this.file = file;
+        this.sizeBytes = sizeBytes;
+        finishedAt = LocalDateTime.now();
+        status = Status.COMPLETED;
+    }
+
+    void markFailed(String error) {
+        this.error = error;
+        finishedAt = LocalDateTime.now();
+        status = Status.FAILED;
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.demo.document;
+
+import com.example.demo.ProductService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders documents in the background so request threads are not held for the
+ * duration of a large PDF. Jobs run on a fixed-size pool of virtual threads with a
+ * bounded queue; finished files are kept in the storage directory until their TTL expires.
+ * <p>
+ * Job state is kept in the storage directory next to the document: a {@code .job} marker
+ * written on submit, the {@code .pdf.part} file while rendering, then the {@code .pdf} or a
+ * {@code .failed} file holding the error. When the directory is shared between nodes, a
+ * job's status and result can therefore be requested from any of them; jobs submitted on
+ * this node are answered from memory.
+ */
+@Slf4j
+@Service
+public class DocumentJobService {
+
+    public static final String TYPE_INVOICE = "invoice";
+
+    /**
+     * Prefix of every file this service writes; nothing else in the storage directory is touched.
+     */
+    static final String FILE_PREFIX = "document-job-";
+
+    private static final String JOB_SUFFIX = ".job";
+    private static final String PART_SUFFIX = ".pdf.part";
+    private static final String RESULT_SUFFIX = ".pdf";
+    private static final String FAILED_SUFFIX = ".failed";
+
+    private final ProductService productService;
+    private final Path storageDir;
+    private final Duration ttl;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, DocumentJob> jobs = new ConcurrentHashMap<>();
+    private final Timer renderSuccess;
+    private final Timer renderFailure;
+
+    public DocumentJobService(
+            ProductService productService,
+            MeterRegistry meterRegistry,
+            @Value("${documents.jobs.workers:2}") int workers,
+            @Value("${documents.jobs.queue-capacity:50}") int queueCapacity,
+            @Value("${documents.storage-dir:${java.io.tmpdir}/minierp-documents}") Path storageDir,
+            @Value("${documents.ttl:1h}") Duration ttl
+    ) {
+        this.productService = productService;
+        this.storageDir = storageDir;
+        this.ttl = ttl;
+        this.executor = new ThreadPoolExecutor(
+                workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofVirtual().name("document-job-", 0).factory());
+
+        try {
+            Files.createDirectories(storageDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot prepare document storage " + storageDir, e);
+        }
+        purgeStorage();
+
+        Gauge.builder("documents.jobs.queue.depth", executor, e -> e.getQueue().size())
+                .description("Document jobs waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("documents.jobs.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Document jobs currently rendering")
+                .register(meterRegistry);
+        this.renderSuccess = Timer.builder("documents.render.time")
+                .tag("type", TYPE_INVOICE).tag("outcome", "success")
+                .register(meterRegistry);
+        this.renderFailure = Timer.builder("documents.render.time")
+                .tag("type", TYPE_INVOICE).tag("outcome", "failure")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queue a delivery-note rendering job.
+     *
+     * @return the queued job
+     * @throws RejectedExecutionException if the queue is full
+     * @throws UncheckedIOException if the job cannot be recorded in the storage directory
+     */
+    public DocumentJob submitInvoice() {
+        DocumentJob job = new DocumentJob(UUID.randomUUID().toString(), TYPE_INVOICE);
+        try {
+            Files.writeString(file(job.getId(), JOB_SUFFIX), job.getType());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot record document job " + job.getId(), e);
+        }
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> render(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            deleteFiles(job.getId());
+            throw new RejectedExecutionException("Document queue is full, please retry later", e);
+        }
+        return job;
+    }
+
+    /**
+     * The job with this id, submitted on this node or on another one sharing the storage directory.
+     */
+    public Optional<DocumentJob> getJob(String id) {
+        DocumentJob job = jobs.get(id);
+        return job != null ? Optional.of(job) : readJob(id);
+    }
+
+    /**
+     * Path of the finished document, if the job completed and has not expired yet.
+     */
+    public Optional<Path> getResult(String id) {
+        return getJob(id)
+                .filter(job -> job.getStatus() == DocumentJob.Status.COMPLETED)
+                .map(DocumentJob::getFile)
+                .filter(Files::exists);
+    }
+
+    public LocalDateTime getExpiresAt(DocumentJob job) {
+        return job.getFinishedAt() == null ? null : job.getFinishedAt().plus(ttl);
+    }
+
+    @Scheduled(fixedDelayString = "${documents.cleanup-interval:60000}")
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        jobs.values().removeIf(job -> {
+            LocalDateTime expiresAt = getExpiresAt(job);
+            if (expiresAt == null || expiresAt.isAfter(now)) {
+                return false;
+            }
+            deleteFiles(job.getId());
+            return true;
+        });
+        purgeStorage();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void render(DocumentJob job) {
+        job.markRunning();
+        Path part = file(job.getId(), PART_SUFFIX);
+        Path target = file(job.getId(), RESULT_SUFFIX);
+        long start = System.nanoTime();
+        try {
+            try (OutputStream out = Files.newOutputStream(part)) {
+                productService.writeInvoicePdf(out);
+            }
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            renderSuccess.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            job.markCompleted(target, Files.size(target));
+        } catch (Exception e) {
+            renderFailure.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.error("Document job {} failed: {}", job.getId(), e.getMessage(), e);
+            deleteQuietly(part);
+            recordFailure(job.getId(), e.getMessage());
+            job.markFailed(e.getMessage());
+        }
+    }
+
+    private void recordFailure(String id, String error) {
+        try {
+            Files.writeString(file(id, FAILED_SUFFIX), error == null ? "" : error);
+        } catch (IOException e) {
+            log.warn("Could not record the failure of document job {}: {}", id, e.getMessage());
+        }
+    }
+
+    private Optional<DocumentJob> readJob(String id) {
+        if (!isJobId(id)) {
+            return Optional.empty();
+        }
+        try {
+            Path marker = file(id, JOB_SUFFIX);
+            if (!Files.exists(marker)) {
+                return Optional.empty();
+            }
+            String type = Files.readString(marker);
+            LocalDateTime createdAt = modifiedAt(marker);
+            Path failed = file(id, FAILED_SUFFIX);
+            if (Files.exists(failed)) {
+                String error = Files.readString(failed);
+                return Optional.of(DocumentJob.restore(id, type, createdAt, DocumentJob.Status.FAILED,
+                        modifiedAt(failed), null, 0, error.isEmpty() ? null : error));
+            }
+            Path result = file(id, RESULT_SUFFIX);
+            if (Files.exists(result)) {
+                return Optional.of(DocumentJob.restore(id, type, createdAt, DocumentJob.Status.COMPLETED,
+                        modifiedAt(result), result, Files.size(result), null));
+            }
+            DocumentJob.Status status = Files.exists(file(id, PART_SUFFIX))
+                    ? DocumentJob.Status.RUNNING : DocumentJob.Status.QUEUED;
+            return Optional.of(DocumentJob.restore(id, type, createdAt, status, null, null, 0, null));
+        } catch (NoSuchFileException e) {
+            // purged while we were reading it
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read document job " + id, e);
+        }
+    }
+
+    /**
+     * Delete the files of every job, whichever node ran it, whose newest file is older than
+     * the TTL. That covers expired results as well as leftovers of nodes that stopped
+     * mid-render; nothing else in the storage directory is touched.
+     */
+    private void purgeStorage() {
+        FileTime cutoff = FileTime.from(Instant.now().minus(ttl));
+        Map<String, FileTime> lastModified = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(storageDir, FILE_PREFIX + "*")) {
+            for (Path file : files) {
+                try {
+                    lastModified.merge(jobId(file), Files.getLastModifiedTime(file),
+                            (a, b) -> a.compareTo(b) >= 0 ? a : b);
+                } catch (NoSuchFileException e) {
+                    // deleted by another node in the meantime
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not list document storage {}: {}", storageDir, e.getMessage());
+            return;
+        }
+        lastModified.forEach((id, modified) -> {
+            if (modified.compareTo(cutoff) < 0 && !jobs.containsKey(id)) {
+                deleteFiles(id);
+            }
+        });
+    }
+
+    private Path file(String id, String suffix) {
+        return storageDir.resolve(FILE_PREFIX + id + suffix);
+    }
+
+    private static String jobId(Path file) {
+        String name = file.getFileName().toString().substring(FILE_PREFIX.length());
+        int suffix = name.indexOf('.');
+        return suffix < 0 ? name : name.substring(0, suffix);
+    }
+
+    private static boolean isJobId(String id) {
+        try {
+            return UUID.fromString(id).toString().equals(id);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static LocalDateTime modifiedAt(Path file) throws IOException {
+        return LocalDateTime.ofInstant(Files.getLastModifiedTime(file).toInstant(), ZoneId.systemDefault());
+    }
+
+    private void deleteFiles(String id) {
+        for (String suffix : new String[]{RESULT_SUFFIX, FAILED_SUFFIX, PART_SUFFIX, JOB_SUFFIX}) {
+            deleteQuietly(file(id, suffix));
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete document file {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.demo.document;
+
+import com.example.demo.ProductService;
+import com.example.demo.catalog.CatalogVersion;
+import com.example.demo.datasource.PrimaryReads;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Keeps rendered delivery notes keyed by {@link CatalogVersion}. Only the first
+ * download after a catalog change renders the PDF; it is streamed to the client and
+ * captured on the side into a temporary file, so a render holds no more heap than an
+ * uncached one. The render reads from the primary, see {@link PrimaryReads}, so what a
+ * lagging replica returns is never stored under a newer version. Once complete, the file
+ * is promoted into memory and later downloads are served from there with a strong,
+ * content-derived ETag. The cache is bounded by the total size of stored documents.
+ * <p>
+ * A cached copy is the stored render byte for byte, so it repeats that render's document
+ * number and date: on a cached delivery note they identify the catalog state it shows,
+ * not the download. The date is kept as {@link CachedInvoice#issuedAt()} for the
+ * {@code Last-Modified} header.
+ */
+@Slf4j
+@Component
+public class InvoiceCache {
+
+    public record CachedInvoice(long catalogVersion, byte[] content, String etag, LocalDateTime issuedAt) {
+    }
+
+    private final ProductService productService;
+    private final CatalogVersion catalogVersion;
+    private final PrimaryReads primaryReads;
+    private final long maxBytes;
+    private final LinkedHashMap<Long, CachedInvoice> entries = new LinkedHashMap<>(4, 0.75f, true);
+    private long storedBytes;
+
+    public InvoiceCache(
+            ProductService productService,
+            CatalogVersion catalogVersion,
+            PrimaryReads primaryReads,
+            @Value("${documents.invoice-cache.max-bytes:33554432}") long maxBytes
+    ) {
+        this.productService = productService;
+        this.catalogVersion = catalogVersion;
+        this.primaryReads = primaryReads;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * The cached document for the current catalog version, if one has been rendered.
+     */
+    public Optional<CachedInvoice> getCurrent() {
+        return get(catalogVersion.current());
+    }
+
+    synchronized Optional<CachedInvoice> get(long version) {
+        return Optional.ofNullable(entries.get(version));
+    }
+
+    /**
+     * Render the delivery note into {@code out} and remember it under the catalog version
+     * it was rendered from. Nothing is stored if the catalog changed while rendering, the
+     * document is larger than the cache, or a concurrent render already stored it.
+     */
+    public void render(OutputStream out) throws IOException {
+        long version = catalogVersion.current();
+        LocalDateTime issuedAt = LocalDateTime.now();
+        Path spill = Files.createTempFile("invoice-render-", ".pdf");
+        try {
+            CapturingOutputStream capture = new CapturingOutputStream(out, spill, maxBytes);
+            try (capture) {
+                primaryReads.run(() -> productService.writeInvoicePdf(capture, issuedAt));
+            }
+            if (capture.overflowed() || version != catalogVersion.current() || get(version).isPresent()) {
+                return;
+            }
+            put(new CachedInvoice(version, Files.readAllBytes(spill), capture.etag(), issuedAt));
+        } finally {
+            try {
+                Files.deleteIfExists(spill);
+            } catch (IOException e) {
+                log.warn("Could not delete invoice render file {}: {}", spill, e.getMessage());
+            }
+        }
+    }
+
+    synchronized void put(CachedInvoice invoice) {
+        CachedInvoice previous = entries.put(invoice.catalogVersion(), invoice);
+        if (previous != null) {
+            storedBytes -= previous.content().length;
+        }
+        storedBytes += invoice.content().length;
+
+        Iterator<Map.Entry<Long, CachedInvoice>> eldest = entries.entrySet().iterator();
+        while (storedBytes > maxBytes && eldest.hasNext()) {
+            storedBytes -= eldest.next().getValue().content().length;
+            eldest.remove();
+        }
+    }
+
+    static String etagOf(byte[] content) {
+        return etag(sha256().digest(content));
+    }
+
+    private static String etag(byte[] digest) {
+        return "\"" + HexFormat.of().formatHex(digest) + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Passes bytes through to the client while writing a copy to a file and hashing it,
+     * until the copy would exceed the cache budget. Closing it closes only the copy.
+     */
+    private static final class CapturingOutputStream extends OutputStream {
+
+        private final OutputStream delegate;
+        private final long limit;
+        private final MessageDigest digest = sha256();
+        private OutputStream copy;
+        private long copied;
+
+        CapturingOutputStream(OutputStream delegate, Path file, long limit) throws IOException {
+            this.delegate = delegate;
+            this.limit = limit;
+            this.copy = new BufferedOutputStream(Files.newOutputStream(file));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            if (copy != null && reserve(1)) {
+                copy.write(b);
+                digest.update((byte) b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            if (copy != null && reserve(len)) {
+                copy.write(b, off, len);
+                digest.update(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.flush();
+            if (copy != null) {
+                copy.close();
+            }
+        }
+
+        boolean overflowed() {
+            return copy == null;
+        }
+
+        String etag() {
+            return InvoiceCache.etag(digest.digest());
+        }
+
+        private boolean reserve(int len) throws IOException {
+            copied += len;
+            if (copied <= limit) {
+                return true;
+            }
+            copy.close();
+            copy = null;
+            return false;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.demo.dto;
+
+import com.example.demo.Product;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Products created, updated or deleted since a change token. Pass {@code nextToken} back
+ * as {@code since}; while {@code hasMore} is set there are further changes to fetch right
+ * away. If {@code resetRequired} is set the token is too old to continue from, and the
+ * client has to drop its copy and sync again without a token.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductChangesResponse {
+    private List<Product> upserted;
+    private List<Long> deleted;
+    private String nextToken;
+    private boolean hasMore;
+    private boolean resetRequired;
+}
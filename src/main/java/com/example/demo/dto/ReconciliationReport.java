@@ -0,0 +1,25 @@
+package com.example.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationReport {
+    private LocalDateTime startedAt;
+    private long checked;
+    private long mismatched;
+    private long durationMs;
+    private List<Mismatch> mismatches;
+    private boolean mismatchesTruncated;
+
+    public record Mismatch(Long productId, long productQuantity, long ledgerQuantity) {
+    }
+}
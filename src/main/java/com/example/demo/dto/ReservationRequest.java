@@ -0,0 +1,27 @@
+package com.example.demo.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReservationRequest {
+
+    @NotNull(message = "Product id is required")
+    private Long productId;
+
+    @Min(value = 1, message = "Quantity must be at least 1")
+    private int quantity;
+
+    /**
+     * How long the stock is held unless confirmed or released; the server default if omitted.
+     */
+    @Min(value = 1, message = "TTL must be at least one second")
+    private Long ttlSeconds;
+}
@@ -0,0 +1,49 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+/**
+ * Count-free variant of {@link PagedResponse}: reports whether another page exists
+ * instead of exact totals. A total may be attached when it can be had cheaply, in
+ * which case {@code totalApproximate} says whether it is exact.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SliceResponse<T> {
+    private List<T> content;
+    private int page;
+    private int size;
+    private boolean first;
+    private boolean last;
+    private boolean hasNext;
+    private Long totalElements;
+    private Boolean totalApproximate;
+
+    public static <T> SliceResponse<T> of(Slice<T> slice) {
+        return SliceResponse.<T>builder()
+                .content(slice.getContent())
+                .page(slice.getNumber())
+                .size(slice.getSize())
+                .first(slice.isFirst())
+                .last(slice.isLast())
+                .hasNext(slice.hasNext())
+                .build();
+    }
+
+    public static <T> SliceResponse<T> of(Slice<T> slice, long approximateTotal) {
+        SliceResponse<T> response = of(slice);
+        response.setTotalElements(approximateTotal);
+        response.setTotalApproximate(true);
+        return response;
+    }
+}
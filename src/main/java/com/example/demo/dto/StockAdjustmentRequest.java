@@ -0,0 +1,26 @@
+package com.example.demo.dto;
+
+import com.example.demo.inventory.MovementReason;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Relative stock change: positive for goods received, negative for goods picked.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAdjustmentRequest {
+
+    @NotNull(message = "Delta is required")
+    private Integer delta;
+
+    /**
+     * Optional ledger reason; defaults to a receipt or a pick depending on the sign.
+     */
+    private MovementReason reason;
+}
@@ -0,0 +1,62 @@
+package com.example.demo.imports;
+
+import com.example.demo.dto.ProductImportResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Running totals of one import, turned into the {@link ProductImportResponse} at the end.
+ */
+final class ImportProgress {
+
+    private final int maxReportedErrors;
+    private final long started = System.nanoTime();
+    private final List<ProductImportResponse.RowError> errors = new ArrayList<>();
+    long received;
+    long imported;
+    long updated;
+    long failed;
+
+    ImportProgress(int maxReportedErrors) {
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    void fail(long line, String message) {
+        failed++;
+        if (errors.size() < maxReportedErrors) {
+            errors.add(new ProductImportResponse.RowError(line, message));
+        }
+    }
+
+    /**
+     * Products that did not exist before the import.
+     */
+    long created() {
+        return imported - updated;
+    }
+
+    long elapsedNanos() {
+        return System.nanoTime() - started;
+    }
+
+    ProductImportResponse toResponse(ImportFormat format, String loader) {
+        long elapsedNanos = elapsedNanos();
+        return ProductImportResponse.builder()
+                .format(format.name())
+                .loader(loader)
+                .received(received)
+                .imported(imported)
+                .updated(updated)
+                .failed(failed)
+                .durationMs(elapsedNanos / 1_000_000)
+                .rowsPerSecond(rowsPerSecond(elapsedNanos))
+                .errors(errors)
+                .errorsTruncated(failed > errors.size())
+                .build();
+    }
+
+    long rowsPerSecond(long elapsedNanos) {
+        return elapsedNanos > 0 ? received * 1_000_000_000L / elapsedNanos : 0;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo.imports;
+
+import com.example.demo.Product;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+import java.util.Comparator;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * One parsed input record. Exactly one of {@code product} and {@code error} is set.
+ *
+ * @param line 1-based line number in the uploaded body
+ */
+public record ImportRow(long line, Product product, String error) {
+
+    static ImportRow parsed(long line, Product product) {
+        return new ImportRow(line, product, null);
+    }
+
+    static ImportRow failed(long line, String error) {
+        return new ImportRow(line, null, error);
+    }
+
+    public boolean isValid() {
+        return error == null;
+    }
+
+    /**
+     * This row, or a failed row listing the violated {@link Product} constraints.
+     */
+    ImportRow validated(Validator validator) {
+        if (!isValid()) {
+            return this;
+        }
+        Set<ConstraintViolation<Product>> violations = validator.validate(product);
+        if (violations.isEmpty()) {
+            return this;
+        }
+        String message = violations.stream()
+                .sorted(Comparator.comparing(v -> v.getPropertyPath().toString()))
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .collect(Collectors.joining("; "));
+        return failed(line, message);
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.demo.imports;
+
+import com.example.demo.Product;
+import com.example.demo.catalog.CatalogVersion;
+import com.example.demo.catalog.ProductCache;
+import com.example.demo.catalog.ProductChangeFeed;
+import com.example.demo.catalog.ProductCountEstimator;
+import com.example.demo.catalog.ProductEvent;
+import com.example.demo.catalog.ProductEventBus;
+import com.example.demo.catalog.ProductNameIndex;
+import com.example.demo.dto.ProductImportResponse;
+import com.example.demo.inventory.InsufficientStockException;
+import com.example.demo.inventory.StockReservationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk loader speaking the PostgreSQL {@code COPY} protocol. An import streams every
+ * valid row into a transaction-scoped staging table with {@code COPY FROM STDIN} and then
+ * merges the staging table into {@code product} with one set-based upsert; the export is
+ * a {@code COPY TO STDOUT} written straight to the caller's stream.
+ * <p>
+ * Unlike the batched loader, the whole import is a single transaction: if the merge
+ * fails, nothing is imported. As that transaction can outlast
+ * {@code products.sync.settle}, it runs under a {@link ProductChangeFeed#hold()}.
+ * <p>
+ * Before the merge, every decrease of an existing product's quantity is withdrawn through
+ * the {@link StockReservationService}, with the product rows locked until the merge commits.
+ * A decrease that would take stock held or confirmed by reservations is refused: the rows
+ * for that product are dropped from the staging table and reported as row errors.
+ */
+@Slf4j
+@Component
+@Profile("postgres")
+public class PostgresCopyProductBulkLoader implements ProductBulkLoader {
+
+    static final String LOADER = "postgres-copy";
+
+    private static final String CREATE_STAGING = """
+            CREATE TEMPORARY TABLE product_import_staging (
+                line     BIGINT       NOT NULL,
+                id       BIGINT,
+                name     VARCHAR(100) NOT NULL,
+                quantity INTEGER      NOT NULL,
+                price    FLOAT8       NOT NULL
+            ) ON COMMIT DROP""";
+
+    private static final String COPY_IN =
+            "COPY product_import_staging (line, id, name, quantity, price) FROM STDIN WITH (FORMAT csv)";
+
+    /**
+     * Existing products whose quantity the latest staging row for them would lower.
+     */
+    private static final String DECREASES = """
+            SELECT l.id, l.line, p.quantity - l.quantity
+            FROM (
+                SELECT DISTINCT ON (id) id, line, quantity
+                FROM product_import_staging
+                WHERE id IS NOT NULL
+                ORDER BY id, line DESC
+            ) l
+            JOIN product p ON p.id = l.id
+            WHERE l.quantity < p.quantity
+            FOR UPDATE OF p""";
+
+    private static final String DROP_STAGED = "DELETE FROM product_import_staging WHERE id = ?";
+
+    private static final String COPY_OUT =
+            "COPY (SELECT id, name, quantity, price FROM product ORDER BY id) TO STDOUT WITH (FORMAT csv, HEADER)";
+
+    /**
+     * Rows with the id of an existing product update it (the last such row wins); all
+     * others are inserted. New ids are drawn from {@code product_seq} one block of
+     * {@link Product#ID_ALLOCATION_SIZE} at a time, the same way Hibernate's pooled
+     * optimizer uses it, so they never collide with ids handed out by the application.
+     * The stock changes are appended to {@code inventory_movement} by the same statement.
+     * Rows and movements are stamped with the clock time of the merge rather than the start
+     * of the transaction, which may lie before a ledger snapshot or a change token handed
+     * out while the copy was running.
+     */
+    private static final String MERGE = """
+            WITH latest AS (
+                SELECT DISTINCT ON (id) id, name, quantity, price
+                FROM product_import_staging
+                WHERE id IS NOT NULL
+                ORDER BY id, line DESC
+            ), updated AS (
+                UPDATE product p
+                SET name = l.name, quantity = l.quantity, price = l.price, version = p.version + 1,
+                    updated_at = CAST(clock_timestamp() AS TIMESTAMP)
+                FROM latest l, product o
+                WHERE p.id = l.id AND o.id = p.id
+                RETURNING p.id, l.quantity - o.quantity AS delta
+            ), fresh AS (
+                SELECT s.name, s.quantity, s.price, row_number() OVER (ORDER BY s.line) - 1 AS rn
+                FROM product_import_staging s
+                WHERE s.id IS NULL OR s.id NOT IN (SELECT id FROM updated)
+            ), blocks AS (
+                SELECT g - 1 AS block, nextval('product_seq') AS hi
+                FROM generate_series(1, (SELECT (count(*) + %1$d - 1) / %1$d FROM fresh)) AS g
+            ), inserted AS (
+                INSERT INTO product (id, name, quantity, price, version, created_at, updated_at)
+                SELECT b.hi - %1$d + 1 + f.rn %% %1$d, f.name, f.quantity, f.price, 0,
+                       CAST(clock_timestamp() AS TIMESTAMP), CAST(clock_timestamp() AS TIMESTAMP)
+                FROM fresh f
+                JOIN blocks b ON b.block = f.rn / %1$d
+                RETURNING id, quantity
+            ), moved AS (
+                INSERT INTO inventory_movement (product_id, delta, reason, occurred_at)
+                SELECT id, delta, 'IMPORT', CAST(clock_timestamp() AS TIMESTAMP) FROM updated WHERE delta <> 0
+                UNION ALL
+                SELECT id, quantity, 'IMPORT', CAST(clock_timestamp() AS TIMESTAMP) FROM inserted WHERE quantity <> 0
+                RETURNING 1
+            )
+            SELECT (SELECT count(*) FROM updated), (SELECT count(*) FROM inserted), (SELECT count(*) FROM moved)"""
+            .formatted(Product.ID_ALLOCATION_SIZE);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final CatalogVersion catalogVersion;
+    private final ProductCountEstimator countEstimator;
+    private final ProductNameIndex nameIndex;
+    private final StockReservationService reservations;
+    private final ProductCache productCache;
+    private final ProductEventBus eventBus;
+    private final ProductChangeFeed changeFeed;
+    private final int chunkSize;
+    private final int maxReportedErrors;
+
+    public PostgresCopyProductBulkLoader(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            Validator validator,
+            ObjectMapper objectMapper,
+            CatalogVersion catalogVersion,
+            ProductCountEstimator countEstimator,
+            ProductNameIndex nameIndex,
+            StockReservationService reservations,
+            ProductCache productCache,
+            ProductEventBus eventBus,
+            ProductChangeFeed changeFeed,
+            @Value("${products.import.chunk-size:1000}") int chunkSize,
+            @Value("${products.import.max-reported-errors:100}") int maxReportedErrors
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.catalogVersion = catalogVersion;
+        this.countEstimator = countEstimator;
+        this.nameIndex = nameIndex;
+        this.reservations = reservations;
+        this.productCache = productCache;
+        this.eventBus = eventBus;
+        this.changeFeed = changeFeed;
+        this.chunkSize = chunkSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    @Override
+    public ProductImportResponse load(InputStream in, ImportFormat format) throws IOException {
+        ImportProgress progress = new ImportProgress(maxReportedErrors);
+        try (ProductImportReader reader = new ProductImportReader(in, format, objectMapper);
+             ProductChangeFeed.Hold hold = changeFeed.hold()) {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+                try {
+                    copyAndMerge(con, reader, progress);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return null;
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (progress.imported > 0) {
+            catalogVersion.bump();
+            countEstimator.recordCreated(progress.created());
+            eventBus.publish(ProductEvent.resync());
+            nameIndex.rebuild();
+        }
+        if (progress.updated > 0) {
+            productCache.clear();
+            reservations.refreshAll();
+        }
+
+        ProductImportResponse response = progress.toResponse(format, LOADER);
+        log.info("Copied {} of {} products in {} ms ({} rows/s, {} updated)",
+                response.getImported(), response.getReceived(), response.getDurationMs(),
+                response.getRowsPerSecond(), response.getUpdated());
+        return response;
+    }
+
+    @Override
+    public void export(OutputStream out) throws IOException {
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+                try {
+                    return copyManager(con).copyOut(COPY_OUT, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+
+    private void copyAndMerge(Connection con, ProductImportReader reader, ImportProgress progress)
+            throws SQLException, IOException {
+        try (PreparedStatement statement = con.prepareStatement(CREATE_STAGING)) {
+            statement.execute();
+        }
+
+        CopyIn copyIn = copyManager(con).copyIn(COPY_IN);
+        try {
+            List<ImportRow> chunk = new ArrayList<>(chunkSize);
+            ImportRow row;
+            while ((row = reader.next()) != null) {
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    copyChunk(copyIn, chunk, progress);
+                    chunk.clear();
+                }
+            }
+            copyChunk(copyIn, chunk, progress);
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+
+        withdrawDecreases(con, progress);
+
+        try (PreparedStatement statement = con.prepareStatement(MERGE);
+             ResultSet counts = statement.executeQuery()) {
+            counts.next();
+            progress.updated = counts.getLong(1);
+            progress.imported = progress.updated + counts.getLong(2);
+        }
+    }
+
+    /**
+     * Take every staged decrease out of available-to-promise, and drop the staged rows of
+     * products whose reservations cannot spare it.
+     */
+    private void withdrawDecreases(Connection con, ImportProgress progress) throws SQLException {
+        List<Long> refused = new ArrayList<>();
+        try (PreparedStatement statement = con.prepareStatement(DECREASES);
+             ResultSet decreases = statement.executeQuery()) {
+            while (decreases.next()) {
+                long id = decreases.getLong(1);
+                int decrease = decreases.getInt(3);
+                try {
+                    reservations.withdraw(id, decrease);
+                } catch (InsufficientStockException e) {
+                    progress.fail(decreases.getLong(2), "quantity: cannot lower the stock of product " + id
+                            + " by " + decrease + ", it is held or confirmed by reservations");
+                    refused.add(id);
+                }
+            }
+        }
+        if (refused.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement statement = con.prepareStatement(DROP_STAGED)) {
+            for (Long id : refused) {
+                statement.setLong(1, id);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+        log.info("Refused to lower the stock of {} reserved products", refused.size());
+    }
+
+    private void copyChunk(CopyIn copyIn, List<ImportRow> chunk, ImportProgress progress) throws SQLException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        progress.received += chunk.size();
+
+        List<ImportRow> checked = chunk.parallelStream()
+                .map(row -> row.validated(validator))
+                .toList();
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(chunk.size() * 64);
+        StringBuilder line = new StringBuilder(128);
+        for (ImportRow row : checked) {
+            if (!row.isValid()) {
+                progress.fail(row.line(), row.error());
+                continue;
+            }
+            Product product = row.product();
+            line.setLength(0);
+            line.append(row.line()).append(',')
+                    .append(product.getId() == null ? "" : product.getId().toString()).append(',')
+                    .append(JdbcBatchProductBulkLoader.quote(product.getName())).append(',')
+                    .append(product.getQuantity()).append(',')
+                    .append(product.getPrice()).append('\n');
+            buffer.writeBytes(line.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        if (buffer.size() > 0) {
+            copyIn.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+        }
+    }
+
+    private static CopyManager copyManager(Connection con) throws SQLException {
+        return con.unwrap(PGConnection.class).getCopyAPI();
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.demo.imports;
+
+import com.example.demo.dto.ProductImportResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Bulk load and unload of the whole product table. The export is CSV with an
+ * {@code id,name,quantity,price} header, which {@link #load} accepts back: rows that
+ * carry the id of an existing product update it, all others are inserted.
+ */
+public interface ProductBulkLoader {
+
+    /**
+     * Import every row of {@code in}.
+     *
+     * @throws IllegalArgumentException if the input cannot be read as {@code format} at all
+     */
+    ProductImportResponse load(InputStream in, ImportFormat format) throws IOException;
+
+    /**
+     * Write every product, ordered by id, to {@code out}.
+     */
+    void export(OutputStream out) throws IOException;
+}
@@ -0,0 +1,62 @@
+package com.example.demo.imports;
+
+import com.example.demo.ProductRepository;
+import com.example.demo.catalog.ProductRow;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Catalog export as NDJSON, one {@code {"id","name","quantity","price"}} object per line,
+ * which {@link ProductBulkLoader#load} accepts back. Rows come from a forward-only cursor
+ * of {@link ProductRow} projections and go straight into a Jackson generator, so memory
+ * use does not depend on the size of the catalog.
+ */
+@Slf4j
+@Service
+public class ProductExportService {
+
+    private final ProductRepository repository;
+    private final ObjectMapper objectMapper;
+
+    public ProductExportService(ProductRepository repository, ObjectMapper objectMapper) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Write every product, ordered by id, to {@code out}.
+     *
+     * @param out the stream to write to; it is not closed
+     */
+    @Transactional(readOnly = true)
+    public void exportNdjson(OutputStream out) throws IOException {
+        long started = System.nanoTime();
+        long rows = 0;
+        try (Stream<ProductRow> products = repository.streamRowsByOrderByIdAsc();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            Iterator<ProductRow> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                ProductRow product = iterator.next();
+                generator.writeStartObject();
+                generator.writeNumberField("id", product.id());
+                generator.writeStringField("name", product.name());
+                generator.writeNumberField("quantity", product.quantity());
+                generator.writeNumberField("price", product.price());
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                rows++;
+            }
+        }
+        log.info("Exported {} products as NDJSON in {} ms", rows, (System.nanoTime() - started) / 1_000_000);
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.demo.imports;
+
+import com.example.demo.Product;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Pull parser over an import body. Rows are read one record at a time, so memory use is
+ * independent of the file size. Malformed records are returned as failed rows rather than
+ * aborting the import; only a missing or unusable CSV header is fatal.
+ * <p>
+ * CSV needs a header naming the {@code name}, {@code quantity} and {@code price} columns
+ * (in any order; other columns are ignored). Fields may be quoted with {@code "}, and a
+ * quoted field may span lines, as the export writes names containing line breaks; such a
+ * record is reported under the line it starts on and may be at most
+ * {@value #MAX_RECORD_CHARS} characters long. NDJSON expects one object per line with the same properties.
+ * <p>
+ * Both formats accept an optional {@code id}. Rows that carry one update that product
+ * if it exists, so a file produced by the product export can be loaded back.
+ */
+public class ProductImportReader implements Closeable {
+
+    static final List<String> COLUMNS = List.of("name", "quantity", "price");
+    static final String ID_COLUMN = "id";
+    static final int MAX_RECORD_CHARS = 1 << 20;
+
+    private final BufferedReader reader;
+    private final ImportFormat format;
+    private final ObjectMapper objectMapper;
+    private Map<String, Integer> csvColumns;
+    private long line;
+
+    public ProductImportReader(InputStream in, ImportFormat format, ObjectMapper objectMapper) {
+        this.reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+        this.format = format;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * The next record, or {@code null} at the end of the input. Blank lines are skipped.
+     *
+     * @throws IllegalArgumentException if the CSV header is missing a required column
+     */
+    public ImportRow next() {
+        try {
+            if (format == ImportFormat.CSV && csvColumns == null) {
+                readCsvHeader();
+            }
+            String text;
+            do {
+                text = reader.readLine();
+                line++;
+            } while (text != null && text.isBlank());
+            if (text == null) {
+                return null;
+            }
+            return format == ImportFormat.CSV ? parseCsv(text) : parseJson(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void readCsvHeader() throws IOException {
+        String header = reader.readLine();
+        line++;
+        if (header == null) {
+            throw new IllegalArgumentException("CSV import is empty");
+        }
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        List<String> names = splitCsv(header);
+        if (names == null) {
+            throw new IllegalArgumentException("CSV header has an unterminated quoted field");
+        }
+        csvColumns = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            csvColumns.putIfAbsent(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String column : COLUMNS) {
+            if (!csvColumns.containsKey(column)) {
+                throw new IllegalArgumentException("CSV header is missing column: " + column);
+            }
+        }
+    }
+
+    /**
+     * Parse the record starting with {@code text}, reading further lines while a quoted
+     * field is still open.
+     */
+    private ImportRow parseCsv(String text) throws IOException {
+        long start = line;
+        StringBuilder record = null;
+        List<String> fields = splitCsv(text);
+        while (fields == null) {
+            String more = reader.readLine();
+            if (more == null) {
+                return ImportRow.failed(start, "Unterminated quoted field");
+            }
+            line++;
+            if (record == null) {
+                record = new StringBuilder(text);
+            }
+            record.append('\n').append(more);
+            if (record.length() > MAX_RECORD_CHARS) {
+                return ImportRow.failed(start, "Record longer than " + MAX_RECORD_CHARS + " characters");
+            }
+            fields = splitCsv(record.toString());
+        }
+        return parseCsv(start, fields);
+    }
+
+    private ImportRow parseCsv(long line, List<String> fields) {
+        try {
+            return ImportRow.parsed(line, product(
+                    csvId(fields),
+                    csvField(fields, "name"),
+                    Integer.parseInt(csvField(fields, "quantity").trim()),
+                    Double.parseDouble(csvField(fields, "price").trim())));
+        } catch (NumberFormatException e) {
+            return ImportRow.failed(line, "Invalid number: " + e.getMessage());
+        } catch (IndexOutOfBoundsException e) {
+            return ImportRow.failed(line, "Expected " + csvColumns.size() + " fields but found " + fields.size());
+        }
+    }
+
+    private String csvField(List<String> fields, String column) {
+        return fields.get(csvColumns.get(column));
+    }
+
+    private Long csvId(List<String> fields) {
+        Integer index = csvColumns.get(ID_COLUMN);
+        if (index == null || index >= fields.size() || fields.get(index).isBlank()) {
+            return null;
+        }
+        return Long.parseLong(fields.get(index).trim());
+    }
+
+    private ImportRow parseJson(String text) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(text);
+        } catch (JsonProcessingException e) {
+            return ImportRow.failed(line, "Invalid JSON: " + e.getOriginalMessage());
+        }
+        if (!node.isObject()) {
+            return ImportRow.failed(line, "Expected a JSON object");
+        }
+        JsonNode id = node.get(ID_COLUMN);
+        JsonNode name = node.get("name");
+        JsonNode quantity = node.get("quantity");
+        JsonNode price = node.get("price");
+        if (quantity == null || !quantity.canConvertToInt() || !quantity.isIntegralNumber()) {
+            return ImportRow.failed(line, "quantity must be an integer");
+        }
+        if (price == null || !price.isNumber()) {
+            return ImportRow.failed(line, "price must be a number");
+        }
+        if (id != null && !id.isNull() && (!id.canConvertToLong() || !id.isIntegralNumber())) {
+            return ImportRow.failed(line, "id must be an integer");
+        }
+        return ImportRow.parsed(line, product(
+                id == null || id.isNull() ? null : id.longValue(),
+                name == null || name.isNull() ? null : name.asText(),
+                quantity.intValue(),
+                price.doubleValue()));
+    }
+
+    private static Product product(Long id, String name, int quantity, double price) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        product.setQuantity(quantity);
+        product.setPrice(price);
+        return product;
+    }
+
+    /**
+     * Split one CSV record into fields, honouring {@code "} quoting and {@code ""} escapes.
+     *
+     * @return the fields, or {@code null} if a quoted field is not closed
+     */
+    static List<String> splitCsv(String text) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.demo.imports;
+
+import com.example.demo.Product;
+import com.example.demo.catalog.CatalogVersion;
+import com.example.demo.catalog.ProductCache;
+import com.example.demo.catalog.ProductCountEstimator;
+import com.example.demo.catalog.ProductEvent;
+import com.example.demo.catalog.ProductEventBus;
+import com.example.demo.catalog.ProductNameIndex;
+import com.example.demo.dto.ProductImportResponse;
+import com.example.demo.inventory.InsufficientStockException;
+import com.example.demo.inventory.InventoryLedger;
+import com.example.demo.inventory.MovementReason;
+import com.example.demo.inventory.StockReservationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Loads large product files without a request per item. The body is parsed as a stream
+ * and handled in chunks: each chunk is validated in parallel and its valid rows are
+ * written in one transaction, using JDBC batching and ids pre-allocated from the
+ * product sequence. Only one chunk is held in memory at a time.
+ * <p>
+ * Chunks are committed independently, so rows of earlier chunks stay imported if a
+ * later chunk fails. A row that lowers the stock of an existing product first withdraws the
+ * difference through the {@link StockReservationService}; if that would take stock that is
+ * held or confirmed, the row is refused with a row error and the rest of the chunk goes on.
+ */
+@Slf4j
+@Service
+public class ProductImportService {
+
+    static final String LOADER = "jdbc-batch";
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final CatalogVersion catalogVersion;
+    private final ProductCountEstimator countEstimator;
+    private final ProductNameIndex nameIndex;
+    private final StockReservationService reservations;
+    private final InventoryLedger ledger;
+    private final ProductCache productCache;
+    private final ProductEventBus eventBus;
+    private final int chunkSize;
+    private final int maxReportedErrors;
+
+    public ProductImportService(
+            EntityManager entityManager,
+            TransactionTemplate transactionTemplate,
+            Validator validator,
+            ObjectMapper objectMapper,
+            CatalogVersion catalogVersion,
+            ProductCountEstimator countEstimator,
+            ProductNameIndex nameIndex,
+            StockReservationService reservations,
+            InventoryLedger ledger,
+            ProductCache productCache,
+            ProductEventBus eventBus,
+            @Value("${products.import.chunk-size:1000}") int chunkSize,
+            @Value("${products.import.max-reported-errors:100}") int maxReportedErrors
+    ) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.catalogVersion = catalogVersion;
+        this.countEstimator = countEstimator;
+        this.nameIndex = nameIndex;
+        this.reservations = reservations;
+        this.ledger = ledger;
+        this.productCache = productCache;
+        this.eventBus = eventBus;
+        this.chunkSize = chunkSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    /**
+     * Import every row of {@code in}.
+     *
+     * @throws IllegalArgumentException if the input cannot be read as {@code format} at all
+     */
+    public ProductImportResponse importProducts(InputStream in, ImportFormat format) throws IOException {
+        ImportProgress progress = new ImportProgress(maxReportedErrors);
+        try (ProductImportReader reader = new ProductImportReader(in, format, objectMapper)) {
+            List<ImportRow> chunk = new ArrayList<>(chunkSize);
+            ImportRow row;
+            while ((row = reader.next()) != null) {
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    processChunk(chunk, progress);
+                    chunk.clear();
+                }
+            }
+            processChunk(chunk, progress);
+        } finally {
+            if (progress.imported > 0) {
+                catalogVersion.bump();
+                countEstimator.recordCreated(progress.created());
+                eventBus.publish(ProductEvent.resync());
+            }
+            if (progress.updated > 0) {
+                reservations.refreshAll();
+            }
+        }
+
+        ProductImportResponse response = progress.toResponse(format, LOADER);
+        log.info("Imported {} of {} products in {} ms ({} rows/s)",
+                response.getImported(), response.getReceived(), response.getDurationMs(), response.getRowsPerSecond());
+        return response;
+    }
+
+    private void processChunk(List<ImportRow> chunk, ImportProgress progress) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        progress.received += chunk.size();
+
+        List<ImportRow> checked = chunk.parallelStream()
+                .map(row -> row.validated(validator))
+                .toList();
+        List<ImportRow> valid = new ArrayList<>(checked.size());
+        for (ImportRow row : checked) {
+            if (row.isValid()) {
+                valid.add(row);
+            } else {
+                progress.fail(row.line(), row.error());
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        Written written;
+        try {
+            written = transactionTemplate.execute(status -> {
+                Written result = write(valid);
+                entityManager.flush();
+                entityManager.clear();
+                return result;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Import chunk starting at line {} was rejected: {}", chunk.get(0).line(), e.getMessage());
+            for (ImportRow row : checked) {
+                if (row.isValid()) {
+                    progress.fail(row.line(), "Chunk rejected by the database: " + e.getMessage());
+                }
+            }
+            return;
+        }
+        written.refused().forEach(row -> progress.fail(row.line(), row.error()));
+        progress.imported += written.products().size();
+        progress.updated += written.updatedIds().size();
+        written.products().forEach(nameIndex::put);
+        if (!written.updatedIds().isEmpty()) {
+            productCache.evictAll(written.updatedIds());
+        }
+    }
+
+    /**
+     * Persist new rows and copy rows carrying the id of an existing product onto it.
+     * Rows with an unknown id are inserted under a freshly allocated one. The resulting
+     * stock changes go to the {@link InventoryLedger} as one batch.
+     */
+    private Written write(List<ImportRow> rows) {
+        Map<Long, Product> existing = findExisting(rows);
+        List<Product> products = new ArrayList<>(rows.size());
+        List<InventoryLedger.Movement> movements = new ArrayList<>(rows.size());
+        List<Long> updatedIds = new ArrayList<>();
+        List<ImportRow> refused = new ArrayList<>();
+        for (ImportRow imported : rows) {
+            Product row = imported.product();
+            Product current = row.getId() == null ? null : existing.get(row.getId());
+            if (current == null) {
+                row.setId(null);
+                entityManager.persist(row);
+                products.add(row);
+                movements.add(new InventoryLedger.Movement(row.getId(), row.getQuantity(), MovementReason.IMPORT));
+            } else {
+                int delta = row.getQuantity() - current.getQuantity();
+                if (delta < 0) {
+                    try {
+                        reservations.withdraw(current.getId(), -delta);
+                    } catch (InsufficientStockException e) {
+                        refused.add(ImportRow.failed(imported.line(), "quantity: cannot lower the stock of product "
+                                + current.getId() + " by " + -delta + ", it is held or confirmed by reservations"));
+                        continue;
+                    }
+                }
+                movements.add(new InventoryLedger.Movement(current.getId(), delta, MovementReason.IMPORT));
+                current.setName(row.getName());
+                current.setQuantity(row.getQuantity());
+                current.setPrice(row.getPrice());
+                products.add(current);
+                updatedIds.add(current.getId());
+            }
+        }
+        ledger.append(movements);
+        return new Written(products, updatedIds, refused);
+    }
+
+    private Map<Long, Product> findExisting(List<ImportRow> rows) {
+        List<Long> ids = rows.stream()
+                .map(row -> row.product().getId())
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return entityManager.createQuery("SELECT p FROM Product p WHERE p.id IN :ids", Product.class)
+                .setParameter("ids", ids)
+                .getResultStream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+    }
+
+    private record Written(List<Product> products, List<Long> updatedIds, List<ImportRow> refused) {
+    }
+}
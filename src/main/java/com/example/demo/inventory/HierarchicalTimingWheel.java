@@ -0,0 +1,139 @@
+package com.example.demo.inventory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel for large numbers of short-lived timeouts. Level 0 has
+ * {@code wheelSize} buckets of {@code tickMillis} each; every further level is created
+ * on demand with buckets as wide as the whole level below it. Adding a timeout and
+ * expiring one are O(1); an entry is only touched again when the bucket it sits in
+ * comes due, at which point it is either expired or cascades into a finer level.
+ * <p>
+ * Timeouts fire with tick resolution: an entry expires on the first {@link #advance}
+ * whose time reaches the start of its tick. Cancelled items are not removed; callers
+ * ignore them when they expire. Instances are safe for concurrent use.
+ *
+ * @param <T> the item to hand back on expiry
+ */
+class HierarchicalTimingWheel<T> {
+
+    private final int wheelSize;
+    private final List<Level> levels = new ArrayList<>();
+    private int size;
+
+    HierarchicalTimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis < 1 || wheelSize < 2) {
+            throw new IllegalArgumentException("Timing wheel needs a positive tick and at least two buckets");
+        }
+        this.wheelSize = wheelSize;
+        levels.add(new Level(tickMillis, startMillis));
+    }
+
+    /**
+     * Schedule {@code item} to expire at {@code expiresAtMillis}.
+     *
+     * @return false if that time is already due, in which case nothing was scheduled
+     */
+    synchronized boolean add(T item, long expiresAtMillis) {
+        if (!place(new Timeout<>(item, expiresAtMillis))) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Move the clock to {@code nowMillis} and hand every item that came due to {@code expired}.
+     * The callback runs outside the wheel's lock.
+     */
+    void advance(long nowMillis, Consumer<? super T> expired) {
+        List<T> due = new ArrayList<>();
+        synchronized (this) {
+            List<Timeout<T>> drained = new ArrayList<>();
+            for (Level level : levels) {
+                level.advanceTo(nowMillis, drained);
+            }
+            for (Timeout<T> timeout : drained) {
+                if (!place(timeout)) {
+                    due.add(timeout.item());
+                    size--;
+                }
+            }
+        }
+        due.forEach(expired);
+    }
+
+    /**
+     * Number of scheduled items, including cancelled ones that have not expired yet.
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Put a timeout into the finest level that can hold it.
+     *
+     * @return false if it is already due
+     */
+    private boolean place(Timeout<T> timeout) {
+        Level level = levels.get(0);
+        if (timeout.expiresAt() < level.currentTime + level.tick) {
+            return false;
+        }
+        for (int i = 0; ; i++) {
+            level = levels.get(i);
+            if (timeout.expiresAt() < level.currentTime + level.interval) {
+                level.bucket(timeout.expiresAt()).add(timeout);
+                return true;
+            }
+            if (i + 1 == levels.size()) {
+                levels.add(new Level(level.interval, levels.get(0).currentTime));
+            }
+        }
+    }
+
+    private record Timeout<T>(T item, long expiresAt) {
+    }
+
+    private final class Level {
+        private final long tick;
+        private final long interval;
+        private final ArrayDeque<Timeout<T>>[] buckets;
+        private long currentTime;
+
+        @SuppressWarnings("unchecked")
+        Level(long tick, long startMillis) {
+            this.tick = tick;
+            this.interval = tick * wheelSize;
+            this.buckets = new ArrayDeque[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new ArrayDeque<>();
+            }
+            this.currentTime = startMillis - Math.floorMod(startMillis, tick);
+        }
+
+        ArrayDeque<Timeout<T>> bucket(long time) {
+            return buckets[(int) Math.floorMod(Math.floorDiv(time, tick), (long) wheelSize)];
+        }
+
+        /**
+         * Move to the tick containing {@code nowMillis}, draining every bucket passed on the way.
+         */
+        void advanceTo(long nowMillis, List<Timeout<T>> drained) {
+            long target = nowMillis - Math.floorMod(nowMillis, tick);
+            if (target <= currentTime) {
+                return;
+            }
+            long steps = Math.min((target - currentTime) / tick, wheelSize);
+            for (long step = 1; step <= steps; step++) {
+                ArrayDeque<Timeout<T>> bucket = bucket(target - (steps - step) * tick);
+                drained.addAll(bucket);
+                bucket.clear();
+            }
+            currentTime = target;
+        }
+    }
+}
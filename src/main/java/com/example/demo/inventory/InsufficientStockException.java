@@ -0,0 +1,24 @@
+package com.example.demo.inventory;
+
+/**
+ * A stock change was refused because it would take a product's quantity below zero.
+ */
+public class InsufficientStockException extends RuntimeException {
+
+    private final Long productId;
+    private final int delta;
+
+    public InsufficientStockException(Long productId, int delta) {
+        super("Insufficient stock for product " + productId + " to apply " + delta);
+        this.productId = productId;
+        this.delta = delta;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+
+    public int getDelta() {
+        return delta;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.demo.inventory;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Append-only record of every stock change. Callers append movements in the same
+ * transaction that changes {@code product.quantity}, as one JDBC batch per call, so the
+ * ledger and the product row commit or roll back together.
+ * <p>
+ * Reading a quantity never replays the whole history: snapshots taken every
+ * {@code inventory.ledger.snapshot-interval} fold the movements up to that point into
+ * one row per product, and a lookup adds only the movements after the latest snapshot.
+ * Snapshots lag the clock by {@code inventory.ledger.snapshot-grace}, so transactions
+ * that were still open when a snapshot was cut cannot slip in behind it.
+ */
+@Slf4j
+@Component
+public class InventoryLedger {
+
+    /**
+     * Lower bound for movements of products that have no snapshot yet.
+     */
+    static final Timestamp BEGINNING = Timestamp.valueOf(LocalDateTime.of(1970, 1, 1, 0, 0));
+
+    private static final String APPEND =
+            "INSERT INTO inventory_movement (product_id, delta, reason, occurred_at) VALUES (?, ?, ?, ?)";
+
+    private static final String LATEST_SNAPSHOT = """
+            SELECT quantity, as_of FROM inventory_snapshot
+            WHERE product_id = ? AND as_of <= ?
+            ORDER BY as_of DESC
+            LIMIT 1""";
+
+    private static final String TAIL_SUM = """
+            SELECT COALESCE(SUM(delta), 0) FROM inventory_movement
+            WHERE product_id = ? AND occurred_at > ? AND occurred_at <= ?""";
+
+    /**
+     * One new snapshot for every product that moved since its latest snapshot.
+     */
+    private static final String TAKE_SNAPSHOTS = """
+            INSERT INTO inventory_snapshot (product_id, quantity, as_of)
+            SELECT m.product_id,
+                   COALESCE((SELECT s.quantity FROM inventory_snapshot s
+                             WHERE s.product_id = m.product_id
+                             ORDER BY s.as_of DESC
+                             LIMIT 1), 0) + SUM(m.delta),
+                   ?
+            FROM inventory_movement m
+            WHERE m.occurred_at <= ?
+              AND m.occurred_at > COALESCE((SELECT MAX(s.as_of) FROM inventory_snapshot s
+                                            WHERE s.product_id = m.product_id), ?)
+            GROUP BY m.product_id""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration snapshotGrace;
+
+    public InventoryLedger(
+            JdbcTemplate jdbcTemplate,
+            @Value("${inventory.ledger.snapshot-grace:5m}") Duration snapshotGrace
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotGrace = snapshotGrace;
+    }
+
+    /**
+     * A stock change to append.
+     */
+    public record Movement(Long productId, long delta, MovementReason reason) {
+    }
+
+    public void record(Long productId, long delta, MovementReason reason) {
+        append(List.of(new Movement(productId, delta, reason)));
+    }
+
+    /**
+     * Append {@code movements} in one batch, skipping zero deltas. Joins the caller's transaction.
+     */
+    public void append(List<Movement> movements) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batch = movements.stream()
+                .filter(movement -> movement.delta() != 0)
+                .map(movement -> new Object[]{
+                        movement.productId(), movement.delta(), movement.reason().name(), now})
+                .toList();
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(APPEND, batch);
+        }
+    }
+
+    /**
+     * Quantity of a product according to the ledger at {@code asOf}: the latest snapshot
+     * not after that time plus the movements between the two.
+     */
+    @Transactional(readOnly = true)
+    public long quantityAsOf(Long productId, LocalDateTime asOf) {
+        Timestamp until = Timestamp.valueOf(asOf);
+        long base = 0;
+        Timestamp from = BEGINNING;
+        try {
+            SnapshotRow snapshot = jdbcTemplate.queryForObject(LATEST_SNAPSHOT,
+                    (rs, rowNum) -> new SnapshotRow(rs.getLong(1), rs.getTimestamp(2)), productId, until);
+            base = snapshot.quantity();
+            from = snapshot.asOf();
+        } catch (EmptyResultDataAccessException e) {
+            // no snapshot yet: replay from the first movement
+        }
+        Long tail = jdbcTemplate.queryForObject(TAIL_SUM, Long.class, productId, from, until);
+        return base + (tail == null ? 0 : tail);
+    }
+
+    public long currentQuantity(Long productId) {
+        return quantityAsOf(productId, LocalDateTime.now());
+    }
+
+    /**
+     * Fold the movements since each product's latest snapshot into a new snapshot.
+     *
+     * @return the number of snapshots written
+     */
+    @Scheduled(fixedDelayString = "${inventory.ledger.snapshot-interval:3600000}")
+    @Transactional
+    public int takeSnapshots() {
+        Timestamp asOf = Timestamp.valueOf(LocalDateTime.now().minus(snapshotGrace));
+        int written = jdbcTemplate.update(TAKE_SNAPSHOTS, asOf, asOf, BEGINNING);
+        if (written > 0) {
+            log.info("Wrote {} inventory snapshots as of {}", written, asOf);
+        }
+        return written;
+    }
+
+    private record SnapshotRow(long quantity, Timestamp asOf) {
+    }
+}
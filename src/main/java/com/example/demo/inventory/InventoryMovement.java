@@ -0,0 +1,40 @@
+package com.example.demo.inventory;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/**
+ * One signed change of a product's stock. Rows are appended by {@link InventoryLedger}
+ * in the same transaction as the change to {@code product.quantity} and never updated.
+ * There is no foreign key to {@code product}, so history outlives deleted products.
+ */
+@Entity
+@Immutable
+@Table(name = "inventory_movement", indexes = {
+        @Index(name = "idx_inventory_movement_product_time", columnList = "product_id, occurred_at")
+})
+@Data
+@NoArgsConstructor
+public class InventoryMovement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private long delta;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private MovementReason reason;
+
+    @Column(name = "occurred_at", nullable = false)
+    private LocalDateTime occurredAt;
+}
@@ -0,0 +1,12 @@
+package com.example.demo.inventory;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface InventoryMovementRepository extends JpaRepository<InventoryMovement, Long> {
+
+    Page<InventoryMovement> findByProductIdOrderByOccurredAtDescIdDesc(Long productId, Pageable pageable);
+}
@@ -0,0 +1,143 @@
+package com.example.demo.inventory;
+
+import com.example.demo.dto.ReconciliationReport;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks that snapshot plus ledger tail equals {@code product.quantity} for every product.
+ * The id range is cut into slices that are compared in parallel; each slice is a single
+ * statement, so it sees the product rows and the ledger at the same point in time even
+ * while stock keeps moving.
+ */
+@Slf4j
+@Service
+public class InventoryReconciliationService {
+
+    private static final String ID_RANGE = "SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM product";
+
+    private static final String COMPARE_SLICE = """
+            SELECT p.id, p.quantity,
+                   COALESCE(s.quantity, 0) + COALESCE((SELECT SUM(m.delta) FROM inventory_movement m
+                                                       WHERE m.product_id = p.id
+                                                         AND m.occurred_at > COALESCE(s.as_of, ?)), 0)
+            FROM product p
+            LEFT JOIN inventory_snapshot s
+                   ON s.product_id = p.id
+                  AND s.as_of = (SELECT MAX(x.as_of) FROM inventory_snapshot x WHERE x.product_id = p.id)
+            WHERE p.id >= ? AND p.id < ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long sliceSize;
+    private final int maxReportedMismatches;
+    private final ExecutorService executor;
+
+    public InventoryReconciliationService(
+            JdbcTemplate jdbcTemplate,
+            @Value("${inventory.reconciliation.parallelism:4}") int parallelism,
+            @Value("${inventory.reconciliation.slice-size:10000}") long sliceSize,
+            @Value("${inventory.reconciliation.max-reported-mismatches:100}") int maxReportedMismatches
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sliceSize = sliceSize;
+        this.maxReportedMismatches = maxReportedMismatches;
+        this.executor = Executors.newFixedThreadPool(parallelism,
+                Thread.ofPlatform().name("inventory-reconcile-", 0).daemon().factory());
+    }
+
+    @Scheduled(cron = "${inventory.reconciliation.cron:0 30 2 * * *}")
+    public void reconcileNightly() {
+        ReconciliationReport report = reconcile();
+        if (report.getMismatched() > 0) {
+            log.warn("Inventory reconciliation found {} of {} products out of balance: {}",
+                    report.getMismatched(), report.getChecked(), report.getMismatches());
+        }
+    }
+
+    public ReconciliationReport reconcile() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long started = System.nanoTime();
+
+        Map<String, Object> range = jdbcTemplate.queryForMap(ID_RANGE);
+        List<Future<SliceResult>> slices = new ArrayList<>();
+        if (range.get("min_id") != null) {
+            long minId = ((Number) range.get("min_id")).longValue();
+            long maxId = ((Number) range.get("max_id")).longValue();
+            for (long from = minId; from <= maxId; from += sliceSize) {
+                long sliceFrom = from;
+                long sliceTo = Math.min(from + sliceSize, maxId + 1);
+                slices.add(executor.submit(() -> compare(sliceFrom, sliceTo)));
+            }
+        }
+
+        long checked = 0;
+        List<ReconciliationReport.Mismatch> mismatches = new ArrayList<>();
+        long mismatched = 0;
+        try {
+            for (Future<SliceResult> slice : slices) {
+                SliceResult result = slice.get();
+                checked += result.checked();
+                mismatched += result.mismatches().size();
+                for (ReconciliationReport.Mismatch mismatch : result.mismatches()) {
+                    if (mismatches.size() < maxReportedMismatches) {
+                        mismatches.add(mismatch);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            slices.forEach(slice -> slice.cancel(true));
+            throw new IllegalStateException("Inventory reconciliation was interrupted", e);
+        } catch (ExecutionException e) {
+            slices.forEach(slice -> slice.cancel(true));
+            throw new IllegalStateException("Inventory reconciliation failed: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        long durationMs = (System.nanoTime() - started) / 1_000_000;
+        log.info("Reconciled {} products against the inventory ledger in {} ms, {} mismatched",
+                checked, durationMs, mismatched);
+        return ReconciliationReport.builder()
+                .startedAt(startedAt)
+                .checked(checked)
+                .mismatched(mismatched)
+                .durationMs(durationMs)
+                .mismatches(mismatches)
+                .mismatchesTruncated(mismatched > mismatches.size())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private SliceResult compare(long fromId, long toId) {
+        List<ReconciliationReport.Mismatch> mismatches = new ArrayList<>();
+        long[] checked = {0};
+        jdbcTemplate.query(COMPARE_SLICE, rs -> {
+            checked[0]++;
+            long productQuantity = rs.getLong(2);
+            long ledgerQuantity = rs.getLong(3);
+            if (productQuantity != ledgerQuantity) {
+                mismatches.add(new ReconciliationReport.Mismatch(rs.getLong(1), productQuantity, ledgerQuantity));
+            }
+        }, InventoryLedger.BEGINNING, fromId, toId);
+        return new SliceResult(checked[0], mismatches);
+    }
+
+    private record SliceResult(long checked, List<ReconciliationReport.Mismatch> mismatches) {
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.demo.inventory;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.time.LocalDateTime;
+
+/**
+ * A product's quantity as of {@code asOf}: the previous snapshot plus every movement up
+ * to that time. Written by {@link InventoryLedger#takeSnapshots()}.
+ */
+@Entity
+@Immutable
+@Table(name = "inventory_snapshot", indexes = {
+        @Index(name = "idx_inventory_snapshot_product_time", columnList = "product_id, as_of")
+})
+@Data
+@NoArgsConstructor
+public class InventorySnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private long quantity;
+
+    @Column(name = "as_of", nullable = false)
+    private LocalDateTime asOf;
+}
@@ -0,0 +1,23 @@
+package com.example.demo.inventory;
+
+/**
+ * Why a product's stock changed; stored with every {@link InventoryMovement}.
+ */
+public enum MovementReason {
+    /** Stock a product already had when the ledger was introduced. */
+    OPENING_BALANCE,
+    /** Quantity a product was created with. */
+    INITIAL_STOCK,
+    /** Goods received. */
+    RECEIPT,
+    /** Goods picked or shipped outside a reservation. */
+    PICK,
+    /** Confirmed reservation written back to the product. */
+    SALE,
+    /** Quantity overwritten by a full product update. */
+    CORRECTION,
+    /** Quantity set by a bulk import. */
+    IMPORT,
+    /** Remaining stock of a deleted product. */
+    DELETION
+}
@@ -0,0 +1,57 @@
+package com.example.demo.inventory;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stock held for a cart or pick list by {@link StockReservationService}. Every transition
+ * is a compare-and-set, so a release racing an expiry or a confirmation is applied only once.
+ * A confirmation passes through {@link Status#CONFIRMING} while its write-back runs and
+ * goes back to {@link Status#HELD} only if that write-back failed.
+ */
+@Getter
+public class Reservation {
+
+    public enum Status {
+        HELD, CONFIRMING, CONFIRMED, RELEASED, EXPIRED
+    }
+
+    private final UUID id;
+    private final Long productId;
+    private final int quantity;
+    private final Instant expiresAt;
+    @Getter(lombok.AccessLevel.NONE)
+    private final AtomicReference<Status> status = new AtomicReference<>(Status.HELD);
+
+    Reservation(UUID id, Long productId, int quantity, Instant expiresAt) {
+        this.id = id;
+        this.productId = productId;
+        this.quantity = quantity;
+        this.expiresAt = expiresAt;
+    }
+
+    public Status getStatus() {
+        return status.get();
+    }
+
+    /**
+     * Leave {@link Status#HELD} for {@code outcome}.
+     *
+     * @return false if the reservation was already settled
+     */
+    boolean settle(Status outcome) {
+        return transition(Status.HELD, outcome);
+    }
+
+    /**
+     * Move from {@code from} to {@code to}.
+     *
+     * @return false if the reservation was not in {@code from}
+     */
+    boolean transition(Status from, Status to) {
+        return status.compareAndSet(from, to);
+    }
+}
@@ -0,0 +1,550 @@
+package com.example.demo.inventory;
+
+import com.example.demo.ProductRepository;
+import com.example.demo.catalog.CatalogVersion;
+import com.example.demo.catalog.ProductCache;
+import com.example.demo.catalog.ProductEvent;
+import com.example.demo.catalog.ProductEventBus;
+import com.example.demo.datasource.PrimaryReads;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds stock for carts and pick lists without touching the {@code product} row on
+ * every hold and release. Available-to-promise is tracked per product in memory:
+ * the on-hand quantity is read from the primary database once and then reduced by what is
+ * held, being confirmed, or being withdrawn by an uncommitted stock change. Per-product
+ * counters are guarded by a fixed set of striped locks, so operations on different
+ * products rarely contend.
+ * <p>
+ * Unconfirmed reservations expire after their TTL through a {@link HierarchicalTimingWheel}.
+ * Confirming is the decisive step: the quantity is deducted from {@code product.quantity}
+ * by a conditional update before {@link #confirm(UUID)} returns, and the confirmation is
+ * refused if the row can no longer cover it. Confirmations arriving while a write-back is
+ * running are written together by the next one, in one JDBC batch and transaction, so
+ * concurrent confirmations share their round trips instead of queueing for the row.
+ * Stock changes made elsewhere on this node call {@link #refresh(Long)}, and the on-hand
+ * quantity is re-read after they commit. Changes that lower the stock first take the
+ * quantity out of available-to-promise through {@link #withdraw(Long, int)}, so they cannot
+ * pick stock that is already held.
+ * <p>
+ * Holds live in the memory of the node that made them, and a reservation can only be read,
+ * confirmed or released there. Nodes do not see each other's holds, so with several nodes
+ * two of them can hold the same last units; the conditional update then lets only one of
+ * the confirmations through, and the other caller gets an {@link InsufficientStockException}.
+ */
+@Slf4j
+@Service
+public class StockReservationService {
+
+    static final int STRIPES = 64;
+
+    private static final String WRITE_BACK =
+            "UPDATE product SET quantity = quantity - ?, version = version + 1, updated_at = ? WHERE id = ? AND quantity >= ?";
+
+    private final ProductRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PrimaryReads primaryReads;
+    private final InventoryLedger ledger;
+    private final ProductCache productCache;
+    private final CatalogVersion catalogVersion;
+    private final ProductEventBus eventBus;
+    private final Duration defaultTtl;
+    private final Duration maxTtl;
+    private final long tickMillis;
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final Map<Long, ProductStock> stocks = new ConcurrentHashMap<>();
+    private final Map<UUID, Reservation> reservations = new ConcurrentHashMap<>();
+    private final Queue<Confirmation> confirmations = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock writer = new ReentrantLock();
+    private final HierarchicalTimingWheel<Reservation> expiries;
+    private final Counter reserved;
+    private final Counter rejected;
+    private final Counter expired;
+    private final Counter confirmed;
+    private final Counter shortConfirmations;
+
+    public StockReservationService(
+            ProductRepository repository,
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            PrimaryReads primaryReads,
+            InventoryLedger ledger,
+            ProductCache productCache,
+            CatalogVersion catalogVersion,
+            ProductEventBus eventBus,
+            MeterRegistry meterRegistry,
+            @Value("${inventory.reservations.default-ttl:15m}") Duration defaultTtl,
+            @Value("${inventory.reservations.max-ttl:2h}") Duration maxTtl,
+            @Value("${inventory.reservations.tick-millis:100}") long tickMillis,
+            @Value("${inventory.reservations.wheel-size:512}") int wheelSize
+    ) {
+        this.repository = repository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.primaryReads = primaryReads;
+        this.ledger = ledger;
+        this.productCache = productCache;
+        this.catalogVersion = catalogVersion;
+        this.eventBus = eventBus;
+        this.defaultTtl = defaultTtl;
+        this.maxTtl = maxTtl;
+        this.tickMillis = tickMillis;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.expiries = new HierarchicalTimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+
+        Gauge.builder("inventory.reservations.held", reservations, Map::size)
+                .description("Reservations currently holding stock")
+                .register(meterRegistry);
+        Gauge.builder("inventory.reservations.confirming", confirmations, Queue::size)
+                .description("Confirmations waiting for a write-back")
+                .register(meterRegistry);
+        this.reserved = Counter.builder("inventory.reservations").tag("outcome", "reserved").register(meterRegistry);
+        this.rejected = Counter.builder("inventory.reservations").tag("outcome", "rejected").register(meterRegistry);
+        this.expired = Counter.builder("inventory.reservations").tag("outcome", "expired").register(meterRegistry);
+        this.confirmed = Counter.builder("inventory.reservations").tag("outcome", "confirmed").register(meterRegistry);
+        this.shortConfirmations = Counter.builder("inventory.reservations").tag("outcome", "short")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Hold {@code quantity} units of a product for {@code ttl}, or the default TTL if null.
+     *
+     * @return the reservation, or empty if there is no such product
+     * @throws InsufficientStockException if less than {@code quantity} is available to promise
+     * @throws IllegalArgumentException if the quantity or TTL is out of range
+     */
+    public Optional<Reservation> reserve(Long productId, int quantity, Duration ttl) {
+        if (quantity < 1) {
+            throw new IllegalArgumentException("Reservation quantity must be at least one");
+        }
+        Duration effectiveTtl = ttl == null ? defaultTtl : ttl;
+        if (effectiveTtl.toMillis() < tickMillis || effectiveTtl.compareTo(maxTtl) > 0) {
+            throw new IllegalArgumentException("Reservation TTL must be between " + tickMillis + " ms and " + maxTtl);
+        }
+
+        ReentrantLock lock = stripe(productId);
+        lock.lock();
+        try {
+            ProductStock stock = loadedStock(productId);
+            if (stock == null) {
+                return Optional.empty();
+            }
+            if (stock.available() < quantity) {
+                rejected.increment();
+                throw new InsufficientStockException(productId, -quantity);
+            }
+            stock.held += quantity;
+        } finally {
+            lock.unlock();
+        }
+
+        long now = System.currentTimeMillis();
+        Reservation reservation = new Reservation(UUID.randomUUID(), productId, quantity,
+                Instant.ofEpochMilli(now).plus(effectiveTtl));
+        reservations.put(reservation.getId(), reservation);
+        expiries.add(reservation, reservation.getExpiresAt().toEpochMilli());
+        reserved.increment();
+        return Optional.of(reservation);
+    }
+
+    public Optional<Reservation> getReservation(UUID id) {
+        return Optional.ofNullable(reservations.get(id));
+    }
+
+    /**
+     * Give held stock back.
+     *
+     * @return false if the reservation is unknown or already settled
+     */
+    public boolean release(UUID id) {
+        Reservation reservation = reservations.get(id);
+        if (reservation == null || !reservation.settle(Reservation.Status.RELEASED)) {
+            return false;
+        }
+        reservations.remove(id);
+        unhold(reservation);
+        return true;
+    }
+
+    /**
+     * Turn held stock into a sale by deducting it from the product row, together with a
+     * {@link MovementReason#SALE} movement. If another write-back is running, this waits
+     * for it and is then written with every confirmation that arrived in the meantime.
+     *
+     * @return false if the reservation is unknown or already settled
+     * @throws InsufficientStockException if the product row no longer covers the quantity,
+     *         e.g. because another node sold it; the reservation is released
+     * @throws RuntimeException if the write-back failed; the reservation stays held
+     */
+    public boolean confirm(UUID id) {
+        Reservation reservation = reservations.get(id);
+        if (reservation == null || !reservation.settle(Reservation.Status.CONFIRMING)) {
+            return false;
+        }
+        ReentrantLock lock = stripe(reservation.getProductId());
+        ProductStock stock;
+        lock.lock();
+        try {
+            stock = stocks.get(reservation.getProductId());
+            if (stock != null) {
+                stock.held -= reservation.getQuantity();
+                stock.confirming += reservation.getQuantity();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        Confirmation confirmation = new Confirmation(reservation, stock);
+        confirmations.add(confirmation);
+        writer.lock();
+        try {
+            if (confirmation.outcome == null) {
+                writeBack();
+            }
+        } finally {
+            writer.unlock();
+        }
+
+        switch (confirmation.outcome) {
+            case APPLIED -> {
+                reservations.remove(id);
+                reservation.transition(Reservation.Status.CONFIRMING, Reservation.Status.CONFIRMED);
+                confirmed.increment();
+                return true;
+            }
+            case SHORT -> {
+                reservations.remove(id);
+                reservation.transition(Reservation.Status.CONFIRMING, Reservation.Status.RELEASED);
+                shortConfirmations.increment();
+                throw new InsufficientStockException(reservation.getProductId(), -reservation.getQuantity());
+            }
+            default -> {
+                reservation.transition(Reservation.Status.CONFIRMING, Reservation.Status.HELD);
+                if (!expiries.add(reservation, reservation.getExpiresAt().toEpochMilli())) {
+                    expire(reservation);
+                }
+                throw confirmation.failure;
+            }
+        }
+    }
+
+    /**
+     * Quantity that can still be reserved, or empty if there is no such product.
+     */
+    public OptionalLong availableToPromise(Long productId) {
+        ReentrantLock lock = stripe(productId);
+        lock.lock();
+        try {
+            ProductStock stock = loadedStock(productId);
+            return stock == null ? OptionalLong.empty() : OptionalLong.of(stock.available());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take {@code quantity} out of the available-to-promise of a product whose on-hand
+     * quantity the caller is about to lower in the current transaction. The quantity stays
+     * unavailable until the transaction completes, and the on-hand quantity is re-read after
+     * that. Without a transaction the on-hand quantity is re-read at once.
+     *
+     * @return false if there is no such product
+     * @throws InsufficientStockException if less than {@code quantity} is available to promise
+     */
+    public boolean withdraw(Long productId, int quantity) {
+        ReentrantLock lock = stripe(productId);
+        lock.lock();
+        try {
+            ProductStock stock = loadedStock(productId);
+            if (stock == null) {
+                return false;
+            }
+            if (stock.available() < quantity) {
+                throw new InsufficientStockException(productId, -quantity);
+            }
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                stock.stale = true;
+                return true;
+            }
+            stock.withdrawing += quantity;
+        } finally {
+            lock.unlock();
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lock.lock();
+                try {
+                    ProductStock stock = stocks.get(productId);
+                    if (stock != null) {
+                        stock.withdrawing -= quantity;
+                        stock.stale = true;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Re-read the on-hand quantity of a product once the current transaction, if any, commits.
+     * Called after the stock was changed outside this service.
+     */
+    public void refresh(Long productId) {
+        afterCommit(() -> markStale(productId));
+    }
+
+    /**
+     * {@link #refresh(Long)} for every product, e.g. after a bulk import.
+     */
+    public void refreshAll() {
+        afterCommit(() -> stocks.keySet().forEach(this::markStale));
+    }
+
+    /**
+     * Drop the state of a deleted product. Its open reservations expire without effect.
+     */
+    public void forget(Long productId) {
+        afterCommit(() -> {
+            ReentrantLock lock = stripe(productId);
+            lock.lock();
+            try {
+                stocks.remove(productId);
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.reservations.tick-millis:100}")
+    public void expireDue() {
+        expire(System.currentTimeMillis());
+    }
+
+    void expire(long nowMillis) {
+        expiries.advance(nowMillis, this::expire);
+    }
+
+    /**
+     * Deduct every queued confirmation from its product row in one batch and transaction,
+     * each with its own conditional update, and hand every confirmation its outcome. Must be
+     * called with {@code writer} held.
+     */
+    private void writeBack() {
+        List<Confirmation> batch = new ArrayList<>();
+        Confirmation next;
+        while ((next = confirmations.poll()) != null) {
+            batch.add(next);
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = batch.stream()
+                .map(confirmation -> new Object[]{confirmation.quantity(), now, confirmation.productId(),
+                        confirmation.quantity()})
+                .toList();
+
+        boolean[] applied = new boolean[batch.size()];
+        List<InventoryLedger.Movement> movements = new ArrayList<>();
+        RuntimeException failure = null;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                int[] counts = jdbcTemplate.batchUpdate(WRITE_BACK, rows);
+                movements.clear();
+                for (int i = 0; i < batch.size(); i++) {
+                    applied[i] = counts[i] != 0;
+                    if (applied[i]) {
+                        movements.add(new InventoryLedger.Movement(batch.get(i).productId(),
+                                -batch.get(i).quantity(), MovementReason.SALE));
+                    }
+                }
+                ledger.append(movements);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not write back {} confirmed reservations: {}", batch.size(), e.getMessage());
+            failure = e;
+        }
+
+        Set<Long> changed = new LinkedHashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Confirmation confirmation = batch.get(i);
+            ReentrantLock lock = stripe(confirmation.productId());
+            lock.lock();
+            try {
+                if (confirmation.stock != null) {
+                    confirmation.stock.confirming -= confirmation.quantity();
+                    if (failure != null) {
+                        confirmation.stock.held += confirmation.quantity();
+                    } else {
+                        confirmation.stock.stale = true;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (failure != null) {
+                confirmation.failure = failure;
+                confirmation.outcome = Confirmation.Outcome.FAILED;
+            } else if (applied[i]) {
+                changed.add(confirmation.productId());
+                confirmation.outcome = Confirmation.Outcome.APPLIED;
+            } else {
+                log.info("Product {} has less than {} in stock; confirmation refused",
+                        confirmation.productId(), confirmation.quantity());
+                confirmation.outcome = Confirmation.Outcome.SHORT;
+            }
+        }
+        if (!changed.isEmpty()) {
+            productCache.evictAll(List.copyOf(changed));
+            catalogVersion.bump();
+            eventBus.publishAll(movements.stream()
+                    .map(movement -> ProductEvent.stock(movement.productId(), movement.delta()))
+                    .toList());
+            log.debug("Wrote back {} confirmed reservations for {} products", movements.size(), changed.size());
+        }
+    }
+
+    private void expire(Reservation reservation) {
+        if (reservation.settle(Reservation.Status.EXPIRED)) {
+            reservations.remove(reservation.getId());
+            unhold(reservation);
+            expired.increment();
+        }
+    }
+
+    private void markStale(Long productId) {
+        ReentrantLock lock = stripe(productId);
+        lock.lock();
+        try {
+            ProductStock stock = stocks.get(productId);
+            if (stock != null) {
+                stock.stale = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unhold(Reservation reservation) {
+        ReentrantLock lock = stripe(reservation.getProductId());
+        lock.lock();
+        try {
+            ProductStock stock = stocks.get(reservation.getProductId());
+            if (stock != null) {
+                stock.held -= reservation.getQuantity();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The product's counters with a current on-hand quantity, or null if it does not exist.
+     * Must be called with the product's stripe held.
+     */
+    private ProductStock loadedStock(Long productId) {
+        ProductStock stock = stocks.computeIfAbsent(productId, id -> new ProductStock());
+        if (stock.stale) {
+            Optional<Integer> quantity = primaryReads.read(() -> repository.findQuantityById(productId));
+            if (quantity.isEmpty()) {
+                stocks.remove(productId);
+                return null;
+            }
+            stock.onHand = quantity.get();
+            stock.stale = false;
+        }
+        return stock;
+    }
+
+    private ReentrantLock stripe(Long productId) {
+        return stripes[Math.floorMod(productId.hashCode(), STRIPES)];
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Per-product counters, guarded by the product's stripe lock.
+     */
+    private static final class ProductStock {
+        private boolean stale = true;
+        private long onHand;
+        private long held;
+        private long confirming;
+        private long withdrawing;
+
+        long available() {
+            return onHand - held - confirming - withdrawing;
+        }
+    }
+
+    /**
+     * A reservation queued for write-back. The outcome is set by whichever caller writes
+     * the batch holding it, before that caller releases {@code writer}. {@code stock} is
+     * null if the product's counters were not loaded.
+     */
+    private static final class Confirmation {
+
+        enum Outcome {
+            APPLIED, SHORT, FAILED
+        }
+
+        private final Reservation reservation;
+        private final ProductStock stock;
+        private volatile Outcome outcome;
+        private volatile RuntimeException failure;
+
+        Confirmation(Reservation reservation, ProductStock stock) {
+            this.reservation = reservation;
+            this.stock = stock;
+        }
+
+        Long productId() {
+            return reservation.getProductId();
+        }
+
+        long quantity() {
+            return reservation.getQuantity();
+        }
+    }
+}
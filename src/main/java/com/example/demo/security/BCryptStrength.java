@@ -0,0 +1,53 @@
+package com.example.demo.security;
+
+import org.springframework.security.crypto.bcrypt.BCrypt;
+
+import java.time.Duration;
+
+/**
+ * Picking and reading BCrypt cost factors. Each step of the cost doubles the work, so the
+ * time of one hash at a known cost is enough to predict every other.
+ */
+public final class BCryptStrength {
+
+    private static final int SAMPLES = 3;
+
+    private BCryptStrength() {
+    }
+
+    /**
+     * The highest cost between {@code min} and {@code max} whose hash on this machine
+     * takes no longer than {@code target}, measured at {@code min}.
+     */
+    public static int calibrate(Duration target, int min, int max) {
+        if (min < 4 || max > 31 || min > max) {
+            throw new IllegalArgumentException("BCrypt strength must satisfy 4 <= min <= max <= 31");
+        }
+        String salt = BCrypt.gensalt(min);
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < SAMPLES; i++) {
+            long started = System.nanoTime();
+            BCrypt.hashpw("calibration", salt);
+            fastest = Math.min(fastest, System.nanoTime() - started);
+        }
+        int strength = min;
+        long predicted = fastest;
+        while (strength < max && predicted * 2 <= target.toNanos()) {
+            predicted *= 2;
+            strength++;
+        }
+        return strength;
+    }
+
+    /**
+     * The cost an encoded BCrypt hash was made with, or {@code -1} if it is not one.
+     */
+    public static int of(String encoded) {
+        if (encoded == null || encoded.length() < 7 || encoded.charAt(0) != '$' || encoded.charAt(3) != '$'
+                || encoded.charAt(6) != '$' || !Character.isDigit(encoded.charAt(4))
+                || !Character.isDigit(encoded.charAt(5))) {
+            return -1;
+        }
+        return Integer.parseInt(encoded, 4, 6, 10);
+    }
+}
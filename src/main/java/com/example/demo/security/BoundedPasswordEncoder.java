@@ -0,0 +1,115 @@
+package com.example.demo.security;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a CPU-heavy {@link PasswordEncoder} on a small pool of its own, so that a burst of
+ * logins can occupy at most {@code workers} cores and never the threads serving everything
+ * else. The calling thread waits for its hash; when {@code queueCapacity} hashes are already
+ * waiting, the call fails at once with a {@link RejectedExecutionException}, which the API
+ * answers with 503.
+ * <p>
+ * {@link #upgradeEncoding} asks for a new hash only when a stored BCrypt hash was made with
+ * a lower cost than {@code strength}, so hashes are raised to the current cost but never
+ * lowered; nodes running with different costs cannot re-hash the same password back and forth.
+ * Hashing time and queue wait are published as {@code security.password.hash.time} and
+ * {@code security.password.queue.wait}.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private final PasswordEncoder delegate;
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+    private final Timer encodeTime;
+    private final Timer matchTime;
+    private final Timer queueWait;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, int strength, int workers, int queueCapacity,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.strength = strength;
+        this.executor = new ThreadPoolExecutor(
+                workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("password-hash-", 0).daemon().factory());
+
+        Gauge.builder("security.password.queue.depth", executor, e -> e.getQueue().size())
+                .description("Password hashes waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("security.password.strength", () -> strength)
+                .description("BCrypt cost of new password hashes")
+                .register(meterRegistry);
+        this.encodeTime = Timer.builder("security.password.hash.time").tag("operation", "encode")
+                .register(meterRegistry);
+        this.matchTime = Timer.builder("security.password.hash.time").tag("operation", "matches")
+                .register(meterRegistry);
+        this.queueWait = Timer.builder("security.password.queue.wait")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(encodeTime, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(matchTime, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        int stored = BCryptStrength.of(encodedPassword);
+        return stored >= 0 ? stored < strength : delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> T run(Timer hashTime, Callable<T> hash) {
+        long submitted = System.nanoTime();
+        Future<T> result;
+        try {
+            result = executor.submit(() -> {
+                long started = System.nanoTime();
+                queueWait.record(started - submitted, TimeUnit.NANOSECONDS);
+                try {
+                    return hash.call();
+                } finally {
+                    hashTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new RejectedExecutionException("Too many sign-ins in progress, please retry later", e);
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a password hash", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+}
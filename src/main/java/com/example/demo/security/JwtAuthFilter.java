@@ -1,11 +1,13 @@
 package com.example.demo.security;
 
+import com.example.demo.user.SecurityEpochs;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -20,13 +22,38 @@ import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
 
+/**
+ * Authenticates requests that carry a bearer access token. By default the user is loaded
+ * for every request. With {@code jwt.stateless=true} the principal is a {@link TokenPrincipal}
+ * built from the token's claims instead, and the token is only checked against the user's
+ * {@link SecurityEpochs security epoch}, so locks, deactivations and role changes still
+ * revoke it without a query per request. Tokens issued without a user id and epoch fall
+ * back to loading the user. Tokens revoked through {@link TokenRevocations} are refused in
+ * either mode.
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class JwtAuthFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final SecurityEpochs securityEpochs;
+    private final TokenRevocations tokenRevocations;
+    private final boolean stateless;
+
+    public JwtAuthFilter(
+            JwtService jwtService,
+            UserDetailsService userDetailsService,
+            SecurityEpochs securityEpochs,
+            TokenRevocations tokenRevocations,
+            @Value("${jwt.stateless:false}") boolean stateless
+    ) {
+        this.jwtService = jwtService;
+        this.userDetailsService = userDetailsService;
+        this.securityEpochs = securityEpochs;
+        this.tokenRevocations = tokenRevocations;
+        this.stateless = stateless;
+    }
 
     @Override
     protected void doFilterInternal(
@@ -47,19 +74,20 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         jwt = authHeader.substring(7);
 
         try {
-            username = jwtService.extractUsername(jwt);
+            Claims claims = jwtService.verify(jwt);
+            username = claims.getSubject();
 
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+                Object principal = authenticate(claims, username);
 
-                if (jwtService.isTokenValid(jwt, userDetails)) {
-                    List<String> roles = jwtService.extractRoles(jwt);
+                if (principal != null) {
+                    List<String> roles = jwtService.extractRoles(claims);
                     var authorities = roles.stream()
                             .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
                             .collect(Collectors.toList());
 
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
+                            principal,
                             null,
                             authorities
                     );
@@ -74,4 +102,20 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * The principal the verified {@code claims} stand for, or {@code null} if they are no longer honoured.
+     */
+    private Object authenticate(Claims claims, String username) {
+        if (tokenRevocations.isRevoked(jwtService.extractTokenId(claims))) {
+            return null;
+        }
+        Long userId = jwtService.extractUserId(claims);
+        Long epoch = jwtService.extractSecurityEpoch(claims);
+        if (stateless && userId != null && epoch != null) {
+            return securityEpochs.isCurrent(userId, epoch) ? new TokenPrincipal(userId, username) : null;
+        }
+        UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+        return jwtService.isTokenValid(claims, userDetails) ? userDetails : null;
+    }
 }
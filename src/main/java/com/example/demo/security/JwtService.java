@@ -1,105 +1,250 @@
 package com.example.demo.security;
 
+import com.example.demo.user.User;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
+/**
+ * Issues and verifies the HS256 access and refresh tokens. The signing key and the parser
+ * are built once; verified claims are kept in a small cache keyed by the SHA-256 of the
+ * token, so a client that sends the same bearer token on every request pays for signature
+ * verification and JSON parsing only once. An entry expires together with its token.
+ * Hit, miss and eviction counts are published as the {@code cache.*} meters with
+ * {@code cache=jwt-claims}.
+ */
 @Service
 public class JwtService {
 
-    @Value("${jwt.secret}")
-    private String secretKey;
-
-    @Value("${jwt.expiration}")
-    private long jwtExpiration;
+    static final String CACHE_NAME = "jwt-claims";
+
+    static final String ROLES = "roles";
+    static final String USER_ID = "uid";
+    static final String SECURITY_EPOCH = "sep";
+
+    private final SecretKey signInKey;
+    private final JwtParser parser;
+    private final long jwtExpiration;
+    private final long refreshExpiration;
+    private final Cache<String, Claims> verified;
+    private final SecureRandom tokenIds = new SecureRandom();
+
+    public JwtService(
+            MeterRegistry meterRegistry,
+            @Value("${jwt.secret}") String secretKey,
+            @Value("${jwt.expiration}") long jwtExpiration,
+            @Value("${jwt.refresh-expiration}") long refreshExpiration,
+            @Value("${jwt.claims-cache.maximum-size:10000}") long cacheMaximumSize
+    ) {
+        this.signInKey = Keys.hmacShaKeyFor(secretKey.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser().verifyWith(signInKey).build();
+        this.jwtExpiration = jwtExpiration;
+        this.refreshExpiration = refreshExpiration;
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfter(new UntilTokenExpiry())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, CACHE_NAME);
+    }
 
-    @Value("${jwt.refresh-expiration}")
-    private long refreshExpiration;
+    /**
+     * The claims of {@code token} after checking its signature and expiry.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, forged or expired
+     */
+    public Claims verify(String token) {
+        String key = hash(token);
+        Claims claims = verified.getIfPresent(key);
+        if (claims == null) {
+            claims = parser.parseSignedClaims(token).getPayload();
+            verified.put(key, claims);
+        } else if (claims.getExpiration() != null && claims.getExpiration().before(new Date())) {
+            verified.invalidate(key);
+            throw new ExpiredJwtException(null, claims, "JWT expired at " + claims.getExpiration().toInstant());
+        }
+        return claims;
+    }
 
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-        final Claims claims = extractAllClaims(token);
-        return claimsResolver.apply(claims);
+        return claimsResolver.apply(verify(token));
     }
 
     public String generateToken(UserDetails userDetails) {
-        Map<String, Object> claims = new HashMap<>();
-        List<String> roles = userDetails.getAuthorities().stream()
-                .map(authority -> authority.getAuthority().replace("ROLE_", ""))
-                .collect(java.util.stream.Collectors.toList());
-        claims.put("roles", roles);
-        return buildToken(claims, userDetails, jwtExpiration);
+        return generateToken(Map.of(), userDetails);
     }
 
+    /**
+     * Access token for {@code userDetails}. Tokens for a {@link User} also carry its id and
+     * security epoch, which is all a stateless request needs besides the roles.
+     */
     public String generateToken(Map<String, Object> extraClaims, UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>(extraClaims);
         List<String> roles = userDetails.getAuthorities().stream()
                 .map(authority -> authority.getAuthority().replace("ROLE_", ""))
                 .collect(java.util.stream.Collectors.toList());
-        claims.put("roles", roles);
+        claims.put(ROLES, roles);
+        if (userDetails instanceof User user && user.getId() != null) {
+            claims.put(USER_ID, user.getId());
+            claims.put(SECURITY_EPOCH, user.getSecurityEpoch());
+        }
         return buildToken(claims, userDetails, jwtExpiration);
     }
 
+    /**
+     * Refresh token for {@code userDetails}. Tokens for a {@link User} carry its security
+     * epoch, so a refresh after a lock, deactivation or role change can be refused.
+     */
     public String generateRefreshToken(UserDetails userDetails) {
-        return buildToken(new HashMap<>(), userDetails, refreshExpiration);
+        Map<String, Object> claims = new HashMap<>();
+        if (userDetails instanceof User user && user.getId() != null) {
+            claims.put(SECURITY_EPOCH, user.getSecurityEpoch());
+        }
+        return buildToken(claims, userDetails, refreshExpiration);
     }
 
     private String buildToken(Map<String, Object> extraClaims, UserDetails userDetails, long expiration) {
         return Jwts.builder()
                 .claims(extraClaims)
+                .id(Long.toString(tokenIds.nextLong()))
                 .subject(userDetails.getUsername())
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignInKey(), Jwts.SIG.HS256)
+                .signWith(signInKey, Jwts.SIG.HS256)
                 .compact();
     }
 
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        return isTokenValid(verify(token), userDetails);
+    }
+
+    /**
+     * Whether already verified {@code claims} belong to {@code userDetails} and have not expired.
+     */
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        return userDetails.getUsername().equals(claims.getSubject()) && !isExpired(claims);
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private static boolean isExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    public List<String> extractRoles(String token) {
+        return extractRoles(verify(token));
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSignInKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+    @SuppressWarnings("unchecked")
+    public List<String> extractRoles(Claims claims) {
+        return claims.get(ROLES, List.class);
     }
 
-    private SecretKey getSignInKey() {
-        byte[] keyBytes = secretKey.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+    /**
+     * The user id of an access token, or {@code null} for tokens that do not carry one.
+     */
+    public Long extractUserId(Claims claims) {
+        Number userId = claims.get(USER_ID, Number.class);
+        return userId == null ? null : userId.longValue();
     }
 
-    public List<String> extractRoles(String token) {
-        Claims claims = extractAllClaims(token);
-        return claims.get("roles", List.class);
+    public Long extractSecurityEpoch(String token) {
+        return extractSecurityEpoch(verify(token));
+    }
+
+    /**
+     * The security epoch a token was issued at, or {@code null} for tokens that do not carry one.
+     */
+    public Long extractSecurityEpoch(Claims claims) {
+        Number epoch = claims.get(SECURITY_EPOCH, Number.class);
+        return epoch == null ? null : epoch.longValue();
+    }
+
+    public Long extractTokenId(String token) {
+        return extractTokenId(verify(token));
+    }
+
+    /**
+     * The id ({@code jti}) under which a token can be revoked, or {@code null} for tokens issued without one.
+     */
+    public Long extractTokenId(Claims claims) {
+        try {
+            return claims.getId() == null ? null : Long.valueOf(claims.getId());
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     public long getExpiration() {
         return jwtExpiration;
     }
+
+    long cachedTokens() {
+        verified.cleanUp();
+        return verified.estimatedSize();
+    }
+
+    /**
+     * Cache key for a token; the token itself is a bearer credential and is not kept.
+     */
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Keeps verified claims until their {@code exp}; tokens without one are not cached for long.
+     */
+    private static final class UntilTokenExpiry implements Expiry<String, Claims> {
+
+        private static final long WITHOUT_EXPIRY_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+        @Override
+        public long expireAfterCreate(String key, Claims claims, long currentTime) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null) {
+                return WITHOUT_EXPIRY_NANOS;
+            }
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, expiration.getTime() - System.currentTimeMillis()));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
@@ -0,0 +1,21 @@
+package com.example.demo.security;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+/**
+ * Principal of a request authenticated in stateless mode, built from the verified access
+ * token alone. Code that needs the full {@link com.example.demo.user.User} loads it by name.
+ * Like the user, it exposes {@link #getId()}, so expressions such as
+ * {@code authentication.principal.id} hold for either kind of principal.
+ */
+public record TokenPrincipal(Long userId, String username) implements AuthenticatedPrincipal {
+
+    public Long getId() {
+        return userId;
+    }
+
+    @Override
+    public String getName() {
+        return username;
+    }
+}
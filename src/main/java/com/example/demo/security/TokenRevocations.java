@@ -0,0 +1,167 @@
+package com.example.demo.security;
+
+import com.example.demo.cache.CacheInvalidationBus;
+import com.example.demo.datasource.PrimaryReads;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Denylist of tokens revoked before they expired, by token id ({@code jti}). The exact set
+ * is the {@code revoked_token} table; in front of it sits a {@link BloomFilter} of all
+ * unexpired revocations, so the common case, a token that was never revoked, is answered
+ * from memory and only a positive goes to the table. The table is always read on the
+ * primary: a replica that has not received a revocation yet would let the token through,
+ * or leave it out of a rebuilt filter.
+ * <p>
+ * A revocation is added to the filter at once and published on the
+ * {@link CacheInvalidationBus}, so other nodes add it to theirs. The filter is rebuilt every
+ * {@code jwt.revocation.rebuild-interval} to shed expired entries; until the first build
+ * every check goes to the table. Checks are timed as {@code jwt.revocation.checks}, tagged
+ * with how they were answered, which gives the per-request cost of the denylist.
+ */
+@Slf4j
+@Service
+public class TokenRevocations {
+
+    static final String REGION = "revoked-tokens";
+
+    private final RevokedTokenRepository repository;
+    private final PrimaryReads primaryReads;
+    private final CacheInvalidationBus invalidationBus;
+    private final long expectedRevocations;
+    private final double falsePositiveRate;
+    private final Timer negative;
+    private final Timer falsePositive;
+    private final Timer revoked;
+    private final Timer unfiltered;
+    private volatile BloomFilter filter;
+    private volatile BloomFilter next;
+
+    public TokenRevocations(
+            RevokedTokenRepository repository,
+            PrimaryReads primaryReads,
+            CacheInvalidationBus invalidationBus,
+            MeterRegistry meterRegistry,
+            @Value("${jwt.revocation.expected-revocations:100000}") long expectedRevocations,
+            @Value("${jwt.revocation.false-positive-rate:0.01}") double falsePositiveRate
+    ) {
+        this.repository = repository;
+        this.primaryReads = primaryReads;
+        this.invalidationBus = invalidationBus;
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveRate = falsePositiveRate;
+        this.negative = timer(meterRegistry, "negative");
+        this.falsePositive = timer(meterRegistry, "false-positive");
+        this.revoked = timer(meterRegistry, "revoked");
+        this.unfiltered = timer(meterRegistry, "unfiltered");
+        invalidationBus.subscribe(REGION, jtis -> {
+            if (jtis.isEmpty()) {
+                rebuild();
+            } else {
+                jtis.forEach(this::remember);
+            }
+        });
+    }
+
+    /**
+     * Whether the token with id {@code jti} was revoked. Tokens without an id cannot be.
+     */
+    public boolean isRevoked(Long jti) {
+        if (jti == null) {
+            return false;
+        }
+        long started = System.nanoTime();
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(jti)) {
+            negative.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            return false;
+        }
+        boolean found = primaryReads.read(() -> repository.existsById(jti));
+        Timer outcome = current == null ? unfiltered : found ? revoked : falsePositive;
+        outcome.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return found;
+    }
+
+    /**
+     * Revoke the token with id {@code jti} until it expires at {@code expiresAt}. Tokens
+     * without an id, and tokens that have already expired, are left alone.
+     */
+    @Transactional
+    public void revoke(Long jti, Instant expiresAt) {
+        if (jti == null || !expiresAt.isAfter(Instant.now())) {
+            return;
+        }
+        repository.save(new RevokedToken(jti, LocalDateTime.ofInstant(expiresAt, ZoneId.systemDefault())));
+        remember(jti);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // a rebuild that read the table before the commit would have missed it
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remember(jti);
+                }
+            });
+        }
+        invalidationBus.publish(REGION, List.of(jti));
+    }
+
+    /**
+     * Replace the filter with one holding exactly the unexpired revocations. Revocations
+     * made while the table is read are added to both filters.
+     */
+    @Scheduled(fixedDelayString = "${jwt.revocation.rebuild-interval:300000}")
+    public synchronized void rebuild() {
+        BloomFilter fresh = new BloomFilter(Math.max(expectedRevocations, 2 * primaryReads.read(repository::count)),
+                falsePositiveRate);
+        next = fresh;
+        try {
+            List<Long> jtis = primaryReads.read(() -> repository.findUnexpiredJtis(LocalDateTime.now()));
+            jtis.forEach(fresh::put);
+            filter = fresh;
+            log.debug("Rebuilt token revocation filter with {} entries", jtis.size());
+        } finally {
+            next = null;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.purge-interval:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        int purged = repository.purgeBefore(LocalDateTime.now());
+        if (purged > 0) {
+            log.info("Purged {} revoked tokens that have expired", purged);
+        }
+    }
+
+    /**
+     * Add {@code jti} to the filter, and to the one being built if a rebuild is running.
+     * {@code next} is read first: if the rebuild finishes in between, {@code filter} is already the new one.
+     */
+    private void remember(long jti) {
+        BloomFilter building = next;
+        BloomFilter current = filter;
+        if (building != null) {
+            building.put(jti);
+        }
+        if (current != null) {
+            current.put(jti);
+        }
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("jwt.revocation.checks").tag("result", result).register(meterRegistry);
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.demo.user;
+
+import com.example.demo.cache.CacheInvalidationBus;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-behind for the bookkeeping of sign-ins: failed attempt counters, lockouts and
+ * last-login times. Outcomes are coalesced per username in memory and written in one JDBC
+ * batch per flush interval, so a login storm costs one update per user and interval
+ * instead of a read and a full-entity save per attempt.
+ * <p>
+ * The updates are relative to the stored counter, so nothing written by others in the
+ * meantime is lost. Until an outcome is written, {@link #applyLockout(User)} folds it into
+ * a freshly loaded user, so lockouts take effect at once. A user who reaches
+ * {@link User#MAX_FAILED_LOGIN_ATTEMPTS} is locked and their security epoch is bumped by
+ * the same update. On failure the outcomes stay pending and are retried by the next flush.
+ */
+@Slf4j
+@Component
+public class LoginBookkeeping {
+
+    private static final String WRITE_BACK = """
+            UPDATE users SET
+                security_epoch = security_epoch
+                    + CASE WHEN failed_login_attempts < ? AND failed_login_attempts * ? + ? >= ? THEN 1 ELSE 0 END,
+                is_locked = is_locked OR failed_login_attempts * ? + ? >= ?,
+                failed_login_attempts = failed_login_attempts * ? + ?,
+                last_login = COALESCE(?, last_login)
+            WHERE username = ?""";
+
+    private static final int LOOKUP_CHUNK = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SecurityEpochs securityEpochs;
+    private final CacheInvalidationBus invalidationBus;
+    private final Map<String, State> states = new ConcurrentHashMap<>();
+
+    public LoginBookkeeping(
+            JdbcTemplate jdbcTemplate,
+            TransactionTemplate transactionTemplate,
+            SecurityEpochs securityEpochs,
+            CacheInvalidationBus invalidationBus,
+            MeterRegistry meterRegistry
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.securityEpochs = securityEpochs;
+        this.invalidationBus = invalidationBus;
+        Gauge.builder("users.logins.unflushed", states, Map::size)
+                .description("Users with sign-in outcomes not yet written")
+                .register(meterRegistry);
+    }
+
+    public void recordSuccess(String username) {
+        record(username, new Outcome(true, 0, LocalDateTime.now()));
+    }
+
+    public void recordFailure(String username) {
+        record(username, new Outcome(false, 1, null));
+    }
+
+    /**
+     * Lock {@code user}, as loaded from the database, if its unwritten failed attempts
+     * already reach the limit.
+     */
+    public void applyLockout(User user) {
+        State state = states.get(user.getUsername());
+        if (state == null || user.isLocked()) {
+            return;
+        }
+        Outcome outcome = state.flushing().then(state.pending());
+        int failed = outcome.reset() ? outcome.failures() : user.getFailedLoginAttempts() + outcome.failures();
+        if (failed >= User.MAX_FAILED_LOGIN_ATTEMPTS) {
+            user.setLocked(true);
+        }
+    }
+
+    /**
+     * Drop the unwritten outcomes of {@code username}, e.g. when an administrator unlocks the user.
+     */
+    public void discard(String username) {
+        states.remove(username);
+    }
+
+    @Scheduled(fixedDelayString = "${users.logins.flush-interval:250}")
+    public synchronized void flush() {
+        List<String> usernames = new ArrayList<>();
+        List<Object[]> batch = new ArrayList<>();
+        List<String> withFailures = new ArrayList<>();
+        for (String username : states.keySet()) {
+            Outcome[] taken = new Outcome[1];
+            states.computeIfPresent(username, (key, state) -> {
+                if (state.pending().isNone()) {
+                    return state.flushing().isNone() ? null : state;
+                }
+                taken[0] = state.pending();
+                return new State(Outcome.NONE, state.pending());
+            });
+            if (taken[0] != null) {
+                usernames.add(username);
+                batch.add(parameters(username, taken[0]));
+                if (taken[0].failures() > 0) {
+                    withFailures.add(username);
+                }
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        boolean written;
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(WRITE_BACK, batch));
+            written = true;
+        } catch (RuntimeException e) {
+            log.warn("Could not write sign-in bookkeeping for {} users: {}", batch.size(), e.getMessage());
+            written = false;
+        }
+
+        boolean succeeded = written;
+        for (String username : usernames) {
+            states.computeIfPresent(username, (key, state) -> {
+                Outcome pending = succeeded ? state.pending() : state.flushing().then(state.pending());
+                return pending.isNone() ? null : new State(pending, Outcome.NONE);
+            });
+        }
+        if (written && !withFailures.isEmpty()) {
+            invalidateUsers(withFailures);
+        }
+        if (written) {
+            log.debug("Wrote sign-in bookkeeping for {} users", batch.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void record(String username, Outcome outcome) {
+        states.compute(username, (key, state) -> state == null
+                ? new State(outcome, Outcome.NONE)
+                : new State(state.pending().then(outcome), state.flushing()));
+    }
+
+    /**
+     * A failed attempt may have locked the user and bumped the security epoch.
+     */
+    private void invalidateUsers(List<String> usernames) {
+        List<Long> ids = new ArrayList<>();
+        for (int from = 0; from < usernames.size(); from += LOOKUP_CHUNK) {
+            List<String> chunk = usernames.subList(from, Math.min(from + LOOKUP_CHUNK, usernames.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            ids.addAll(jdbcTemplate.queryForList(
+                    "SELECT id FROM users WHERE username IN (" + placeholders + ")", Long.class, chunk.toArray()));
+        }
+        ids.forEach(securityEpochs::evict);
+        if (!ids.isEmpty()) {
+            invalidationBus.publish(UserService.CACHE_REGION, ids);
+        }
+    }
+
+    private static Object[] parameters(String username, Outcome outcome) {
+        int keep = outcome.reset() ? 0 : 1;
+        int max = User.MAX_FAILED_LOGIN_ATTEMPTS;
+        SqlParameterValue lastLogin = new SqlParameterValue(Types.TIMESTAMP,
+                outcome.lastLogin() == null ? null : Timestamp.valueOf(outcome.lastLogin()));
+        return new Object[]{
+                max, keep, outcome.failures(), max,
+                keep, outcome.failures(), max,
+                keep, outcome.failures(),
+                lastLogin,
+                username
+        };
+    }
+
+    /**
+     * Coalesced sign-in outcomes: whether a success reset the counter, the failures since
+     * then (or in total if it was not reset), and the latest successful sign-in.
+     */
+    record Outcome(boolean reset, int failures, LocalDateTime lastLogin) {
+
+        static final Outcome NONE = new Outcome(false, 0, null);
+
+        Outcome then(Outcome next) {
+            return new Outcome(reset || next.reset,
+                    next.reset ? next.failures : failures + next.failures,
+                    next.lastLogin != null ? next.lastLogin : lastLogin);
+        }
+
+        boolean isNone() {
+            return !reset && failures == 0 && lastLogin == null;
+        }
+    }
+
+    /**
+     * Outcomes not yet written, and those being written by the running flush.
+     */
+    private record State(Outcome pending, Outcome flushing) {
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.demo.user;
+
+import com.example.demo.cache.CacheInvalidationBus;
+import com.example.demo.datasource.PrimaryReads;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+
+/**
+ * In-memory table of each user's {@linkplain User#getSecurityEpoch() security epoch}, so
+ * that a stateless access token can be checked against lock, deactivation and role
+ * changes without loading the user. An epoch is read from the primary database, see
+ * {@link PrimaryReads}, the first time a user is seen and then served from memory until
+ * the user changes, or at most for {@code users.security-epochs.ttl} in case an
+ * invalidation was lost.
+ * <p>
+ * {@link UserService} evicts a user it changes; inside a transaction the entry is evicted
+ * again after commit, so a concurrent read cannot put the old epoch back. Changes made on
+ * other nodes arrive on the {@link CacheInvalidationBus} under {@link UserService#CACHE_REGION}.
+ * Hit, miss and eviction counts are published as the {@code cache.*} meters with
+ * {@code cache=security-epochs}.
+ */
+@Component
+public class SecurityEpochs {
+
+    static final String NAME = "security-epochs";
+
+    private final UserRepository userRepository;
+    private final PrimaryReads primaryReads;
+    private final Cache<Long, Long> epochs;
+
+    public SecurityEpochs(
+            UserRepository userRepository,
+            PrimaryReads primaryReads,
+            CacheInvalidationBus invalidationBus,
+            MeterRegistry meterRegistry,
+            @Value("${users.security-epochs.maximum-size:100000}") long maximumSize,
+            @Value("${users.security-epochs.ttl:30s}") Duration ttl
+    ) {
+        this.userRepository = userRepository;
+        this.primaryReads = primaryReads;
+        this.epochs = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, epochs, NAME);
+        invalidationBus.subscribe(UserService.CACHE_REGION, ids -> {
+            if (ids.isEmpty()) {
+                epochs.invalidateAll();
+            } else {
+                epochs.invalidateAll(ids);
+            }
+        });
+    }
+
+    /**
+     * Whether a token issued at {@code epoch} is still honoured for the user with
+     * {@code userId}. Tokens of users that no longer exist are not.
+     */
+    public boolean isCurrent(Long userId, long epoch) {
+        Long current = epochs.get(userId, id -> primaryReads.read(() -> userRepository.findSecurityEpochById(id))
+                .orElse(null));
+        return current != null && epoch >= current;
+    }
+
+    public void evict(Long userId) {
+        epochs.invalidate(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    epochs.invalidate(userId);
+                }
+            });
+        }
+    }
+}
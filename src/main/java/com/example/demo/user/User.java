@@ -23,6 +23,11 @@ import java.util.stream.Collectors;
 @Builder
 public class User implements UserDetails {
 
+    /**
+     * Failed sign-ins in a row after which the account is locked.
+     */
+    public static final int MAX_FAILED_LOGIN_ATTEMPTS = 5;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -62,6 +67,15 @@ public class User implements UserDetails {
     @Column(name = "failed_login_attempts", nullable = false)
     private int failedLoginAttempts = 0;
 
+    /**
+     * Incremented whenever a change must invalidate the user's issued tokens: lock,
+     * deactivation or new roles. Access tokens carry the value they were issued with.
+     * Saving the entity never writes it; it only moves through
+     * {@link UserRepository#bumpSecurityEpoch}, so a concurrent save cannot undo a bump.
+     */
+    @Column(name = "security_epoch", nullable = false, updatable = false)
+    private long securityEpoch = 0;
+
     @Column(name = "last_login")
     private LocalDateTime lastLogin;
 
@@ -143,7 +157,7 @@ public class User implements UserDetails {
      */
     public void increaseFailedLoginAttempts() {
         this.failedLoginAttempts++;
-        if (this.failedLoginAttempts >= 5) {
+        if (this.failedLoginAttempts >= MAX_FAILED_LOGIN_ATTEMPTS) {
             this.isLocked = true;
         }
     }
@@ -3,6 +3,9 @@ package com.example.demo.user;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -15,6 +18,19 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByEmail(String email);
 
+    @Query("SELECT u.securityEpoch FROM User u WHERE u.id = :id")
+    Optional<Long> findSecurityEpochById(@Param("id") Long id);
+
+    /**
+     * Invalidate the tokens issued to a user so far, relative to the stored value so a
+     * concurrent change of the user cannot overwrite it.
+     *
+     * @return 1 if the user exists, otherwise 0
+     */
+    @Modifying
+    @Query("UPDATE User u SET u.securityEpoch = u.securityEpoch + 1 WHERE u.id = :id")
+    int bumpSecurityEpoch(@Param("id") Long id);
+
     boolean existsByUsername(String username);
 
     boolean existsByEmail(String email);
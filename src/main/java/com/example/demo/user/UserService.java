@@ -1,14 +1,17 @@
 package com.example.demo.user;
 
+import com.example.demo.cache.CacheInvalidationBus;
 import com.example.demo.user.dto.*;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -16,16 +19,38 @@ import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
-public class UserService implements UserDetailsService {
+public class UserService implements UserDetailsService, UserDetailsPasswordService {
+
+    /**
+     * Region under which changed users are announced on the {@link CacheInvalidationBus}.
+     */
+    public static final String CACHE_REGION = "users";
 
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
+    private final CacheInvalidationBus invalidationBus;
+    private final SecurityEpochs securityEpochs;
+    private final LoginBookkeeping loginBookkeeping;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        return userRepository.findByUsername(username)
+        User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
+        loginBookkeeping.applyLockout(user);
+        return user;
+    }
+
+    /**
+     * Store a password re-hashed at sign-in because the stored hash used a lower cost.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with username: "
+                        + userDetails.getUsername()));
+        user.setPassword(newPassword);
+        return saveAndInvalidate(user);
     }
 
     public UserDetails loadUserByEmail(String email) throws UsernameNotFoundException {
@@ -97,7 +122,7 @@ public class UserService implements UserDetailsService {
             user.setEmail(updateRequest.getEmail());
         }
 
-        return userRepository.save(user);
+        return saveAndInvalidate(user);
     }
 
     public void updatePassword(Long userId, UpdatePasswordRequest passwordRequest) {
@@ -109,9 +134,10 @@ public class UserService implements UserDetailsService {
         }
 
         user.setPassword(passwordEncoder.encode(passwordRequest.getNewPassword()));
-        userRepository.save(user);
+        saveAndInvalidate(user);
     }
 
+    @Transactional
     public User updateUserRoles(Long userId, List<Long> roleIds) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -122,9 +148,10 @@ public class UserService implements UserDetailsService {
         }
 
         user.setRoles(roles);
-        return userRepository.save(user);
+        return saveAndRevokeTokens(user);
     }
 
+    @Transactional
     public User setUserLockStatus(Long userId, boolean isLocked) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -132,17 +159,19 @@ public class UserService implements UserDetailsService {
         user.setLocked(isLocked);
         if (!isLocked) {
             user.setFailedLoginAttempts(0);
+            loginBookkeeping.discard(user.getUsername());
         }
 
-        return userRepository.save(user);
+        return saveAndRevokeTokens(user);
     }
 
+    @Transactional
     public User setUserActiveStatus(Long userId, boolean isActive) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         user.setActive(isActive);
-        return userRepository.save(user);
+        return saveAndRevokeTokens(user);
     }
 
     public void deleteUser(Long userId) {
@@ -150,23 +179,41 @@ public class UserService implements UserDetailsService {
             throw new RuntimeException("User not found");
         }
         userRepository.deleteById(userId);
+        securityEpochs.evict(userId);
+        invalidationBus.publish(CACHE_REGION, List.of(userId));
     }
 
+    /**
+     * Reset the failed attempts and set the last login time. Written behind, see {@link LoginBookkeeping}.
+     */
     public void recordSuccessfulLogin(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        user.resetFailedLoginAttempts();
-        user.updateLastLogin();
-        userRepository.save(user);
+        loginBookkeeping.recordSuccess(username);
     }
 
+    /**
+     * Count a failed sign-in and lock the user once there were too many in a row. Written
+     * behind, see {@link LoginBookkeeping}.
+     */
     public void recordFailedLoginAttempt(String username) {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        loginBookkeeping.recordFailure(username);
+    }
+
+    private User saveAndInvalidate(User user) {
+        User saved = userRepository.save(user);
+        securityEpochs.evict(user.getId());
+        invalidationBus.publish(CACHE_REGION, List.of(user.getId()));
+        return saved;
+    }
 
-        user.increaseFailedLoginAttempts();
-        userRepository.save(user);
+    /**
+     * Save the user and bump its security epoch in the same transaction.
+     */
+    private User saveAndRevokeTokens(User user) {
+        User saved = userRepository.save(user);
+        userRepository.bumpSecurityEpoch(user.getId());
+        securityEpochs.evict(user.getId());
+        invalidationBus.publish(CACHE_REGION, List.of(user.getId()));
+        return saved;
     }
 
     private Role getDefaultRole() {
@@ -0,0 +1,6 @@
+-- Delta sync holds (com.example.demo.catalog.ProductChangeFeed): long-running writers
+-- such as the COPY import register here, and the feed does not move past the oldest one.
+CREATE TABLE IF NOT EXISTS product_sync_hold (
+    id         VARCHAR(36)  PRIMARY KEY,
+    held_since TIMESTAMP(6) NOT NULL
+);
@@ -0,0 +1,16 @@
+-- Product table as mapped by com.example.demo.Product, together with the
+-- composite (sort key, id) indexes used by keyset pagination. Written to be a
+-- no-op on databases whose schema was previously created by Hibernate.
+CREATE TABLE IF NOT EXISTS product (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name       VARCHAR(100) NOT NULL,
+    quantity   INTEGER      NOT NULL,
+    price      FLOAT(53)    NOT NULL,
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6)
+);
+
+CREATE INDEX IF NOT EXISTS idx_product_name_id ON product (name, id);
+CREATE INDEX IF NOT EXISTS idx_product_price_id ON product (price, id);
+CREATE INDEX IF NOT EXISTS idx_product_quantity_id ON product (quantity, id);
+CREATE INDEX IF NOT EXISTS idx_product_created_at_id ON product (created_at, id);
@@ -0,0 +1,5 @@
+-- Trigram GIN index serving case-insensitive substring (LIKE) and similarity (%)
+-- searches on product names; see PostgresTrigramProductNameSearch.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_product_name_trgm ON product USING gin (lower(name) gin_trgm_ops);
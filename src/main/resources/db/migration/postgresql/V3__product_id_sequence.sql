@@ -0,0 +1,6 @@
+-- Pooled sequence for product ids (see Product.ID_ALLOCATION_SIZE). Unlike the
+-- identity column, it lets Hibernate assign ids before inserting and batch the
+-- inserts. It starts one allocation block above the current maximum id.
+CREATE SEQUENCE IF NOT EXISTS product_seq INCREMENT BY 50;
+
+SELECT setval('product_seq', COALESCE(MAX(id), 0) + 50) FROM product;
@@ -0,0 +1,3 @@
+-- Optimistic-lock version of com.example.demo.Product. Existing rows start at 0;
+-- every update, including the atomic stock adjustment, increments it.
+ALTER TABLE product ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
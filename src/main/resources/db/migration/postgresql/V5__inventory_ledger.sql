@@ -0,0 +1,27 @@
+-- Append-only stock ledger (com.example.demo.inventory.InventoryLedger) and the periodic
+-- per-product snapshots that keep quantity lookups from replaying the whole history.
+CREATE TABLE IF NOT EXISTS inventory_movement (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    product_id  BIGINT       NOT NULL,
+    delta       BIGINT       NOT NULL,
+    reason      VARCHAR(32)  NOT NULL,
+    occurred_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_inventory_movement_product_time ON inventory_movement (product_id, occurred_at);
+
+CREATE TABLE IF NOT EXISTS inventory_snapshot (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    product_id BIGINT       NOT NULL,
+    quantity   BIGINT       NOT NULL,
+    as_of      TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_inventory_snapshot_product_time ON inventory_snapshot (product_id, as_of);
+
+-- Open the ledger with the stock on hand, so existing products reconcile from day one.
+INSERT INTO inventory_movement (product_id, delta, reason, occurred_at)
+SELECT p.id, p.quantity, 'OPENING_BALANCE', LOCALTIMESTAMP
+FROM product p
+WHERE p.quantity <> 0
+  AND NOT EXISTS (SELECT 1 FROM inventory_movement m WHERE m.product_id = p.id);
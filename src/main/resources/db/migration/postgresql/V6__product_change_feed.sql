@@ -0,0 +1,12 @@
+-- Delta sync (com.example.demo.catalog.ProductChangeFeed): changes are read in
+-- (updated_at, id) order, deletions from tombstones left by the application.
+UPDATE product SET updated_at = COALESCE(created_at, LOCALTIMESTAMP) WHERE updated_at IS NULL;
+
+CREATE INDEX IF NOT EXISTS idx_product_updated_at_id ON product (updated_at, id);
+
+CREATE TABLE IF NOT EXISTS product_tombstone (
+    product_id BIGINT       PRIMARY KEY,
+    deleted_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_product_tombstone_deleted_at_id ON product_tombstone (deleted_at, product_id);
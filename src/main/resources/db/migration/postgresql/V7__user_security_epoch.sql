@@ -0,0 +1,4 @@
+-- Security epoch of com.example.demo.user.User, carried in access tokens so that lock,
+-- deactivation and role changes revoke them. The users table itself is created by
+-- Hibernate, so on a fresh database there is nothing to alter yet.
+ALTER TABLE IF EXISTS users ADD COLUMN IF NOT EXISTS security_epoch BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,8 @@
+-- Token revocation (com.example.demo.security.TokenRevocations): ids of tokens revoked
+-- before they expired, purged once the tokens would have expired anyway.
+CREATE TABLE IF NOT EXISTS revoked_token (
+    jti        BIGINT       PRIMARY KEY,
+    expires_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_revoked_token_expires_at ON revoked_token (expires_at);
@@ -0,0 +1,8 @@
+-- Shared catalog version (com.example.demo.catalog.CatalogVersion): one row, incremented
+-- after every committed catalog change, so all nodes derive the same listing ETag.
+CREATE TABLE IF NOT EXISTS catalog_version (
+    id      SMALLINT PRIMARY KEY,
+    version BIGINT   NOT NULL
+);
+
+INSERT INTO catalog_version (id, version) VALUES (1, 0) ON CONFLICT (id) DO NOTHING;
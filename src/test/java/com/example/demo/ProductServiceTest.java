@@ -1,15 +1,46 @@
 package com.example.demo;
 
+import com.example.demo.cache.LocalCacheInvalidationBus;
+import com.example.demo.catalog.CatalogVersion;
+import com.example.demo.catalog.ProductCache;
+import com.example.demo.catalog.ProductChangeFeed;
+import com.example.demo.catalog.ProductCountEstimator;
+import com.example.demo.catalog.ProductEvent;
+import com.example.demo.catalog.ProductEventBus;
+import com.example.demo.catalog.ProductNameIndex;
+import com.example.demo.catalog.ProductNameSearch;
+import com.example.demo.catalog.ProductSummary;
+import com.example.demo.catalog.ProductVersion;
+import com.example.demo.datasource.PrimaryReads;
+import com.example.demo.inventory.InsufficientStockException;
+import com.example.demo.inventory.InventoryLedger;
+import com.example.demo.inventory.MovementReason;
+import com.example.demo.inventory.StockReservationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PropertyReferenceException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -20,6 +51,37 @@ class ProductServiceTest {
     @Mock
     private ProductRepository repository;
 
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private CatalogVersion catalogVersion;
+
+    @Mock
+    private ProductCountEstimator countEstimator;
+
+    @Mock
+    private ProductNameIndex nameIndex;
+
+    @Mock
+    private ProductNameSearch nameSearch;
+
+    @Mock
+    private StockReservationService reservations;
+
+    @Mock
+    private InventoryLedger ledger;
+
+    @Mock
+    private ProductChangeFeed changeFeed;
+
+    @Mock
+    private ProductEventBus eventBus;
+
+    @Spy
+    private ProductCache productCache = new ProductCache(new SimpleMeterRegistry(), new LocalCacheInvalidationBus(),
+            new PrimaryReads(new TransactionTemplate(), "", Duration.ZERO), 100, Duration.ofMinutes(10));
+
     @InjectMocks
     private ProductService service;
 
@@ -53,6 +115,25 @@ class ProductServiceTest {
         verify(repository, times(1)).findAll();
     }
 
+    @Test
+    void getAllProducts_shouldReadProjections() {
+        ProductSummary summary = new ProductSummary(1L, "Test Product 1", 10, 19.99, 0L, null, null);
+        PageRequest pageable = PageRequest.of(0, 20, Sort.by("name"));
+        when(repository.findSummaries(pageable)).thenReturn(new PageImpl<>(List.of(summary), pageable, 1));
+
+        Page<ProductSummary> result = service.getAllProducts(pageable);
+
+        assertEquals(List.of(summary), result.getContent());
+        verify(repository, never()).findAll(any(Pageable.class));
+    }
+
+    @Test
+    void getAllProducts_shouldRejectUnknownSortProperty() {
+        assertThrows(PropertyReferenceException.class,
+                () -> service.getAllProducts(PageRequest.of(0, 20, Sort.by("colour"))));
+        verifyNoInteractions(repository);
+    }
+
     @Test
     void getProductById_shouldReturnProductWhenExists() {
         when(repository.findById(1L)).thenReturn(Optional.of(testProduct1));
@@ -74,14 +155,60 @@ class ProductServiceTest {
         verify(repository, times(1)).findById(99L);
     }
 
+    @Test
+    void getProductById_shouldServeRepeatedLookupsFromCacheUntilUpdated() {
+        when(repository.findById(1L)).thenReturn(Optional.of(testProduct1));
+        when(repository.save(testProduct1)).thenReturn(testProduct1);
+
+        service.getProductById(1L).orElseThrow().setName("Changed by caller");
+        assertEquals("Test Product 1", service.getProductById(1L).orElseThrow().getName());
+        verify(repository, times(1)).findById(1L);
+
+        Product updatedProduct = new Product();
+        updatedProduct.setName("Updated Product");
+        service.updateProduct(1L, updatedProduct);
+
+        assertEquals("Updated Product", service.getProductById(1L).orElseThrow().getName());
+        verify(productCache, times(1)).evict(1L);
+    }
+
+    @Test
+    void getProductVersion_shouldPreferTheCacheOverAProjectionQuery() {
+        LocalDateTime updatedAt = LocalDateTime.now();
+        when(repository.findVersionById(1L)).thenReturn(Optional.of(new ProductVersion(2L, updatedAt)));
+
+        assertEquals(new ProductVersion(2L, updatedAt), service.getProductVersion(1L).orElseThrow());
+
+        testProduct1.setVersion(3L);
+        when(repository.findById(1L)).thenReturn(Optional.of(testProduct1));
+        service.getProductById(1L);
+
+        assertEquals(3L, service.getProductVersion(1L).orElseThrow().version());
+        verify(repository, times(1)).findVersionById(1L);
+    }
+
     @Test
     void searchByName_shouldReturnMatchingProducts() {
-        when(repository.findByNameContainingIgnoreCase("Test")).thenReturn(Arrays.asList(testProduct1, testProduct2));
+        when(nameSearch.search("Test")).thenReturn(Arrays.asList(testProduct1, testProduct2));
 
         List<Product> result = service.searchByName("Test");
 
         assertEquals(2, result.size());
-        verify(repository, times(1)).findByNameContainingIgnoreCase("Test");
+        verify(nameSearch, times(1)).search("Test");
+    }
+
+    @Test
+    void searchByName_shouldLoadOnlyIndexMatchesForRequestedPage() {
+        when(nameIndex.canServe("product")).thenReturn(true);
+        when(nameIndex.search("product")).thenReturn(new long[]{1L, 2L});
+        ProductSummary summary = new ProductSummary(2L, "Test Product 2", 5, 29.99, 0L, null, null);
+        when(repository.findSummariesByIdIn(List.of(2L))).thenReturn(List.of(summary));
+
+        Page<ProductSummary> result = service.searchByName("product", PageRequest.of(1, 1));
+
+        assertEquals(List.of(summary), result.getContent());
+        assertEquals(2, result.getTotalElements());
+        verify(nameSearch, never()).search(anyString(), any());
     }
 
     @Test
@@ -92,6 +219,25 @@ class ProductServiceTest {
 
         assertEquals("Test Product 1", result.getName());
         verify(repository, times(1)).save(testProduct1);
+        verify(catalogVersion, times(1)).bump();
+        verify(countEstimator, never()).recordCreated(anyLong());
+    }
+
+    @Test
+    void saveProduct_shouldCountNewProducts() {
+        Product newProduct = new Product();
+        newProduct.setName("New Product");
+        newProduct.setQuantity(7);
+        when(repository.save(newProduct)).thenAnswer(invocation -> {
+            newProduct.setId(3L);
+            return newProduct;
+        });
+
+        service.saveProduct(newProduct);
+
+        verify(countEstimator, times(1)).recordCreated(1);
+        verify(ledger, times(1)).record(3L, 7, MovementReason.INITIAL_STOCK);
+        verify(repository, never()).findQuantityById(any());
     }
 
     @Test
@@ -111,6 +257,9 @@ class ProductServiceTest {
         assertEquals(20, result.get().getQuantity());
         verify(repository, times(1)).findById(1L);
         verify(repository, times(1)).save(testProduct1);
+        verify(catalogVersion, times(1)).bump();
+        verify(ledger, times(1)).record(1L, 10, MovementReason.CORRECTION);
+        verify(eventBus, times(1)).publish(ProductEvent.upserted(1L, 20));
     }
 
     @Test
@@ -125,47 +274,146 @@ class ProductServiceTest {
         assertFalse(result.isPresent());
         verify(repository, times(1)).findById(99L);
         verify(repository, never()).save(any());
+        verify(catalogVersion, never()).bump();
+        verifyNoInteractions(eventBus);
     }
 
     @Test
-    void deleteProduct_shouldReturnTrueWhenExists() {
+    void updateProduct_shouldRejectStaleVersion() {
+        testProduct1.setVersion(5L);
+        when(repository.findById(1L)).thenReturn(Optional.of(testProduct1));
+
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> service.updateProduct(1L, new Product(), 4L));
+        verify(repository, never()).save(any());
+        verify(catalogVersion, never()).bump();
+    }
+
+    @Test
+    void adjustStock_shouldApplyDeltaWithSingleUpdate() {
+        when(reservations.withdraw(1L, 4)).thenReturn(true);
+        when(repository.adjustQuantity(eq(1L), eq(-4), any(LocalDateTime.class))).thenReturn(1);
+
+        assertTrue(service.adjustStock(1L, -4));
+        verify(repository, never()).findById(any());
+        verify(repository, never()).existsById(any());
+        verify(catalogVersion, times(1)).bump();
+        verify(reservations, times(1)).refresh(1L);
+        verify(ledger, times(1)).record(1L, -4, MovementReason.PICK);
+        verify(eventBus, times(1)).publish(ProductEvent.stock(1L, -4));
+    }
+
+    @Test
+    void adjustStock_shouldRecordGivenReason() {
+        when(reservations.withdraw(1L, 2)).thenReturn(true);
+        when(repository.adjustQuantity(eq(1L), eq(-2), any(LocalDateTime.class))).thenReturn(1);
+
+        assertTrue(service.adjustStock(1L, -2, MovementReason.SALE));
+        verify(ledger, times(1)).record(1L, -2, MovementReason.SALE);
+    }
+
+    @Test
+    void adjustStock_shouldRejectOversell() {
+        when(reservations.withdraw(1L, 40)).thenReturn(true);
+        when(repository.adjustQuantity(eq(1L), eq(-40), any(LocalDateTime.class))).thenReturn(0);
         when(repository.existsById(1L)).thenReturn(true);
+
+        assertThrows(InsufficientStockException.class, () -> service.adjustStock(1L, -40));
+        verify(catalogVersion, never()).bump();
+        verifyNoInteractions(ledger);
+    }
+
+    @Test
+    void adjustStock_shouldNotPickReservedStock() {
+        when(reservations.withdraw(1L, 5)).thenThrow(new InsufficientStockException(1L, -5));
+
+        assertThrows(InsufficientStockException.class, () -> service.adjustStock(1L, -5));
+        verify(repository, never()).adjustQuantity(any(), anyInt(), any());
+        verifyNoInteractions(ledger);
+    }
+
+    @Test
+    void updateProduct_shouldWithdrawLoweredQuantity() {
+        Product updatedProduct = new Product();
+        updatedProduct.setName("Updated Product");
+        updatedProduct.setQuantity(4);
+        when(repository.findById(1L)).thenReturn(Optional.of(testProduct1));
+        when(reservations.withdraw(1L, 6)).thenThrow(new InsufficientStockException(1L, -6));
+
+        assertThrows(InsufficientStockException.class, () -> service.updateProduct(1L, updatedProduct));
+        verify(repository, never()).save(any());
+        verifyNoInteractions(ledger);
+    }
+
+    @Test
+    void adjustStock_shouldReturnFalseWhenProductMissing() {
+        when(repository.adjustQuantity(eq(99L), eq(5), any(LocalDateTime.class))).thenReturn(0);
+        when(repository.existsById(99L)).thenReturn(false);
+
+        assertFalse(service.adjustStock(99L, 5));
+    }
+
+    @Test
+    void deleteProduct_shouldReturnTrueWhenExists() {
+        when(repository.findQuantityById(1L)).thenReturn(Optional.of(10));
         doNothing().when(repository).deleteById(1L);
 
         boolean result = service.deleteProduct(1L);
 
         assertTrue(result);
-        verify(repository, times(1)).existsById(1L);
+        verify(repository, times(1)).findQuantityById(1L);
         verify(repository, times(1)).deleteById(1L);
+        verify(ledger, times(1)).record(1L, -10, MovementReason.DELETION);
+        verify(changeFeed, times(1)).recordDeletion(1L);
+        verify(eventBus, times(1)).publish(ProductEvent.deleted(1L));
+        verify(catalogVersion, times(1)).bump();
+        verify(nameIndex, times(1)).remove(1L);
+        verify(countEstimator, times(1)).recordDeleted(1);
     }
 
     @Test
     void deleteProduct_shouldReturnFalseWhenNotExists() {
-        when(repository.existsById(99L)).thenReturn(false);
+        when(repository.findQuantityById(99L)).thenReturn(Optional.empty());
 
         boolean result = service.deleteProduct(99L);
 
         assertFalse(result);
-        verify(repository, times(1)).existsById(99L);
+        verify(repository, times(1)).findQuantityById(99L);
         verify(repository, never()).deleteById(anyLong());
+        verify(catalogVersion, never()).bump();
     }
 
     @Test
     void generateInvoicePdf_shouldGeneratePdfSuccessfully() {
-        when(repository.findAll()).thenReturn(Arrays.asList(testProduct1, testProduct2));
+        when(repository.streamAllByOrderByIdAsc()).thenReturn(Stream.of(testProduct1, testProduct2));
 
         byte[] result = service.generateInvoicePdf();
 
         assertNotNull(result);
         assertTrue(result.length > 0);
-        verify(repository, times(1)).findAll();
+        verify(repository, times(1)).streamAllByOrderByIdAsc();
+        verify(repository, never()).findAll();
     }
 
     @Test
     void generateInvoicePdf_shouldThrowExceptionWhenErrorOccurs() {
-        when(repository.findAll()).thenThrow(new RuntimeException("Database error"));
+        when(repository.streamAllByOrderByIdAsc()).thenThrow(new RuntimeException("Database error"));
 
         assertThrows(RuntimeException.class, () -> service.generateInvoicePdf());
-        verify(repository, times(1)).findAll();
+        verify(repository, times(1)).streamAllByOrderByIdAsc();
+    }
+
+    @Test
+    void writeInvoicePdf_shouldStreamEveryChunkAndDetachRenderedProducts() {
+        int rows = ProductService.INVOICE_CHUNK_SIZE * 2 + 1;
+        when(repository.streamAllByOrderByIdAsc()).thenReturn(Stream.generate(() -> testProduct1).limit(rows));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service.writeInvoicePdf(out);
+
+        String pdf = out.toString(java.nio.charset.StandardCharsets.ISO_8859_1);
+        assertTrue(pdf.startsWith("%PDF"));
+        assertTrue(pdf.contains("%%EOF"));
+        verify(entityManager, times(rows)).detach(testProduct1);
     }
 }
\ No newline at end of file
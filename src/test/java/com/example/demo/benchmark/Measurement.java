@@ -0,0 +1,45 @@
+package com.example.demo.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+/**
+ * Repeatable timing for the {@code *Benchmark} classes: an operation is warmed up, then run
+ * a fixed number of times on the calling thread, which reports the mean latency and the
+ * bytes that thread allocated per operation. Not a substitute for JMH, but enough to compare
+ * two variants of the same operation in one JVM.
+ * <p>
+ * Benchmarks do not match the default surefire includes and are run on request, e.g.
+ * {@code mvn test -Dtest='*Benchmark'}.
+ */
+public final class Measurement {
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Measurement() {
+    }
+
+    public record Result(String name, int operations, double nanosPerOperation, double bytesPerOperation) {
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-40s %10.2f us/op %12.0f B/op (%d ops)",
+                    name, nanosPerOperation / 1_000, bytesPerOperation, operations);
+        }
+    }
+
+    public static Result measure(String name, int warmup, int operations, Runnable operation) {
+        for (int i = 0; i < warmup; i++) {
+            operation.run();
+        }
+        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            operation.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        return new Result(name, operations, (double) elapsed / operations, (double) allocated / operations);
+    }
+}
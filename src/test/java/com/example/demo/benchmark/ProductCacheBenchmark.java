@@ -0,0 +1,96 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.Product;
+import com.example.demo.ProductRepository;
+import com.example.demo.cache.LocalCacheInvalidationBus;
+import com.example.demo.catalog.ProductCache;
+import com.example.demo.datasource.PrimaryReads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Latency of single-product lookups straight from the database against lookups through
+ * the {@link ProductCache}, once with every lookup hitting a small hot set and once with
+ * a skewed spread over a catalog ten times the cache size.
+ */
+@Slf4j
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductCacheBenchmark {
+
+    private static final int PRODUCTS = 10_000;
+    private static final int CACHE_SIZE = 1_000;
+    private static final int HOT_SET = 100;
+    private static final int WARMUP = 5_000;
+    private static final int OPERATIONS = 20_000;
+
+    @Autowired
+    private ProductRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private List<Long> ids;
+    private ProductCache cache;
+
+    @BeforeEach
+    void setUp() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        if (repository.count() == 0) {
+            List<Product> products = new ArrayList<>(PRODUCTS);
+            for (int i = 0; i < PRODUCTS; i++) {
+                products.add(new Product(null, "Product " + i, i % 500, 1 + i % 97, null, null, null));
+            }
+            transactionTemplate.executeWithoutResult(status -> repository.saveAll(products));
+        }
+        ids = repository.findAll().stream().map(Product::getId).sorted().toList();
+        cache = new ProductCache(new SimpleMeterRegistry(), new LocalCacheInvalidationBus(),
+                new PrimaryReads(transactionTemplate, "", Duration.ZERO), CACHE_SIZE, Duration.ofMinutes(10));
+    }
+
+    @Test
+    void productLookup_databaseAgainstCache() {
+        Measurement.Result hotDatabase = Measurement.measure("lookup hot set, database", WARMUP, OPERATIONS,
+                () -> repository.findById(hot()).orElseThrow());
+        Measurement.Result hotCache = Measurement.measure("lookup hot set, cache", WARMUP, OPERATIONS,
+                () -> cache.get(hot(), repository::findById).orElseThrow());
+        Measurement.Result skewedDatabase = Measurement.measure("lookup skewed, database", WARMUP, OPERATIONS,
+                () -> repository.findById(skewed()).orElseThrow());
+        Measurement.Result skewedCache = Measurement.measure("lookup skewed, cache", WARMUP, OPERATIONS,
+                () -> cache.get(skewed(), repository::findById).orElseThrow());
+        log.info("{}", hotDatabase);
+        log.info("{}", hotCache);
+        log.info("{}", skewedDatabase);
+        log.info("{}", skewedCache);
+
+        assertTrue(hotCache.nanosPerOperation() < hotDatabase.nanosPerOperation(),
+                "cache hits should be faster than database reads: " + hotCache + " vs " + hotDatabase);
+    }
+
+    private Long hot() {
+        return ids.get(ThreadLocalRandom.current().nextInt(HOT_SET));
+    }
+
+    /**
+     * Cubing a uniform draw puts about half of the lookups on the first eighth of the catalog.
+     */
+    private Long skewed() {
+        double draw = ThreadLocalRandom.current().nextDouble();
+        return ids.get((int) (draw * draw * draw * ids.size()));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.Product;
+import com.example.demo.ProductRepository;
+import com.example.demo.catalog.ProductSummary;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Cost per listing page of managed {@link Product} entities in a read-write transaction,
+ * as listings were served before, against {@link ProductSummary} projections in a
+ * read-only one, as they are now.
+ */
+@Slf4j
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProductListingBenchmark {
+
+    private static final int PRODUCTS = 10_000;
+    private static final int PAGE_SIZE = 50;
+    private static final int WARMUP = 500;
+    private static final int OPERATIONS = 2_000;
+
+    @Autowired
+    private ProductRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readWrite;
+    private TransactionTemplate readOnly;
+
+    @BeforeEach
+    void setUp() {
+        readWrite = new TransactionTemplate(transactionManager);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        if (repository.count() == 0) {
+            List<Product> products = new ArrayList<>(PRODUCTS);
+            for (int i = 0; i < PRODUCTS; i++) {
+                products.add(new Product(null, "Product " + i, i % 500, 1 + i % 97, null, null, null));
+            }
+            readWrite.executeWithoutResult(status -> repository.saveAll(products));
+        }
+    }
+
+    @Test
+    void listingPage_entitiesAgainstProjections() {
+        Page<Product> entities = readWrite.execute(status -> repository.findAll(page(3)));
+        Page<ProductSummary> summaries = readOnly.execute(status -> repository.findSummaries(page(3)));
+        assertEquals(entities.getContent().stream().map(Product::getId).toList(),
+                summaries.getContent().stream().map(ProductSummary::id).toList());
+
+        Measurement.Result entity = Measurement.measure("listing page, entities", WARMUP, OPERATIONS,
+                () -> readWrite.execute(status -> repository.findAll(randomPage())));
+        Measurement.Result projection = Measurement.measure("listing page, projections", WARMUP, OPERATIONS,
+                () -> readOnly.execute(status -> repository.findSummaries(randomPage())));
+        log.info("{}", entity);
+        log.info("{}", projection);
+
+        assertTrue(projection.bytesPerOperation() < entity.bytesPerOperation(),
+                "projections should allocate less per page: " + projection + " vs " + entity);
+    }
+
+    private static PageRequest randomPage() {
+        return page(ThreadLocalRandom.current().nextInt(PRODUCTS / PAGE_SIZE));
+    }
+
+    private static PageRequest page(int number) {
+        return PageRequest.of(number, PAGE_SIZE, Sort.by("id"));
+    }
+}
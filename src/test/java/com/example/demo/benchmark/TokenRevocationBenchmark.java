@@ -0,0 +1,88 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.cache.LocalCacheInvalidationBus;
+import com.example.demo.datasource.PrimaryReads;
+import com.example.demo.security.RevokedToken;
+import com.example.demo.security.RevokedTokenRepository;
+import com.example.demo.security.TokenRevocations;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * What the denylist check adds to every authenticated request: a lookup in the
+ * {@code revoked_token} table, as before the Bloom filter and still until its first build,
+ * against the filter answering for a token that was never revoked. Revoked ids are even and
+ * the checked ids odd, so every table read after the filter is a false positive.
+ */
+@Slf4j
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class TokenRevocationBenchmark {
+
+    private static final int REVOKED = 10_000;
+    private static final int WARMUP = 5_000;
+    private static final int OPERATIONS = 50_000;
+
+    @Autowired
+    private RevokedTokenRepository repository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private TokenRevocations revocations;
+
+    @BeforeEach
+    void setUp() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        if (repository.count() == 0) {
+            LocalDateTime expiresAt = LocalDateTime.now().plusDays(1);
+            List<RevokedToken> tokens = new ArrayList<>(REVOKED);
+            for (long i = 1; i <= REVOKED; i++) {
+                tokens.add(new RevokedToken(2 * i, expiresAt));
+            }
+            transactionTemplate.executeWithoutResult(status -> repository.saveAll(tokens));
+        }
+        meterRegistry = new SimpleMeterRegistry();
+        revocations = new TokenRevocations(repository, new PrimaryReads(transactionTemplate, "", Duration.ZERO),
+                new LocalCacheInvalidationBus(), meterRegistry, 100_000, 0.01);
+    }
+
+    @Test
+    void revocationCheck_tableAgainstBloomFilter() {
+        Measurement.Result table = Measurement.measure("revocation check, table", WARMUP, OPERATIONS,
+                () -> assertFalse(revocations.isRevoked(neverRevoked())));
+        revocations.rebuild();
+        Measurement.Result filtered = Measurement.measure("revocation check, bloom filter", WARMUP, OPERATIONS,
+                () -> assertFalse(revocations.isRevoked(neverRevoked())));
+        assertTrue(revocations.isRevoked(2L));
+        log.info("{}", table);
+        log.info("{}", filtered);
+
+        long falsePositives = meterRegistry.get("jwt.revocation.checks").tag("result", "false-positive").timer().count();
+        long negatives = meterRegistry.get("jwt.revocation.checks").tag("result", "negative").timer().count();
+        log.info("bloom filter false positives: {} of {} checks", falsePositives, falsePositives + negatives);
+        assertTrue(filtered.nanosPerOperation() < table.nanosPerOperation(),
+                "the filter should answer faster than the table: " + filtered + " vs " + table);
+    }
+
+    private static long neverRevoked() {
+        return 2L * ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE / 2) + 1;
+    }
+}
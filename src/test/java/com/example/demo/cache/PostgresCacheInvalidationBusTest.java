@@ -0,0 +1,103 @@
+package com.example.demo.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PostgresCacheInvalidationBusTest {
+
+    @Mock
+    private DataSource dataSource;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private PostgresCacheInvalidationBus bus;
+
+    @BeforeEach
+    void setUp() {
+        bus = new PostgresCacheInvalidationBus(dataSource, jdbcTemplate, new SimpleMeterRegistry(), 500, 5000);
+    }
+
+    @Test
+    void publish_shouldNotifyImmediatelyOutsideTransactions() {
+        bus.publish("products", List.of(1L, 2L));
+
+        verify(jdbcTemplate).queryForList(anyString(), eq(PostgresCacheInvalidationBus.CHANNEL),
+                eq(bus.nodeId() + "|products|1,2"));
+    }
+
+    @Test
+    void publish_shouldCoalesceOneTransactionIntoOneNotificationPerRegion() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            bus.publish("products", List.of(1L));
+            bus.publish("products", List.of(2L, 1L));
+            bus.publish("users", List.of(5L));
+            bus.publish("users", List.of());
+            verifyNoInteractions(jdbcTemplate);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(sync -> sync.beforeCommit(false));
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(jdbcTemplate).queryForList(anyString(), eq(PostgresCacheInvalidationBus.CHANNEL),
+                eq(bus.nodeId() + "|products|1,2"));
+        verify(jdbcTemplate).queryForList(anyString(), eq(PostgresCacheInvalidationBus.CHANNEL),
+                eq(bus.nodeId() + "|users|*"));
+        verifyNoMoreInteractions(jdbcTemplate);
+        assertFalse(TransactionSynchronizationManager.hasResource(bus));
+    }
+
+    @Test
+    void payloads_shouldSplitLargeKeySets() {
+        Set<Long> ids = LongStream.range(1_000_000, 1_003_000).boxed()
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+
+        List<String> payloads = PostgresCacheInvalidationBus.payloads("node", Map.of("products", ids));
+
+        assertTrue(payloads.size() > 1);
+        payloads.forEach(payload -> assertTrue(payload.length() <= PostgresCacheInvalidationBus.MAX_PAYLOAD_LENGTH));
+        long delivered = payloads.stream()
+                .mapToLong(payload -> payload.substring("node|products|".length()).split(",").length)
+                .sum();
+        assertEquals(ids.size(), delivered);
+    }
+
+    @Test
+    void handle_shouldDeliverOtherNodesMessagesToSubscribers() {
+        List<Collection<Long>> received = new ArrayList<>();
+        bus.subscribe("products", received::add);
+
+        bus.handle("other-node|products|3,4");
+        bus.handle("other-node|products|*");
+        bus.handle(bus.nodeId() + "|products|5");
+        bus.handle("other-node|users|6");
+
+        assertEquals(List.of(List.of(3L, 4L), List.of()), received);
+    }
+}
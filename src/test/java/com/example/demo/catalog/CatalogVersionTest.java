@@ -0,0 +1,171 @@
+package com.example.demo.catalog;
+
+import com.example.demo.cache.CacheInvalidationBus;
+import com.example.demo.datasource.PrimaryReads;
+import com.example.demo.datasource.ReplicaRoutingDataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogVersionTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private PrimaryReads primaryReads;
+    private ClusterBus bus;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE catalog_version (id SMALLINT PRIMARY KEY, version BIGINT NOT NULL)");
+        jdbcTemplate.update("INSERT INTO catalog_version VALUES (1, 0)");
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        primaryReads = new PrimaryReads(transactionTemplate, "", Duration.ZERO);
+        bus = new ClusterBus();
+    }
+
+    @Test
+    void etag_shouldBeTheSameOnEveryNode() {
+        CatalogVersion first = node();
+        CatalogVersion second = node();
+
+        assertEquals(first.etag(), second.etag());
+
+        transactionTemplate.executeWithoutResult(status -> first.bump());
+        first.publishShared();
+
+        assertEquals(first.etag(), second.etag());
+        assertEquals(1L, storedVersion());
+    }
+
+    @Test
+    void publishShared_shouldCountAllChangesSinceTheLastCallOnce() {
+        CatalogVersion node = node();
+        String before = node.etag();
+
+        transactionTemplate.executeWithoutResult(status -> node.bump());
+        node.bump();
+        node.bump();
+        assertEquals(0L, storedVersion());
+
+        node.publishShared();
+        node.publishShared();
+
+        assertEquals(1L, storedVersion());
+        assertNotEquals(before, node.etag());
+    }
+
+    @Test
+    void etag_shouldNotChangeOnRolledBackChange() {
+        CatalogVersion first = node();
+        CatalogVersion second = node();
+        String before = second.etag();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            first.bump();
+            status.setRollbackOnly();
+        });
+        first.publishShared();
+
+        assertEquals(before, first.etag());
+        assertEquals(before, second.etag());
+        assertEquals(0L, storedVersion());
+    }
+
+    @Test
+    void etag_shouldNotReadTheRowAgainUntilTheCatalogChanges() {
+        CatalogVersion node = node();
+        String tag = node.etag();
+
+        jdbcTemplate.update("UPDATE catalog_version SET version = 42 WHERE id = 1");
+
+        assertEquals(tag, node.etag());
+        node.bump();
+        node.publishShared();
+        assertEquals("W/\"43\"", node.etag());
+    }
+
+    @Test
+    void etag_shouldStayLocalWhenNotShared() {
+        CatalogVersion first = new CatalogVersion(bus, jdbcTemplate, transactionTemplate, primaryReads, false);
+        CatalogVersion second = new CatalogVersion(bus, jdbcTemplate, transactionTemplate, primaryReads, false);
+
+        first.bump();
+        first.publishShared();
+
+        assertNotEquals(first.etag(), second.etag());
+        assertEquals(0L, storedVersion());
+    }
+
+    @Test
+    void responseTag_shouldBeWithheldForReplicaReadsWhileTheyMayMissTheChange() throws InterruptedException {
+        primaryReads = new PrimaryReads(transactionTemplate, "jdbc:h2:mem:replica", Duration.ofMillis(200));
+        CatalogVersion node = node();
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        try {
+            node.bump();
+            node.publishShared();
+            String tag = node.etag();
+            assertEquals("W/\"1\"", tag);
+            assertEquals(tag, node.responseTag(tag));
+
+            request.setAttribute(ReplicaRoutingDataSource.REPLICA_READ_ATTRIBUTE, Boolean.TRUE);
+            assertNull(node.responseTag(tag));
+
+            Thread.sleep(250);
+            assertEquals(tag, node.responseTag(tag));
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    private CatalogVersion node() {
+        return new CatalogVersion(bus, jdbcTemplate, transactionTemplate, primaryReads, true);
+    }
+
+    private long storedVersion() {
+        return jdbcTemplate.queryForObject("SELECT version FROM catalog_version WHERE id = 1", Long.class);
+    }
+
+    /**
+     * Hands every published message to the subscribers of all nodes, like the PostgreSQL
+     * bus would after commit; a node ignoring its own messages makes no difference here.
+     */
+    private static class ClusterBus implements CacheInvalidationBus {
+
+        private final List<Subscriber> subscribers = new ArrayList<>();
+
+        @Override
+        public void publish(String region, Collection<Long> ids) {
+            subscribers.stream()
+                    .filter(subscriber -> subscriber.region().equals(region))
+                    .forEach(subscriber -> subscriber.consumer().accept(ids));
+        }
+
+        @Override
+        public void subscribe(String region, Consumer<Collection<Long>> subscriber) {
+            subscribers.add(new Subscriber(region, subscriber));
+        }
+
+        private record Subscriber(String region, Consumer<Collection<Long>> consumer) {
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo.catalog;
+
+import com.example.demo.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MaintainedProductCounterTest {
+
+    @Mock
+    private ProductRepository repository;
+
+    @InjectMocks
+    private MaintainedProductCounter counter;
+
+    @Test
+    void estimate_shouldCountOnceAndThenFollowWrites() {
+        when(repository.count()).thenReturn(10L);
+
+        assertEquals(10L, counter.estimate());
+        counter.recordCreated(3);
+        counter.recordDeleted(1);
+
+        assertEquals(12L, counter.estimate());
+        verify(repository, times(1)).count();
+    }
+
+    @Test
+    void writesBeforeFirstEstimate_shouldBeCoveredByTheInitialCount() {
+        counter.recordCreated(5);
+        when(repository.count()).thenReturn(5L);
+
+        assertEquals(5L, counter.estimate());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.demo.catalog;
+
+import com.example.demo.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PostgresTrigramProductNameSearchTest {
+
+    @Mock
+    private ProductRepository repository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    private PostgresTrigramProductNameSearch search;
+
+    @BeforeEach
+    void setUp() {
+        search = new PostgresTrigramProductNameSearch(repository, jdbcTemplate, namedJdbcTemplate, 0.4);
+    }
+
+    @Test
+    void likePattern_shouldEscapeWildcards() {
+        assertEquals("%50\\%\\_off\\\\%", ProductNameSearch.likePattern("50%_off\\"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void search_shouldLowerCaseQueryAndApplyThreshold() {
+        search.search("Schraube", PageRequest.of(0, 20));
+
+        verify(jdbcTemplate).queryForObject(anyString(), eq(String.class), eq("0.4"));
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<SqlParameterSource> parameters = ArgumentCaptor.forClass(SqlParameterSource.class);
+        verify(namedJdbcTemplate).query(sql.capture(), parameters.capture(), any(RowMapper.class));
+        assertTrue(sql.getValue().contains("ORDER BY similarity"));
+        assertEquals("schraube", parameters.getValue().getValue("query"));
+        assertEquals("%schraube%", parameters.getValue().getValue("pattern"));
+        assertEquals(20, parameters.getValue().getValue("limit"));
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void search_withExplicitSort_shouldSkipSimilarityRanking() {
+        search.search("schraube", PageRequest.of(0, 20, Sort.by("price")));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(namedJdbcTemplate).query(sql.capture(), any(SqlParameterSource.class), any(RowMapper.class));
+        assertFalse(sql.getValue().contains("similarity("));
+        assertTrue(sql.getValue().contains("ORDER BY p.price ASC, p.id"));
+    }
+
+    @Test
+    void orderBy_shouldRejectUnknownProperties() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PostgresTrigramProductNameSearch.orderBy(Sort.by("p.id; DROP TABLE product")));
+    }
+}
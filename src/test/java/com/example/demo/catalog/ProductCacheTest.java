@@ -0,0 +1,133 @@
+package com.example.demo.catalog;
+
+import com.example.demo.Product;
+import com.example.demo.cache.CacheInvalidationBus;
+import com.example.demo.datasource.PrimaryReads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ProductCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CacheInvalidationBus invalidationBus;
+    private ProductCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        invalidationBus = mock(CacheInvalidationBus.class);
+        cache = new ProductCache(meterRegistry, invalidationBus,
+                new PrimaryReads(new TransactionTemplate(), "", Duration.ZERO), 100, Duration.ofMinutes(10));
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void get_shouldLoadOnceAndCountHitsAndMisses() {
+        cache.get(1L, loader());
+        cache.get(1L, loader());
+        cache.get(1L, loader());
+
+        assertEquals(1, loads.get());
+        assertEquals(2, meterRegistry.get("cache.gets").tag("cache", ProductCache.NAME).tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", ProductCache.NAME).tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    void get_shouldNotCacheMissingProducts() {
+        assertTrue(cache.get(99L, id -> Optional.empty()).isEmpty());
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void get_shouldHandOutCopies() {
+        cache.get(1L, loader()).orElseThrow().setQuantity(0);
+
+        assertEquals(5, cache.get(1L, loader()).orElseThrow().getQuantity());
+    }
+
+    @Test
+    void evict_shouldForceReload() {
+        cache.get(1L, loader());
+        cache.get(2L, loader());
+
+        cache.evict(1L);
+        cache.evictAll(List.of(2L));
+        cache.get(1L, loader());
+        cache.get(2L, loader());
+
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void evict_shouldEvictAgainAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.evict(1L);
+            cache.get(1L, loader());
+            assertEquals(1, cache.size());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+
+            assertEquals(0, cache.size());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void evict_shouldPublishToOtherNodes() {
+        cache.evict(1L);
+        cache.clear();
+
+        verify(invalidationBus).publish(ProductCache.NAME, List.of(1L));
+        verify(invalidationBus).publish(ProductCache.NAME, List.of());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void invalidationsFromOtherNodes_shouldEvictLocally() {
+        ArgumentCaptor<Consumer<Collection<Long>>> subscriber = ArgumentCaptor.forClass(Consumer.class);
+        verify(invalidationBus).subscribe(eq(ProductCache.NAME), subscriber.capture());
+        cache.get(1L, loader());
+        cache.get(2L, loader());
+
+        subscriber.getValue().accept(List.of(1L));
+        assertEquals(1, cache.size());
+
+        subscriber.getValue().accept(List.of());
+        assertEquals(0, cache.size());
+        verify(invalidationBus, never()).publish(anyString(), anyCollection());
+    }
+
+    private Function<Long, Optional<Product>> loader() {
+        return id -> {
+            loads.incrementAndGet();
+            Product product = new Product();
+            product.setId(id);
+            product.setName("Product " + id);
+            product.setQuantity(5);
+            return Optional.of(product);
+        };
+    }
+}
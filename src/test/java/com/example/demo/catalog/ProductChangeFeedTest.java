@@ -0,0 +1,135 @@
+package com.example.demo.catalog;
+
+import com.example.demo.Product;
+import com.example.demo.ProductRepository;
+import com.example.demo.datasource.PrimaryReads;
+import com.example.demo.dto.ProductChangesResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductChangeFeedTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductTombstoneRepository tombstoneRepository;
+
+    @Mock
+    private ProductSyncHoldRepository holdRepository;
+
+    private ProductChangeFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        feed = new ProductChangeFeed(productRepository, tombstoneRepository, holdRepository,
+                new PrimaryReads(new TransactionTemplate(), "", Duration.ZERO), Duration.ofSeconds(5), Duration.ofDays(30), Duration.ofHours(1));
+    }
+
+    @Test
+    void changesSince_shouldMergeUpdatesAndDeletionsInTimeOrder() {
+        LocalDateTime base = LocalDateTime.now().minusMinutes(10);
+        when(productRepository.findChangedAfter(any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(product(1L, base.plusSeconds(1)), product(2L, base.plusSeconds(3))));
+        when(tombstoneRepository.findDeletedAfter(any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(new ProductTombstone(7L, base.plusSeconds(2))));
+
+        ProductChangesResponse first = feed.changesSince(null, 2);
+
+        assertEquals(List.of(1L), first.getUpserted().stream().map(Product::getId).toList());
+        assertEquals(List.of(7L), first.getDeleted());
+        assertTrue(first.isHasMore());
+        ProductChangeFeed.Position next = ProductChangeFeed.Position.decode(first.getNextToken());
+        assertEquals(new ProductChangeFeed.Position(base.plusSeconds(2), 7L), next);
+    }
+
+    @Test
+    void changesSince_shouldContinueFromTheSettledHorizonWhenCaughtUp() {
+        LocalDateTime since = LocalDateTime.now().minusMinutes(1);
+        String token = new ProductChangeFeed.Position(since, 3L).encode();
+        when(productRepository.findChangedAfter(eq(since), eq(3L), any(), any(Pageable.class))).thenReturn(List.of());
+        when(tombstoneRepository.findDeletedAfter(eq(since), eq(3L), any(), any(Pageable.class))).thenReturn(List.of());
+
+        ProductChangesResponse response = feed.changesSince(token, 100);
+
+        assertFalse(response.isHasMore());
+        ProductChangeFeed.Position next = ProductChangeFeed.Position.decode(response.getNextToken());
+        assertEquals(Long.MAX_VALUE, next.id());
+        assertTrue(next.time().isBefore(LocalDateTime.now().minusSeconds(4)));
+        ArgumentCaptor<LocalDateTime> until = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(productRepository).findChangedAfter(eq(since), eq(3L), until.capture(), any(Pageable.class));
+        assertEquals(next.time(), until.getValue());
+    }
+
+    @Test
+    void changesSince_shouldStayBehindAnOpenHold() {
+        LocalDateTime since = LocalDateTime.now().minusMinutes(5);
+        LocalDateTime heldSince = LocalDateTime.now().minusMinutes(2).truncatedTo(ChronoUnit.MICROS);
+        String token = new ProductChangeFeed.Position(since, 3L).encode();
+        when(holdRepository.findOldestHeldSinceAfter(any())).thenReturn(Optional.of(heldSince));
+        when(productRepository.findChangedAfter(eq(since), eq(3L), any(), any(Pageable.class))).thenReturn(List.of());
+        when(tombstoneRepository.findDeletedAfter(eq(since), eq(3L), any(), any(Pageable.class))).thenReturn(List.of());
+
+        ProductChangesResponse response = feed.changesSince(token, 100);
+
+        ProductChangeFeed.Position next = ProductChangeFeed.Position.decode(response.getNextToken());
+        assertEquals(heldSince.minusSeconds(5), next.time());
+        verify(productRepository).findChangedAfter(eq(since), eq(3L), eq(heldSince.minusSeconds(5)), any(Pageable.class));
+    }
+
+    @Test
+    void hold_shouldBeReleasedOnClose() {
+        when(holdRepository.save(any(ProductSyncHold.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        ProductSyncHold saved;
+        try (ProductChangeFeed.Hold hold = feed.hold()) {
+            ArgumentCaptor<ProductSyncHold> captor = ArgumentCaptor.forClass(ProductSyncHold.class);
+            verify(holdRepository).save(captor.capture());
+            saved = captor.getValue();
+            verify(holdRepository, never()).deleteById(any());
+        }
+
+        verify(holdRepository).deleteById(saved.getId());
+    }
+
+    @Test
+    void changesSince_shouldRequireResetForTokensOlderThanTombstones() {
+        String token = new ProductChangeFeed.Position(LocalDateTime.now().minusDays(31), 1L).encode();
+
+        ProductChangesResponse response = feed.changesSince(token, 100);
+
+        assertTrue(response.isResetRequired());
+        assertNull(response.getNextToken());
+        verifyNoInteractions(productRepository, tombstoneRepository);
+    }
+
+    @Test
+    void changesSince_shouldRejectForeignTokens() {
+        assertThrows(IllegalArgumentException.class, () -> feed.changesSince("not-a-token", 10));
+    }
+
+    private static Product product(Long id, LocalDateTime updatedAt) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Product " + id);
+        product.setUpdatedAt(updatedAt);
+        return product;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo.catalog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductCursorCodecTest {
+
+    private final ProductCursorCodec codec = new ProductCursorCodec(new ObjectMapper());
+
+    @Test
+    void sort_shouldAppendIdAsTieBreaker() {
+        Sort sort = codec.sort("price", "desc");
+
+        assertEquals(Sort.by(Sort.Direction.DESC, "price").and(Sort.by(Sort.Direction.DESC, "id")), sort);
+        assertEquals(Sort.by(Sort.Direction.ASC, "id"), codec.sort("id", "asc"));
+    }
+
+    @Test
+    void sort_shouldRejectUnsupportedProperty() {
+        assertThrows(IllegalArgumentException.class, () -> codec.sort("updatedAt", "asc"));
+    }
+
+    @Test
+    void decode_shouldReturnInitialPositionWithoutToken() {
+        ScrollPosition position = codec.decode(null, codec.sort("id", "asc"));
+
+        assertTrue(position.isInitial());
+    }
+
+    @Test
+    void encodeAndDecode_shouldRoundTripTypedKeys() {
+        Sort sort = codec.sort("createdAt", "asc");
+        LocalDateTime createdAt = LocalDateTime.of(2024, 3, 1, 12, 30, 15, 123456000);
+        Map<String, Object> keys = new LinkedHashMap<>();
+        keys.put("createdAt", createdAt);
+        keys.put("id", 42L);
+
+        String token = codec.encode(ScrollPosition.forward(keys), sort);
+        KeysetScrollPosition decoded = (KeysetScrollPosition) codec.decode(token, sort);
+
+        assertEquals(createdAt, decoded.getKeys().get("createdAt"));
+        assertEquals(42L, decoded.getKeys().get("id"));
+        assertTrue(decoded.scrollsForward());
+    }
+
+    @Test
+    void decode_shouldRejectTokenIssuedForAnotherSort() {
+        Sort byName = codec.sort("name", "asc");
+        String token = codec.encode(ScrollPosition.forward(Map.of("name", "Axt", "id", 2L)), byName);
+
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(token, codec.sort("name", "desc")));
+    }
+
+    @Test
+    void decode_shouldRejectGarbage() {
+        assertThrows(IllegalArgumentException.class, () -> codec.decode("not-a-cursor", codec.sort("id", "asc")));
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.demo.catalog;
+
+import com.example.demo.cache.CacheInvalidationBus;
+import com.example.demo.cache.LocalCacheInvalidationBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ProductEventBusTest {
+
+    private ProductEventBus bus = new ProductEventBus(new LocalCacheInvalidationBus(), new SimpleMeterRegistry(), 4, 2);
+
+    @AfterEach
+    void tearDown() {
+        bus.shutdown();
+    }
+
+    @Test
+    void publish_shouldDeliverEventsInOrder() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        bus.subscribe(sink, null);
+
+        bus.publish(ProductEvent.upserted(1L, 5));
+        bus.publish(ProductEvent.stock(1L, -2));
+
+        assertEquals(ProductEvent.upserted(1L, 5), sink.next().event());
+        assertEquals(ProductEvent.stock(1L, -2), sink.next().event());
+    }
+
+    @Test
+    void slowSubscriber_shouldLoseItsBufferAndGetResync() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink sink = new RecordingSink(release);
+        bus.subscribe(sink, null);
+
+        bus.publish(ProductEvent.deleted(1L));
+        assertEquals(ProductEvent.deleted(1L), sink.next().event());
+        for (long id = 2; id <= 10; id++) {
+            bus.publish(ProductEvent.deleted(id));
+        }
+        release.countDown();
+
+        Sent resync = sink.next();
+        assertEquals(ProductEvent.Type.RESYNC, resync.event().type());
+        assertTrue(resync.id().endsWith("-10"));
+        assertNull(sink.received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void subscribe_shouldResyncOnlyWhenEventsWereMissed() throws Exception {
+        RecordingSink first = new RecordingSink();
+        bus.subscribe(first, null);
+        bus.publish(ProductEvent.deleted(1L));
+        String lastSeen = first.next().id();
+
+        RecordingSink upToDate = new RecordingSink();
+        bus.subscribe(upToDate, lastSeen);
+        RecordingSink behind = new RecordingSink();
+        bus.subscribe(behind, "0-0");
+
+        assertEquals(ProductEvent.Type.RESYNC, behind.next().event().type());
+        assertNull(upToDate.received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void failingSink_shouldBeDroppedAndClosed() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        sink.fail = true;
+        bus.subscribe(sink, null);
+
+        bus.publish(ProductEvent.deleted(1L));
+
+        assertTrue(sink.closed.await(1, TimeUnit.SECONDS));
+        assertEquals(0, bus.subscriberCount());
+    }
+
+    @Test
+    void subscribe_shouldRejectBeyondTheLimit() {
+        bus.subscribe(new RecordingSink(), null);
+        ProductEventBus.Subscription second = bus.subscribe(new RecordingSink(), null);
+
+        assertThrows(RejectedExecutionException.class, () -> bus.subscribe(new RecordingSink(), null));
+        second.cancel();
+        assertDoesNotThrow(() -> bus.subscribe(new RecordingSink(), null));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void remoteInvalidations_shouldBeForwardedAsChanges() throws Exception {
+        CacheInvalidationBus invalidationBus = mock(CacheInvalidationBus.class);
+        bus.shutdown();
+        bus = new ProductEventBus(invalidationBus, new SimpleMeterRegistry(), 4, 2);
+        ArgumentCaptor<Consumer<Collection<Long>>> subscriber = ArgumentCaptor.forClass(Consumer.class);
+        verify(invalidationBus).subscribe(eq(ProductCache.NAME), subscriber.capture());
+        RecordingSink sink = new RecordingSink();
+        bus.subscribe(sink, null);
+
+        subscriber.getValue().accept(List.of(3L));
+        subscriber.getValue().accept(List.of());
+
+        assertEquals(ProductEvent.changed(3L), sink.next().event());
+        assertEquals(ProductEvent.Type.RESYNC, sink.next().event().type());
+    }
+
+    private record Sent(String id, ProductEvent event) {
+    }
+
+    private static class RecordingSink implements ProductEventBus.Sink {
+
+        private final BlockingQueue<Sent> received = new LinkedBlockingQueue<>();
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private final CountDownLatch release;
+        private volatile boolean fail;
+
+        RecordingSink() {
+            this(new CountDownLatch(0));
+        }
+
+        RecordingSink(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(String id, ProductEvent event) throws IOException {
+            if (fail) {
+                throw new IOException("Broken pipe");
+            }
+            received.add(new Sent(id, event));
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        Sent next() throws InterruptedException {
+            Sent sent = received.poll(1, TimeUnit.SECONDS);
+            assertNotNull(sent, "no event received");
+            return sent;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.demo.catalog;
+
+import com.example.demo.Product;
+import com.example.demo.ProductRepository;
+import com.example.demo.datasource.PrimaryReads;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductNameIndexTest {
+
+    @Mock
+    private ProductRepository repository;
+
+    private final PrimaryReads primaryReads = new PrimaryReads(new TransactionTemplate(), "", Duration.ZERO);
+
+    private ProductNameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductNameIndex(repository, primaryReads, true);
+        when(repository.streamNamesByOrderByIdAsc()).thenReturn(Stream.of(
+                new ProductName(1L, "Schraube M8"),
+                new ProductName(2L, "Mutter M8"),
+                new ProductName(3L, "Schraubenzieher")));
+        index.rebuild();
+    }
+
+    @Test
+    void search_shouldFindSubstringsIgnoringCase() {
+        assertArrayEquals(new long[]{1L, 3L}, index.search("SCHRAUB"));
+        assertArrayEquals(new long[]{1L, 2L}, index.search(" m8"));
+        assertArrayEquals(new long[0], index.search("bolt"));
+    }
+
+    @Test
+    void search_shouldRejectCandidatesWhoseGramsAreNotAdjacent() {
+        index.put(product(4L, "abcxbcd"));
+
+        assertArrayEquals(new long[0], index.search("abcd"));
+    }
+
+    @Test
+    void canServe_shouldRequireAFullTrigram() {
+        assertTrue(index.canServe("m8 "));
+        assertFalse(index.canServe("m8"));
+        assertFalse(index.canServe(null));
+    }
+
+    @Test
+    void canServe_shouldBeFalseBeforeRebuild() {
+        assertFalse(new ProductNameIndex(repository, primaryReads, true).canServe("schraube"));
+    }
+
+    @Test
+    void put_shouldReindexRenamedProduct() {
+        index.put(product(2L, "Unterlegscheibe"));
+
+        assertArrayEquals(new long[0], index.search("mutter"));
+        assertArrayEquals(new long[]{2L}, index.search("scheibe"));
+    }
+
+    @Test
+    void remove_shouldDropProductFromResults() {
+        index.remove(1L);
+
+        assertArrayEquals(new long[]{3L}, index.search("schraube"));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void put_shouldWaitForCommitAndIgnoreRollback() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.put(product(4L, "Dübel"));
+            assertArrayEquals(new long[0], index.search("dübel"));
+
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertArrayEquals(new long[0], index.search("dübel"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.put(product(4L, "Dübel"));
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertArrayEquals(new long[]{4L}, index.search("dübel"));
+    }
+
+    @Test
+    void rebuild_shouldKeepChangesAppliedWhileScanning() {
+        when(repository.streamNamesByOrderByIdAsc()).thenReturn(Stream.of(
+                new ProductName(1L, "Schraube M8"),
+                new ProductName(2L, "Mutter M8")).peek(row -> {
+            if (row.id() == 2L) {
+                assertArrayEquals(new long[]{3L}, index.search("zieher"));
+                index.put(product(5L, "Winkel"));
+                index.remove(1L);
+            }
+        }));
+
+        index.rebuild();
+
+        assertArrayEquals(new long[]{5L}, index.search("winkel"));
+        assertArrayEquals(new long[0], index.search("schraube"));
+        assertEquals(2, index.size());
+    }
+
+    private static Product product(Long id, String name) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(name);
+        return product;
+    }
+}
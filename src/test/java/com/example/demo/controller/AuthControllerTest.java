@@ -3,12 +3,17 @@ package com.example.demo.controller;
 import com.example.demo.dto.LoginRequest;
 import com.example.demo.dto.LoginResponse;
 import com.example.demo.dto.RefreshTokenRequest;
+import com.example.demo.dto.RevokeTokenRequest;
 import com.example.demo.security.JwtService;
+import com.example.demo.security.TokenRevocations;
 import com.example.demo.user.Role;
 import com.example.demo.user.User;
 import com.example.demo.user.UserService;
 import com.example.demo.user.dto.RegisterRequest;
 import com.example.demo.user.dto.UserResponse;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -25,6 +30,7 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -43,6 +49,9 @@ class AuthControllerTest {
     @Mock
     private JwtService jwtService;
 
+    @Mock
+    private TokenRevocations tokenRevocations;
+
     @InjectMocks
     private AuthController authController;
 
@@ -141,6 +150,7 @@ class AuthControllerTest {
         assertThrows(BadCredentialsException.class, () -> {
             authController.login(request);
         });
+        verify(userService).recordFailedLoginAttempt("testuser");
     }
 
     @Test
@@ -151,6 +161,7 @@ class AuthControllerTest {
         when(jwtService.extractUsername("valid_refresh_token")).thenReturn("testuser");
         when(userService.loadUserByUsername("testuser")).thenReturn(testUser);
         when(jwtService.isTokenValid("valid_refresh_token", testUser)).thenReturn(true);
+        when(jwtService.extractSecurityEpoch("valid_refresh_token")).thenReturn(0L);
         when(jwtService.generateToken(testUser)).thenReturn("new_access_token");
         when(jwtService.generateRefreshToken(testUser)).thenReturn("new_refresh_token");
         when(jwtService.getExpiration()).thenReturn(3600000L);
@@ -176,6 +187,86 @@ class AuthControllerTest {
         assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
     }
 
+    @Test
+    void refresh_shouldReturnUnauthorizedWhenTokenRevoked() {
+        RefreshTokenRequest request = new RefreshTokenRequest();
+        request.setRefreshToken("revoked_refresh_token");
+
+        when(jwtService.extractUsername("revoked_refresh_token")).thenReturn("testuser");
+        when(userService.loadUserByUsername("testuser")).thenReturn(testUser);
+        when(jwtService.isTokenValid("revoked_refresh_token", testUser)).thenReturn(true);
+        when(jwtService.extractTokenId("revoked_refresh_token")).thenReturn(9L);
+        when(tokenRevocations.isRevoked(9L)).thenReturn(true);
+
+        ResponseEntity<LoginResponse> response = authController.refresh(request);
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        verify(jwtService, never()).generateToken(any(User.class));
+    }
+
+    @Test
+    void refresh_shouldReturnUnauthorizedWhenUserWasLocked() {
+        testUser.setLocked(true);
+        RefreshTokenRequest request = new RefreshTokenRequest();
+        request.setRefreshToken("refresh_token");
+
+        when(jwtService.extractUsername("refresh_token")).thenReturn("testuser");
+        when(userService.loadUserByUsername("testuser")).thenReturn(testUser);
+        when(jwtService.isTokenValid("refresh_token", testUser)).thenReturn(true);
+        when(jwtService.extractSecurityEpoch("refresh_token")).thenReturn(0L);
+
+        ResponseEntity<LoginResponse> response = authController.refresh(request);
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        verify(jwtService, never()).generateToken(any(User.class));
+    }
+
+    @Test
+    void refresh_shouldReturnUnauthorizedWhenTokenPredatesSecurityChange() {
+        testUser.setSecurityEpoch(2);
+        RefreshTokenRequest request = new RefreshTokenRequest();
+        request.setRefreshToken("refresh_token");
+
+        when(jwtService.extractUsername("refresh_token")).thenReturn("testuser");
+        when(userService.loadUserByUsername("testuser")).thenReturn(testUser);
+        when(jwtService.isTokenValid("refresh_token", testUser)).thenReturn(true);
+        when(jwtService.extractSecurityEpoch("refresh_token")).thenReturn(1L);
+
+        ResponseEntity<LoginResponse> response = authController.refresh(request);
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        verify(jwtService, never()).generateToken(any(User.class));
+        verify(jwtService, never()).generateRefreshToken(any(User.class));
+    }
+
+    @Test
+    void logout_shouldRevokeAccessAndRefreshToken() {
+        Date expiresAt = new Date((System.currentTimeMillis() / 1000 + 60) * 1000);
+        Claims access = Jwts.claims().id("1").subject("testuser").expiration(expiresAt).build();
+        Claims refresh = Jwts.claims().id("2").subject("testuser").expiration(expiresAt).build();
+        when(jwtService.verify("access_token")).thenReturn(access);
+        when(jwtService.verify("refresh_token")).thenReturn(refresh);
+        when(jwtService.extractTokenId(access)).thenReturn(1L);
+        when(jwtService.extractTokenId(refresh)).thenReturn(2L);
+
+        ResponseEntity<Void> response = authController.logout("Bearer access_token",
+                RefreshTokenRequest.builder().refreshToken("refresh_token").build());
+
+        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+        verify(tokenRevocations).revoke(1L, expiresAt.toInstant());
+        verify(tokenRevocations).revoke(2L, expiresAt.toInstant());
+    }
+
+    @Test
+    void revoke_shouldIgnoreInvalidTokens() {
+        when(jwtService.verify("garbage")).thenThrow(new MalformedJwtException("not a JWT"));
+
+        ResponseEntity<Void> response = authController.revoke(new RevokeTokenRequest("garbage"));
+
+        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+        verifyNoInteractions(tokenRevocations);
+    }
+
     @Test
     void getCurrentUser_shouldReturnUserInfo() {
         Authentication authentication = mock(Authentication.class);
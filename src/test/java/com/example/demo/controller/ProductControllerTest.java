@@ -2,24 +2,50 @@ package com.example.demo.controller;
 
 import com.example.demo.Product;
 import com.example.demo.ProductService;
+import com.example.demo.catalog.ProductChangeFeed;
+import com.example.demo.catalog.ProductCursorCodec;
+import com.example.demo.catalog.ProductEventBus;
+import com.example.demo.catalog.ProductSummary;
+import com.example.demo.catalog.ProductVersion;
 import com.example.demo.controller.ProductController;
+import com.example.demo.document.InvoiceCache;
+import com.example.demo.dto.CursorPagedResponse;
 import com.example.demo.dto.PagedResponse;
+import com.example.demo.dto.SliceResponse;
+import com.example.demo.dto.StockAdjustmentRequest;
+import com.example.demo.imports.ProductBulkLoader;
+import com.example.demo.imports.ProductExportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -31,6 +57,24 @@ class ProductControllerTest {
     @Mock
     private ProductService service;
 
+    @Mock
+    private InvoiceCache invoiceCache;
+
+    @Mock
+    private ProductBulkLoader bulkLoader;
+
+    @Mock
+    private ProductChangeFeed changeFeed;
+
+    @Mock
+    private ProductEventBus eventBus;
+
+    @Mock
+    private ProductExportService exportService;
+
+    @Spy
+    private ProductCursorCodec cursorCodec = new ProductCursorCodec(new ObjectMapper());
+
     @InjectMocks
     private ProductController controller;
 
@@ -54,11 +98,11 @@ class ProductControllerTest {
 
     @Test
     void getAllProducts_shouldReturnPagedResponse() {
-        List<Product> products = Arrays.asList(testProduct1, testProduct2);
-        Page<Product> productPage = new PageImpl<>(products, PageRequest.of(0, 20), 2);
+        List<ProductSummary> products = Arrays.asList(summary(testProduct1), summary(testProduct2));
+        Page<ProductSummary> productPage = new PageImpl<>(products, PageRequest.of(0, 20), 2);
         when(service.getAllProducts(any(Pageable.class))).thenReturn(productPage);
 
-        ResponseEntity<PagedResponse<Product>> response = controller.getAllProducts(0, 20, "id", "asc");
+        ResponseEntity<PagedResponse<ProductSummary>> response = controller.getAllProducts(0, 20, "id", "asc", new HttpHeaders());
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
@@ -68,11 +112,69 @@ class ProductControllerTest {
         verify(service, times(1)).getAllProducts(any(Pageable.class));
     }
 
+    @Test
+    void getProductSlice_shouldReportHasNextAndApproximateTotal() {
+        SliceImpl<Product> slice = new SliceImpl<>(List.of(testProduct1), PageRequest.of(0, 1), true);
+        when(service.getProductSlice(any(Pageable.class))).thenReturn(slice);
+        when(service.estimateProductCount()).thenReturn(1000L);
+
+        ResponseEntity<SliceResponse<Product>> response = controller.getProductSlice(0, 1, "id", "asc", true, new HttpHeaders());
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().isHasNext());
+        assertEquals(1000L, response.getBody().getTotalElements());
+        assertTrue(response.getBody().getTotalApproximate());
+    }
+
+    @Test
+    void getProductSlice_withoutTotal_shouldNotEstimateCount() {
+        SliceImpl<Product> slice = new SliceImpl<>(List.of(testProduct1), PageRequest.of(0, 1), false);
+        when(service.getProductSlice(any(Pageable.class))).thenReturn(slice);
+
+        ResponseEntity<SliceResponse<Product>> response = controller.getProductSlice(0, 1, "id", "asc", false, new HttpHeaders());
+
+        assertFalse(response.getBody().isHasNext());
+        assertNull(response.getBody().getTotalElements());
+        verify(service, never()).estimateProductCount();
+    }
+
+    @Test
+    void searchSlice_shouldReturnSliceWithoutTotal() {
+        SliceImpl<Product> slice = new SliceImpl<>(List.of(testProduct1, testProduct2), PageRequest.of(0, 20), false);
+        when(service.searchByNameSlice(eq("Test"), any(Pageable.class))).thenReturn(slice);
+
+        ResponseEntity<SliceResponse<Product>> response = controller.searchSlice("Test", 0, 20, new HttpHeaders());
+
+        assertEquals(2, response.getBody().getContent().size());
+        assertNull(response.getBody().getTotalElements());
+    }
+
+    @Test
+    void getProductsAfter_shouldReturnNextCursorUntilLastPage() {
+        Window<Product> firstPage = Window.from(List.of(testProduct1),
+                index -> ScrollPosition.forward(java.util.Map.of("id", 1L)), true);
+        Window<Product> lastPage = Window.from(List.of(testProduct2),
+                index -> ScrollPosition.forward(java.util.Map.of("id", 2L)), false);
+        when(service.getProducts(any(ScrollPosition.class), any(Sort.class), eq(1)))
+                .thenReturn(firstPage, lastPage);
+
+        ResponseEntity<CursorPagedResponse<Product>> first = controller.getProductsAfter(null, 1, "id", "asc", new HttpHeaders());
+        String cursor = first.getBody().getNextCursor();
+        ResponseEntity<CursorPagedResponse<Product>> second = controller.getProductsAfter(cursor, 1, "id", "asc", new HttpHeaders());
+
+        assertTrue(first.getBody().isHasNext());
+        assertNotNull(cursor);
+        assertEquals("Test Product 2", second.getBody().getContent().get(0).getName());
+        assertFalse(second.getBody().isHasNext());
+        assertNull(second.getBody().getNextCursor());
+        verify(service).getProducts(eq(ScrollPosition.forward(java.util.Map.of("id", 1L))), any(Sort.class), eq(1));
+    }
+
     @Test
     void getById_shouldReturnProductWhenExists() {
         when(service.getProductById(1L)).thenReturn(Optional.of(testProduct1));
 
-        ResponseEntity<Product> response = controller.getById(1L);
+        ResponseEntity<Product> response = controller.getById(1L, new HttpHeaders());
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals("Test Product 1", response.getBody().getName());
@@ -83,19 +185,72 @@ class ProductControllerTest {
     void getById_shouldReturnNotFoundWhenNotExists() {
         when(service.getProductById(99L)).thenReturn(Optional.empty());
 
-        ResponseEntity<Product> response = controller.getById(99L);
+        ResponseEntity<Product> response = controller.getById(99L, new HttpHeaders());
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
         verify(service, times(1)).getProductById(99L);
     }
 
+    @Test
+    void getById_shouldAnswerMatchingIfNoneMatchWithoutLoadingTheProduct() {
+        when(service.getProductVersion(1L)).thenReturn(Optional.of(new ProductVersion(3L, LocalDateTime.now())));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch("\"3\"");
+
+        ResponseEntity<Product> response = controller.getById(1L, headers);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals("\"3\"", response.getHeaders().getETag());
+        assertNull(response.getBody());
+        verify(service, never()).getProductById(any());
+    }
+
+    @Test
+    void getById_shouldReturnProductWhenItChangedSinceIfModifiedSince() {
+        LocalDateTime updatedAt = LocalDateTime.now();
+        testProduct1.setVersion(4L);
+        testProduct1.setUpdatedAt(updatedAt);
+        when(service.getProductVersion(1L)).thenReturn(Optional.of(new ProductVersion(4L, updatedAt)));
+        when(service.getProductById(1L)).thenReturn(Optional.of(testProduct1));
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfModifiedSince(System.currentTimeMillis() - 60_000);
+
+        ResponseEntity<Product> response = controller.getById(1L, headers);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"4\"", response.getHeaders().getETag());
+        assertTrue(response.getHeaders().getLastModified() > 0);
+    }
+
+    @Test
+    void getAllProducts_shouldSendTheCatalogTagTakenBeforeTheRead() {
+        when(service.getCatalogTag()).thenReturn("W/\"abc-7\"");
+        when(service.getAllProducts(any(Pageable.class))).thenReturn(new PageImpl<>(List.of(), PageRequest.of(0, 20), 0));
+        when(service.getResponseCatalogTag("W/\"abc-7\"")).thenReturn("W/\"abc-7\"", (String) null);
+
+        assertEquals("W/\"abc-7\"", controller.getAllProducts(0, 20, "id", "asc", new HttpHeaders()).getHeaders().getETag());
+        assertNull(controller.getAllProducts(0, 20, "id", "asc", new HttpHeaders()).getHeaders().getETag());
+    }
+
+    @Test
+    void getAllProducts_shouldShortCircuitOnCurrentCatalogTag() {
+        when(service.getCatalogTag()).thenReturn("W/\"abc-7\"");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch("W/\"abc-7\"");
+
+        ResponseEntity<PagedResponse<ProductSummary>> response = controller.getAllProducts(0, 20, "id", "asc", headers);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        verify(service, never()).getAllProducts(any(Pageable.class));
+    }
+
     @Test
     void search_shouldReturnPagedMatchingProducts() {
-        List<Product> products = Arrays.asList(testProduct1, testProduct2);
-        Page<Product> productPage = new PageImpl<>(products, PageRequest.of(0, 20), 2);
+        List<ProductSummary> products = Arrays.asList(summary(testProduct1), summary(testProduct2));
+        Page<ProductSummary> productPage = new PageImpl<>(products, PageRequest.of(0, 20), 2);
         when(service.searchByName(eq("Test"), any(Pageable.class))).thenReturn(productPage);
 
-        ResponseEntity<PagedResponse<Product>> response = controller.search("Test", 0, 20);
+        ResponseEntity<PagedResponse<ProductSummary>> response = controller.search("Test", 0, 20, new HttpHeaders());
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
@@ -121,13 +276,52 @@ class ProductControllerTest {
         updatedProduct.setQuantity(20);
         updatedProduct.setPrice(29.99);
 
-        when(service.updateProduct(1L, updatedProduct)).thenReturn(Optional.of(testProduct1));
+        when(service.updateProduct(1L, updatedProduct, null)).thenReturn(Optional.of(testProduct1));
 
-        ResponseEntity<Product> response = controller.update(1L, updatedProduct);
+        ResponseEntity<Product> response = controller.update(1L, null, updatedProduct);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals("Test Product 1", response.getBody().getName());
-        verify(service, times(1)).updateProduct(1L, updatedProduct);
+        verify(service, times(1)).updateProduct(1L, updatedProduct, null);
+    }
+
+    @Test
+    void update_shouldPassIfMatchVersionAndReturnNewETag() {
+        Product updatedProduct = new Product();
+        updatedProduct.setName("Updated Product");
+        testProduct1.setVersion(4L);
+        when(service.updateProduct(1L, updatedProduct, 3L)).thenReturn(Optional.of(testProduct1));
+
+        ResponseEntity<Product> response = controller.update(1L, "\"3\"", updatedProduct);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"4\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void update_shouldRejectMalformedIfMatch() {
+        Product updatedProduct = new Product();
+
+        assertThrows(IllegalArgumentException.class, () -> controller.update(1L, "W/\"3\"", updatedProduct));
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    void adjustStock_shouldReturnNoContentWhenApplied() {
+        when(service.adjustStock(1L, -3, null)).thenReturn(true);
+
+        ResponseEntity<Void> response = controller.adjustStock(1L, new StockAdjustmentRequest(-3, null));
+
+        assertEquals(HttpStatus.NO_CONTENT, response.getStatusCode());
+    }
+
+    @Test
+    void adjustStock_shouldReturnNotFoundWhenProductMissing() {
+        when(service.adjustStock(99L, 5, null)).thenReturn(false);
+
+        ResponseEntity<Void> response = controller.adjustStock(99L, new StockAdjustmentRequest(5, null));
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
     }
 
     @Test
@@ -135,12 +329,12 @@ class ProductControllerTest {
         Product updatedProduct = new Product();
         updatedProduct.setName("Updated Product");
 
-        when(service.updateProduct(99L, updatedProduct)).thenReturn(Optional.empty());
+        when(service.updateProduct(99L, updatedProduct, null)).thenReturn(Optional.empty());
 
-        ResponseEntity<Product> response = controller.update(99L, updatedProduct);
+        ResponseEntity<Product> response = controller.update(99L, null, updatedProduct);
 
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
-        verify(service, times(1)).updateProduct(99L, updatedProduct);
+        verify(service, times(1)).updateProduct(99L, updatedProduct, null);
     }
 
     @Test
@@ -164,28 +358,117 @@ class ProductControllerTest {
     }
 
     @Test
-    void downloadInvoice_shouldReturnPdf() {
+    void downloadInvoice_shouldStreamPdfWhenNotCached() throws Exception {
         byte[] pdfContent = "PDF content".getBytes();
-        when(service.generateInvoicePdf()).thenReturn(pdfContent);
+        when(invoiceCache.getCurrent()).thenReturn(Optional.empty());
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write(pdfContent);
+            return null;
+        }).when(invoiceCache).render(any(OutputStream.class));
 
-        ResponseEntity<byte[]> response = controller.downloadInvoice();
+        ResponseEntity<StreamingResponseBody> response = controller.downloadInvoice(null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getHeaders().getContentType());
         assertNotNull(response.getHeaders().getContentDisposition());
-        assertArrayEquals(pdfContent, response.getBody());
-        verify(service, times(1)).generateInvoicePdf();
+        verify(invoiceCache, never()).render(any(OutputStream.class));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        assertArrayEquals(pdfContent, out.toByteArray());
+        verify(invoiceCache, times(1)).render(any(OutputStream.class));
+    }
+
+    @Test
+    void downloadInvoice_shouldServeCachedPdfWithETag() throws Exception {
+        byte[] pdfContent = "PDF content".getBytes();
+        LocalDateTime issuedAt = LocalDateTime.of(2024, 3, 1, 9, 30);
+        when(invoiceCache.getCurrent()).thenReturn(
+                Optional.of(new InvoiceCache.CachedInvoice(3L, pdfContent, "\"abc\"", issuedAt)));
+
+        ResponseEntity<StreamingResponseBody> response = controller.downloadInvoice(null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"abc\"", response.getHeaders().getETag());
+        assertEquals(issuedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                response.getHeaders().getLastModified());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        assertArrayEquals(pdfContent, out.toByteArray());
+        verify(invoiceCache, never()).render(any(OutputStream.class));
+    }
+
+    @Test
+    void downloadInvoice_shouldReturnNotModifiedWhenETagMatches() throws Exception {
+        when(invoiceCache.getCurrent()).thenReturn(
+                Optional.of(new InvoiceCache.CachedInvoice(3L, new byte[]{1}, "\"abc\"", LocalDateTime.now())));
+
+        ResponseEntity<StreamingResponseBody> response = controller.downloadInvoice("\"xyz\", \"abc\"");
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+        verify(invoiceCache, never()).render(any(OutputStream.class));
+    }
+
+    @Test
+    void exportProducts_shouldStreamCsvFromBulkLoader() throws Exception {
+        ResponseEntity<StreamingResponseBody> response = controller.exportProducts("csv", null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("text/csv", response.getHeaders().getContentType().toString());
+        verify(bulkLoader, never()).export(any(OutputStream.class));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        verify(bulkLoader, times(1)).export(out);
+    }
+
+    @Test
+    void exportProducts_shouldGzipNdjsonWhenAccepted() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("{\"id\":1}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(exportService).exportNdjson(any(OutputStream.class));
+
+        ResponseEntity<StreamingResponseBody> response = controller.exportProducts("NDJSON", "gzip, deflate");
+
+        assertEquals("application/x-ndjson", response.getHeaders().getContentType().toString());
+        assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals("{\"id\":1}\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        verify(bulkLoader, never()).export(any(OutputStream.class));
+    }
+
+    @Test
+    void exportProducts_shouldRejectUnknownFormats() {
+        assertThrows(IllegalArgumentException.class, () -> controller.exportProducts("xml", null));
+    }
+
+    @Test
+    void acceptsGzip_shouldHonourZeroQuality() {
+        assertTrue(ProductController.acceptsGzip("br, gzip;q=0.8"));
+        assertFalse(ProductController.acceptsGzip("gzip;q=0"));
+        assertFalse(ProductController.acceptsGzip("deflate"));
+        assertFalse(ProductController.acceptsGzip(null));
     }
 
     @Test
     void getAllProducts_withDescendingSort_shouldReturnSortedResults() {
-        List<Product> products = Arrays.asList(testProduct2, testProduct1);
-        Page<Product> productPage = new PageImpl<>(products, PageRequest.of(0, 20), 2);
+        List<ProductSummary> products = Arrays.asList(summary(testProduct2), summary(testProduct1));
+        Page<ProductSummary> productPage = new PageImpl<>(products, PageRequest.of(0, 20), 2);
         when(service.getAllProducts(any(Pageable.class))).thenReturn(productPage);
 
-        ResponseEntity<PagedResponse<Product>> response = controller.getAllProducts(0, 20, "name", "desc");
+        ResponseEntity<PagedResponse<ProductSummary>> response = controller.getAllProducts(0, 20, "name", "desc", new HttpHeaders());
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         verify(service, times(1)).getAllProducts(any(Pageable.class));
     }
+
+    private static ProductSummary summary(Product product) {
+        return new ProductSummary(product.getId(), product.getName(), product.getQuantity(), product.getPrice(),
+                product.getVersion(), product.getCreatedAt(), product.getUpdatedAt());
+    }
 }
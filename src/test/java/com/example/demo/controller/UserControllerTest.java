@@ -1,6 +1,7 @@
 package com.example.demo.controller;
 
 import com.example.demo.dto.PagedResponse;
+import com.example.demo.security.TokenPrincipal;
 import com.example.demo.user.Role;
 import com.example.demo.user.User;
 import com.example.demo.user.UserService;
@@ -15,9 +16,19 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-
+import org.springframework.security.access.expression.ExpressionUtils;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -199,6 +210,22 @@ class UserControllerTest {
         verify(userService, times(1)).updatePassword(eq(1L), any(UpdatePasswordRequest.class));
     }
 
+    @Test
+    void updatePassword_shouldLetUsersChangeOnlyTheirOwnPassword() throws Exception {
+        Authentication stateless = new UsernamePasswordAuthenticationToken(new TokenPrincipal(1L, "testuser"), null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        Authentication stateful = new UsernamePasswordAuthenticationToken(testUser, null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+        Authentication admin = new UsernamePasswordAuthenticationToken(new TokenPrincipal(2L, "admin"), null,
+                List.of(new SimpleGrantedAuthority("ROLE_ADMIN")));
+
+        assertTrue(mayUpdatePassword(stateless, 1L));
+        assertFalse(mayUpdatePassword(stateless, 2L));
+        assertTrue(mayUpdatePassword(stateful, 1L));
+        assertFalse(mayUpdatePassword(stateful, 2L));
+        assertTrue(mayUpdatePassword(admin, 1L));
+    }
+
     @Test
     void getAllUsers_withDescendingSort_shouldWork() {
         List<User> users = Arrays.asList(testUser);
@@ -228,4 +255,14 @@ class UserControllerTest {
         assertNotNull(response.getBody());
         assertTrue(response.getBody().getRoles().contains("ROLE_ADMIN"));
     }
+
+    private boolean mayUpdatePassword(Authentication authentication, Long id) throws NoSuchMethodException {
+        Method method = UserController.class.getMethod("updatePassword", Long.class, UpdatePasswordRequest.class);
+        DefaultMethodSecurityExpressionHandler handler = new DefaultMethodSecurityExpressionHandler();
+        EvaluationContext context = handler.createEvaluationContext(authentication,
+                new SimpleMethodInvocation(userController, method, id, new UpdatePasswordRequest()));
+        Expression expression = handler.getExpressionParser()
+                .parseExpression(method.getAnnotation(PreAuthorize.class).value());
+        return ExpressionUtils.evaluateAsBoolean(expression, context);
+    }
 }
@@ -0,0 +1,108 @@
+package com.example.demo.datasource;
+
+import com.example.demo.Product;
+import com.example.demo.cache.LocalCacheInvalidationBus;
+import com.example.demo.catalog.ProductCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The replica is an H2 database that has not received the latest rename yet; reads that
+ * fill caches must see the primary's row anyway.
+ */
+class PrimaryReadsTest {
+
+    private final String run = UUID.randomUUID().toString();
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnly;
+    private PrimaryReads primaryReads;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = h2("primary");
+        DataSource replica = h2("replica");
+        for (DataSource dataSource : List.of(primary, replica)) {
+            JdbcTemplate template = new JdbcTemplate(dataSource);
+            template.execute("CREATE TABLE product (id BIGINT PRIMARY KEY, name VARCHAR(100))");
+            template.update("INSERT INTO product VALUES (1, 'Schraube')");
+        }
+        new JdbcTemplate(replica).execute("CREATE TABLE replication_lag (millis BIGINT)");
+        new JdbcTemplate(replica).update("INSERT INTO replication_lag VALUES (0)");
+        new JdbcTemplate(primary).update("UPDATE product SET name = 'Schraube M8' WHERE id = 1");
+
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, List.of(replica),
+                new SimpleMeterRegistry(), "SELECT millis FROM replication_lag", Duration.ofSeconds(1),
+                Duration.ofSeconds(10));
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        primaryReads = new PrimaryReads(transactionTemplate, "jdbc:h2:mem:replica", Duration.ofSeconds(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void read_shouldGoToThePrimaryInsideAReadOnlyTransaction() {
+        String names = readOnly.execute(status -> name() + "/" + primaryReads.read(this::name));
+
+        assertEquals("Schraube/Schraube M8", names);
+    }
+
+    @Test
+    void productCache_shouldNotBeFilledFromALaggingReplica() {
+        ProductCache cache = new ProductCache(new SimpleMeterRegistry(), new LocalCacheInvalidationBus(),
+                primaryReads, 100, Duration.ofMinutes(10));
+
+        Optional<Product> loaded = readOnly.execute(status -> cache.get(1L, id -> {
+            Product product = new Product();
+            product.setId(id);
+            product.setName(name());
+            return Optional.of(product);
+        }));
+
+        assertEquals("Schraube M8", loaded.orElseThrow().getName());
+        assertEquals("Schraube M8", cache.peek(1L).orElseThrow().getName());
+    }
+
+    @Test
+    void read_shouldNotCountAsAWrite() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("alice", null, List.of()));
+
+        primaryReads.read(this::name);
+
+        assertEquals("Schraube", readOnly.execute(status -> name()));
+    }
+
+    private String name() {
+        return jdbcTemplate.queryForObject("SELECT name FROM product WHERE id = 1", String.class);
+    }
+
+    private DataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "-" + run + ";DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+}
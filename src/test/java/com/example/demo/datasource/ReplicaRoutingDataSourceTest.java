@@ -0,0 +1,147 @@
+package com.example.demo.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Two in-memory H2 databases stand in for the primary and a replica; the replica reports
+ * its lag from a table the tests can change.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private final String run = UUID.randomUUID().toString();
+    private DataSource primary;
+    private DataSource replica;
+    private ReplicaRoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        primary = h2("primary");
+        replica = h2("replica");
+        execute(replica, "CREATE TABLE replication_lag (millis BIGINT)");
+        execute(replica, "INSERT INTO replication_lag VALUES (0)");
+        routing = routing(List.of(replica));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clear();
+        }
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void readOnlyTransactions_shouldGoToTheReplica() throws SQLException {
+        assertEquals("primary", databaseOf(routing));
+
+        beginTransaction(true);
+
+        assertEquals("replica", databaseOf(routing));
+    }
+
+    @Test
+    void replicaReads_shouldBeRecordedOnTheRequest() throws SQLException {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        databaseOf(routing);
+        assertFalse(ReplicaRoutingDataSource.readFromReplica());
+
+        beginTransaction(true);
+        databaseOf(routing);
+
+        assertTrue(ReplicaRoutingDataSource.readFromReplica());
+    }
+
+    @Test
+    void laggingReplica_shouldFallBackToThePrimaryUntilCaughtUp() throws SQLException {
+        execute(replica, "UPDATE replication_lag SET millis = 5000");
+        routing.checkReplicas();
+        beginTransaction(true);
+
+        assertEquals("primary", databaseOf(routing));
+
+        execute(replica, "UPDATE replication_lag SET millis = 100");
+        routing.checkReplicas();
+
+        assertEquals("replica", databaseOf(routing));
+    }
+
+    @Test
+    void unreachableReplica_shouldFallBackToThePrimary() throws SQLException {
+        DataSource broken = mock(DataSource.class);
+        when(broken.getConnection()).thenThrow(new SQLException("Connection refused"));
+        routing = routing(List.of(broken));
+        beginTransaction(true);
+
+        assertEquals("primary", databaseOf(routing));
+    }
+
+    @Test
+    void usersShouldReadTheirOwnWritesFromThePrimary() throws SQLException {
+        authenticate("alice");
+        beginTransaction(false);
+        assertEquals("primary", databaseOf(routing));
+        TransactionSynchronizationManager.clear();
+
+        beginTransaction(true);
+        assertEquals("primary", databaseOf(routing));
+
+        authenticate("bob");
+        assertEquals("replica", databaseOf(routing));
+    }
+
+    private ReplicaRoutingDataSource routing(List<DataSource> replicas) {
+        return new ReplicaRoutingDataSource(primary, replicas, new SimpleMeterRegistry(),
+                "SELECT millis FROM replication_lag", Duration.ofSeconds(1), Duration.ofSeconds(10));
+    }
+
+    private DataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "-" + run + ";DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+
+    private String databaseOf(DataSource dataSource) throws SQLException {
+        try (Connection con = dataSource.getConnection()) {
+            return con.getMetaData().getURL().contains("replica") ? "replica" : "primary";
+        }
+    }
+
+    private static void beginTransaction(boolean readOnly) {
+        TransactionSynchronizationManager.initSynchronization();
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(readOnly);
+    }
+
+    private static void authenticate(String username) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+
+    private static void execute(DataSource dataSource, String sql) throws SQLException {
+        try (Connection con = dataSource.getConnection(); Statement statement = con.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.demo.document;
+
+import com.example.demo.ProductService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentJobServiceTest {
+
+    @Mock
+    private ProductService productService;
+
+    @TempDir
+    Path storageDir;
+
+    private MeterRegistry meterRegistry;
+    private DocumentJobService service;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void submitInvoice_shouldRenderToDiskAndRecordMetrics() throws Exception {
+        service = new DocumentJobService(productService, meterRegistry, 1, 10, storageDir, Duration.ofHours(1));
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("%PDF".getBytes());
+            return null;
+        }).when(productService).writeInvoicePdf(any(OutputStream.class));
+
+        DocumentJob job = service.submitInvoice();
+        awaitFinished(job);
+
+        assertEquals(DocumentJob.Status.COMPLETED, job.getStatus());
+        Path file = service.getResult(job.getId()).orElseThrow();
+        assertEquals("%PDF", Files.readString(file));
+        assertEquals(4, job.getSizeBytes());
+        assertNotNull(service.getExpiresAt(job));
+        assertEquals(1, meterRegistry.get("documents.render.time").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void submitInvoice_shouldMarkJobFailedWhenRenderingFails() throws Exception {
+        service = new DocumentJobService(productService, meterRegistry, 1, 10, storageDir, Duration.ofHours(1));
+        doThrow(new RuntimeException("Database error")).when(productService).writeInvoicePdf(any(OutputStream.class));
+
+        DocumentJob job = service.submitInvoice();
+        awaitFinished(job);
+
+        assertEquals(DocumentJob.Status.FAILED, job.getStatus());
+        assertEquals("Database error", job.getError());
+        assertTrue(service.getResult(job.getId()).isEmpty());
+        assertFalse(Files.exists(storageDir.resolve(DocumentJobService.FILE_PREFIX + job.getId() + ".pdf.part")));
+    }
+
+    @Test
+    void getJob_shouldAnswerForJobsOfOtherNodesSharingTheStorage() throws Exception {
+        service = new DocumentJobService(productService, meterRegistry, 1, 10, storageDir, Duration.ofHours(1));
+        DocumentJobService otherNode = new DocumentJobService(productService, new SimpleMeterRegistry(), 1, 10,
+                storageDir, Duration.ofHours(1));
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("%PDF".getBytes());
+            return null;
+        }).doThrow(new RuntimeException("Database error")).when(productService).writeInvoicePdf(any(OutputStream.class));
+        try {
+            DocumentJob completed = service.submitInvoice();
+            awaitFinished(completed);
+            DocumentJob failed = service.submitInvoice();
+            awaitFinished(failed);
+
+            DocumentJob seen = otherNode.getJob(completed.getId()).orElseThrow();
+            assertEquals(DocumentJob.Status.COMPLETED, seen.getStatus());
+            assertEquals(DocumentJobService.TYPE_INVOICE, seen.getType());
+            assertEquals(4, seen.getSizeBytes());
+            assertNotNull(otherNode.getExpiresAt(seen));
+            assertEquals("%PDF", Files.readString(otherNode.getResult(completed.getId()).orElseThrow()));
+            DocumentJob seenFailed = otherNode.getJob(failed.getId()).orElseThrow();
+            assertEquals(DocumentJob.Status.FAILED, seenFailed.getStatus());
+            assertEquals("Database error", seenFailed.getError());
+            assertTrue(otherNode.getJob(UUID.randomUUID().toString()).isEmpty());
+            assertTrue(otherNode.getJob("../" + completed.getId()).isEmpty());
+        } finally {
+            otherNode.shutdown();
+        }
+    }
+
+    @Test
+    void submitInvoice_shouldRejectWhenQueueIsFull() throws Exception {
+        service = new DocumentJobService(productService, meterRegistry, 1, 1, storageDir, Duration.ofHours(1));
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(productService).writeInvoicePdf(any(OutputStream.class));
+
+        DocumentJob running = service.submitInvoice();
+        while (running.getStatus() == DocumentJob.Status.QUEUED) {
+            Thread.sleep(5);
+        }
+        service.submitInvoice();
+
+        assertThrows(RejectedExecutionException.class, () -> service.submitInvoice());
+        assertEquals(1.0, meterRegistry.get("documents.jobs.queue.depth").gauge().value());
+        release.countDown();
+    }
+
+    @Test
+    void purgeExpired_shouldDropFinishedJobsAndTheirFiles() throws Exception {
+        service = new DocumentJobService(productService, meterRegistry, 1, 10, storageDir, Duration.ZERO);
+
+        DocumentJob job = service.submitInvoice();
+        awaitFinished(job);
+        Path file = job.getFile();
+        assertTrue(Files.exists(file));
+
+        service.purgeExpired();
+
+        assertTrue(service.getJob(job.getId()).isEmpty());
+        assertFalse(Files.exists(file));
+        try (var files = Files.list(storageDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void constructor_shouldDeleteOnlyOwnStaleLeftovers() throws Exception {
+        FileTime stale = FileTime.from(Instant.now().minus(Duration.ofHours(2)));
+        Path orphan = Files.writeString(storageDir.resolve(DocumentJobService.FILE_PREFIX + "old.pdf.part"), "x");
+        Files.setLastModifiedTime(orphan, stale);
+        Path foreign = Files.writeString(storageDir.resolve("report.pdf"), "x");
+        Files.setLastModifiedTime(foreign, stale);
+        Path inFlight = Files.writeString(storageDir.resolve(DocumentJobService.FILE_PREFIX + "other-node.pdf.part"), "x");
+
+        service = new DocumentJobService(productService, meterRegistry, 1, 10, storageDir, Duration.ofHours(1));
+
+        assertFalse(Files.exists(orphan));
+        assertTrue(Files.exists(foreign));
+        assertTrue(Files.exists(inFlight));
+    }
+
+    private void awaitFinished(DocumentJob job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!job.isFinished() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(job.isFinished(), "job did not finish in time");
+    }
+}
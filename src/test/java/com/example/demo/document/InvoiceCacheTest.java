@@ -0,0 +1,127 @@
+package com.example.demo.document;
+
+import com.example.demo.ProductService;
+import com.example.demo.cache.LocalCacheInvalidationBus;
+import com.example.demo.catalog.CatalogVersion;
+import com.example.demo.datasource.PrimaryReads;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class InvoiceCacheTest {
+
+    @Mock
+    private ProductService productService;
+
+    private final PrimaryReads primaryReads = new PrimaryReads(new TransactionTemplate(), "", Duration.ZERO);
+
+    private CatalogVersion catalogVersion;
+
+    @BeforeEach
+    void setUp() {
+        catalogVersion = new CatalogVersion(new LocalCacheInvalidationBus(), new JdbcTemplate(), new TransactionTemplate(),
+                primaryReads, false);
+    }
+
+    @Test
+    void render_shouldStreamAndCacheUnderCurrentVersion() throws Exception {
+        InvoiceCache cache = new InvoiceCache(productService, catalogVersion, primaryReads, 1024);
+        renders("%PDF-1");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.render(out);
+
+        assertEquals("%PDF-1", out.toString());
+        InvoiceCache.CachedInvoice cached = cache.getCurrent().orElseThrow();
+        assertArrayEquals("%PDF-1".getBytes(), cached.content());
+        assertEquals(InvoiceCache.etagOf("%PDF-1".getBytes()), cached.etag());
+        verify(productService).writeInvoicePdf(any(OutputStream.class), eq(cached.issuedAt()));
+    }
+
+    @Test
+    void getCurrent_shouldMissAfterCatalogChange() throws Exception {
+        InvoiceCache cache = new InvoiceCache(productService, catalogVersion, primaryReads, 1024);
+        renders("%PDF-1");
+        cache.render(new ByteArrayOutputStream());
+
+        catalogVersion.bump();
+
+        assertTrue(cache.getCurrent().isEmpty());
+    }
+
+    @Test
+    void render_shouldNotCacheWhenCatalogChangesWhileRendering() throws Exception {
+        InvoiceCache cache = new InvoiceCache(productService, catalogVersion, primaryReads, 1024);
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("%PDF-1".getBytes());
+            catalogVersion.bump();
+            return null;
+        }).when(productService).writeInvoicePdf(any(OutputStream.class), any(LocalDateTime.class));
+
+        cache.render(new ByteArrayOutputStream());
+
+        assertTrue(cache.getCurrent().isEmpty());
+    }
+
+    @Test
+    void render_shouldStillStreamDocumentsLargerThanTheCache() throws Exception {
+        InvoiceCache cache = new InvoiceCache(productService, catalogVersion, primaryReads, 4);
+        renders("%PDF-too-large");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.render(out);
+
+        assertEquals("%PDF-too-large", out.toString());
+        assertTrue(cache.getCurrent().isEmpty());
+    }
+
+    @Test
+    void render_shouldNotCacheFailedRender() {
+        InvoiceCache cache = new InvoiceCache(productService, catalogVersion, primaryReads, 1024);
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write("%PDF-1".getBytes());
+            throw new UncheckedIOException(new IOException("Client went away"));
+        }).when(productService).writeInvoicePdf(any(OutputStream.class), any(LocalDateTime.class));
+
+        assertThrows(UncheckedIOException.class, () -> cache.render(new ByteArrayOutputStream()));
+
+        assertTrue(cache.getCurrent().isEmpty());
+    }
+
+    @Test
+    void put_shouldEvictOldestVersionsWhenOverBudget() {
+        InvoiceCache cache = new InvoiceCache(productService, catalogVersion, primaryReads, 10);
+
+        cache.put(new InvoiceCache.CachedInvoice(0L, new byte[6], "\"a\"", LocalDateTime.now()));
+        catalogVersion.bump();
+        cache.put(new InvoiceCache.CachedInvoice(1L, new byte[6], "\"b\"", LocalDateTime.now()));
+
+        assertEquals("\"b\"", cache.getCurrent().orElseThrow().etag());
+        assertTrue(cache.get(0L).isEmpty());
+    }
+
+    private void renders(String content) {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(0).write(content.getBytes());
+            return null;
+        }).when(productService).writeInvoicePdf(any(OutputStream.class), any(LocalDateTime.class));
+    }
+}
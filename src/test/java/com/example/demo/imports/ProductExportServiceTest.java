@@ -0,0 +1,96 @@
+package com.example.demo.imports;
+
+import com.example.demo.ProductRepository;
+import com.example.demo.catalog.ProductRow;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductExportServiceTest {
+
+    @Mock
+    private ProductRepository repository;
+
+    @Test
+    void exportNdjson_shouldWriteOneObjectPerLineAndCloseTheCursor() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(repository.streamRowsByOrderByIdAsc()).thenReturn(Stream.of(
+                new ProductRow(1L, "Schraube \"M8\"", 100, 0.25),
+                new ProductRow(2L, "Mutter", 0, 0.1)
+        ).onClose(() -> closed.set(true)));
+        ProductExportService service = new ProductExportService(repository, new ObjectMapper());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.exportNdjson(out);
+
+        assertEquals("""
+                {"id":1,"name":"Schraube \\"M8\\"","quantity":100,"price":0.25}
+                {"id":2,"name":"Mutter","quantity":0,"price":0.1}
+                """, out.toString(StandardCharsets.UTF_8));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void exportNdjson_shouldBeReadableByTheImporter() throws Exception {
+        when(repository.streamRowsByOrderByIdAsc()).thenReturn(Stream.of(new ProductRow(7L, "Dübel", 3, 1.5)));
+        ObjectMapper objectMapper = new ObjectMapper();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ProductExportService(repository, objectMapper).exportNdjson(out);
+
+        try (ProductImportReader reader = new ProductImportReader(
+                new ByteArrayInputStream(out.toByteArray()), ImportFormat.NDJSON, objectMapper)) {
+            ImportRow row = reader.next();
+            assertTrue(row.isValid());
+            assertEquals(7L, row.product().getId());
+            assertEquals("Dübel", row.product().getName());
+            assertEquals(3, row.product().getQuantity());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void csvExport_shouldBeReadableByTheImporterWhenNamesSpanLines() throws Exception {
+        String csv = JdbcBatchProductBulkLoader.EXPORT_HEADER + "\n"
+                + "1," + JdbcBatchProductBulkLoader.quote("Schraube\n\"M8\", verzinkt") + ",100,0.25\n"
+                + "2," + JdbcBatchProductBulkLoader.quote("Mutter") + ",0,0.1\n";
+
+        try (ProductImportReader reader = new ProductImportReader(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV, new ObjectMapper())) {
+            ImportRow first = reader.next();
+            assertTrue(first.isValid());
+            assertEquals(2, first.line());
+            assertEquals("Schraube\n\"M8\", verzinkt", first.product().getName());
+            assertEquals(100, first.product().getQuantity());
+
+            ImportRow second = reader.next();
+            assertEquals(4, second.line());
+            assertEquals("Mutter", second.product().getName());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void csvImport_shouldFailRecordWhoseQuoteNeverCloses() throws Exception {
+        String csv = "name,quantity,price\n\"Schraube,1,0.5\nMutter,2,0.1\n";
+
+        try (ProductImportReader reader = new ProductImportReader(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), ImportFormat.CSV, new ObjectMapper())) {
+            ImportRow row = reader.next();
+            assertFalse(row.isValid());
+            assertEquals(2, row.line());
+            assertNull(reader.next());
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.demo.imports;
+
+import com.example.demo.Product;
+import com.example.demo.catalog.CatalogVersion;
+import com.example.demo.catalog.ProductCache;
+import com.example.demo.catalog.ProductEventBus;
+import com.example.demo.catalog.ProductCountEstimator;
+import com.example.demo.catalog.ProductNameIndex;
+import com.example.demo.dto.ProductImportResponse;
+import com.example.demo.inventory.InsufficientStockException;
+import com.example.demo.inventory.InventoryLedger;
+import com.example.demo.inventory.MovementReason;
+import com.example.demo.inventory.StockReservationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProductImportServiceTest {
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private CatalogVersion catalogVersion;
+
+    @Mock
+    private ProductCountEstimator countEstimator;
+
+    @Mock
+    private ProductNameIndex nameIndex;
+
+    @Mock
+    private StockReservationService reservations;
+
+    @Mock
+    private InventoryLedger ledger;
+
+    @Mock
+    private ProductCache productCache;
+
+    @Mock
+    private ProductEventBus eventBus;
+
+    private ProductImportService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ProductImportService(entityManager, transactionTemplate,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper(),
+                catalogVersion, countEstimator, nameIndex, reservations, ledger, productCache, eventBus, 2, 10);
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            TransactionCallback<?> action = invocation.getArgument(0);
+            return action.doInTransaction(null);
+        });
+    }
+
+    @Test
+    void importCsv_shouldPersistValidRowsInChunksAndReportErrors() throws Exception {
+        String csv = """
+                price,name,quantity
+                1.50,"Schraube, M8",100
+                2.00,Mutter,abc
+                0.00,Scheibe,5
+                3.25,"Dübel ""XL\""",7
+                """;
+
+        ProductImportResponse response = service.importProducts(body(csv), ImportFormat.CSV);
+
+        assertEquals(4, response.getReceived());
+        assertEquals(2, response.getImported());
+        assertEquals(2, response.getFailed());
+        assertEquals(3, response.getErrors().get(0).line());
+        assertTrue(response.getErrors().get(1).message().startsWith("price:"));
+
+        ArgumentCaptor<Product> persisted = ArgumentCaptor.forClass(Product.class);
+        verify(entityManager, times(2)).persist(persisted.capture());
+        assertEquals("Schraube, M8", persisted.getAllValues().get(0).getName());
+        assertEquals("Dübel \"XL\"", persisted.getAllValues().get(1).getName());
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(catalogVersion, times(1)).bump();
+        verify(countEstimator, times(1)).recordCreated(2);
+    }
+
+    @Test
+    void importNdjson_shouldRejectMalformedLines() throws Exception {
+        String ndjson = """
+                {"name":"Schraube","quantity":10,"price":1.5}
+                {"name":"Mutter","quantity":1.5,"price":2}
+                not json
+                """;
+
+        ProductImportResponse response = service.importProducts(body(ndjson), ImportFormat.NDJSON);
+
+        assertEquals(1, response.getImported());
+        assertEquals(2, response.getFailed());
+        assertEquals("quantity must be an integer", response.getErrors().get(0).message());
+    }
+
+    @Test
+    void importCsv_shouldCountFailedChunkRows() throws Exception {
+        doThrow(new IllegalStateException("duplicate key"))
+                .when(transactionTemplate).execute(any());
+
+        ProductImportResponse response = service.importProducts(
+                body("name,quantity,price\nSchraube,1,1.0\n"), ImportFormat.CSV);
+
+        assertEquals(0, response.getImported());
+        assertEquals(1, response.getFailed());
+        verify(catalogVersion, never()).bump();
+        verifyNoInteractions(nameIndex);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importCsv_shouldUpdateProductsByIdAndInsertUnknownIds() throws Exception {
+        Product existing = new Product();
+        existing.setId(7L);
+        existing.setName("Schraube");
+        existing.setQuantity(1);
+        existing.setPrice(1.0);
+        existing.setCreatedAt(LocalDateTime.now());
+        TypedQuery<Product> query = mock(TypedQuery.class);
+        when(entityManager.createQuery(anyString(), eq(Product.class))).thenReturn(query);
+        when(query.setParameter(eq("ids"), any())).thenReturn(query);
+        when(query.getResultStream()).thenReturn(Stream.of(existing));
+
+        ProductImportResponse response = service.importProducts(
+                body("id,name,quantity,price\n7,Schraube M8,40,1.25\n99,Mutter,5,0.5\n"), ImportFormat.CSV);
+
+        assertEquals(2, response.getImported());
+        assertEquals(1, response.getUpdated());
+        assertEquals("Schraube M8", existing.getName());
+        assertEquals(40, existing.getQuantity());
+        ArgumentCaptor<Product> persisted = ArgumentCaptor.forClass(Product.class);
+        verify(entityManager).persist(persisted.capture());
+        assertNull(persisted.getValue().getId());
+        verify(countEstimator).recordCreated(1);
+        verify(reservations).refreshAll();
+        verify(productCache).evictAll(List.of(7L));
+        verify(ledger).append(List.of(
+                new InventoryLedger.Movement(7L, 39, MovementReason.IMPORT),
+                new InventoryLedger.Movement(null, 5, MovementReason.IMPORT)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void importCsv_shouldNotLowerStockThatIsReserved() throws Exception {
+        Product reserved = product(7L, 10);
+        Product free = product(8L, 10);
+        TypedQuery<Product> query = mock(TypedQuery.class);
+        when(entityManager.createQuery(anyString(), eq(Product.class))).thenReturn(query);
+        when(query.setParameter(eq("ids"), any())).thenReturn(query);
+        when(query.getResultStream()).thenReturn(Stream.of(reserved, free));
+        when(reservations.withdraw(7L, 6)).thenThrow(new InsufficientStockException(7L, -6));
+        when(reservations.withdraw(8L, 6)).thenReturn(true);
+
+        ProductImportResponse response = service.importProducts(
+                body("id,name,quantity,price\n7,Schraube,4,1.0\n8,Mutter,4,1.0\n"), ImportFormat.CSV);
+
+        assertEquals(1, response.getImported());
+        assertEquals(1, response.getFailed());
+        assertEquals(2, response.getErrors().get(0).line());
+        assertTrue(response.getErrors().get(0).message().startsWith("quantity:"));
+        assertEquals(10, reserved.getQuantity());
+        assertEquals(4, free.getQuantity());
+        verify(productCache).evictAll(List.of(8L));
+        verify(ledger).append(List.of(new InventoryLedger.Movement(8L, -6, MovementReason.IMPORT)));
+    }
+
+    @Test
+    void importCsv_shouldRequireHeaderColumns() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.importProducts(body("name,price\nSchraube,1.0\n"), ImportFormat.CSV));
+    }
+
+    @Test
+    void fromContentType_shouldIgnoreParameters() {
+        assertEquals(ImportFormat.CSV, ImportFormat.fromContentType("text/csv; charset=UTF-8"));
+        assertThrows(IllegalArgumentException.class, () -> ImportFormat.fromContentType("application/json"));
+    }
+
+    private static Product product(Long id, int quantity) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Artikel " + id);
+        product.setQuantity(quantity);
+        product.setPrice(1.0);
+        product.setCreatedAt(LocalDateTime.now());
+        return product;
+    }
+
+    private static ByteArrayInputStream body(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
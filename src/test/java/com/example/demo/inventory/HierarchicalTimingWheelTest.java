@@ -0,0 +1,69 @@
+package com.example.demo.inventory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HierarchicalTimingWheelTest {
+
+    @Test
+    void advance_shouldExpireItemsOnceTheirTickIsReached() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10, 8, 0);
+        assertTrue(wheel.add("a", 25));
+        assertTrue(wheel.add("b", 55));
+        List<String> expired = new ArrayList<>();
+
+        wheel.advance(19, expired::add);
+        assertEquals(List.of(), expired);
+
+        wheel.advance(20, expired::add);
+        assertEquals(List.of("a"), expired);
+
+        wheel.advance(60, expired::add);
+        assertEquals(List.of("a", "b"), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_shouldCascadeItemsBeyondTheFirstLevel() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(10, 4, 0);
+        List<Long> due = List.of(15L, 45L, 170L, 650L, 2_000L);
+        due.forEach(time -> assertTrue(wheel.add(time, time)));
+        List<Long> expired = new ArrayList<>();
+
+        for (long now = 0; now <= 2_100; now += 10) {
+            long tickStart = now;
+            wheel.advance(now, time -> {
+                assertTrue(time >= tickStart && time < tickStart + 10, "expired " + time + " at " + tickStart);
+                expired.add(time);
+            });
+        }
+
+        assertEquals(due, expired);
+    }
+
+    @Test
+    void advance_shouldExpireEverythingAfterALargeJump() {
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(10, 4, 0);
+        for (int i = 1; i <= 100; i++) {
+            wheel.add(i, i * 37L);
+        }
+        List<Integer> expired = new ArrayList<>();
+
+        wheel.advance(1_000_000, expired::add);
+
+        assertEquals(100, expired.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void add_shouldRefuseItemsThatAreAlreadyDue() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10, 8, 100);
+
+        assertFalse(wheel.add("late", 105));
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.demo.inventory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryLedgerTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private InventoryLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new InventoryLedger(jdbcTemplate, Duration.ofMinutes(5));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void append_shouldWriteNonZeroMovementsInOneBatch() {
+        ledger.append(List.of(
+                new InventoryLedger.Movement(1L, 5, MovementReason.RECEIPT),
+                new InventoryLedger.Movement(2L, 0, MovementReason.CORRECTION),
+                new InventoryLedger.Movement(3L, -2, MovementReason.PICK)));
+
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), batch.capture());
+        assertEquals(2, batch.getValue().size());
+        assertEquals(1L, batch.getValue().get(0)[0]);
+        assertEquals("PICK", batch.getValue().get(1)[2]);
+    }
+
+    @Test
+    void append_shouldSkipTheDatabaseWhenNothingMoved() {
+        ledger.record(1L, 0, MovementReason.CORRECTION);
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void quantityAsOf_shouldAddTheTailToTheLatestSnapshot() {
+        Timestamp snapshotAt = Timestamp.valueOf(LocalDateTime.now().minusHours(1));
+        when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class), eq(1L), any(Timestamp.class)))
+                .thenAnswer(invocation -> {
+                    RowMapper<Object> mapper = invocation.getArgument(1);
+                    ResultSet rs = mock(ResultSet.class);
+                    when(rs.getLong(1)).thenReturn(40L);
+                    when(rs.getTimestamp(2)).thenReturn(snapshotAt);
+                    return mapper.mapRow(rs, 0);
+                });
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), eq(1L), eq(snapshotAt), any(Timestamp.class)))
+                .thenReturn(-7L);
+
+        assertEquals(33, ledger.currentQuantity(1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void quantityAsOf_shouldReplayFromTheBeginningWithoutSnapshot() {
+        when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class), eq(1L), any(Timestamp.class)))
+                .thenThrow(new EmptyResultDataAccessException(1));
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class), eq(1L), eq(InventoryLedger.BEGINNING),
+                any(Timestamp.class))).thenReturn(12L);
+
+        assertEquals(12, ledger.quantityAsOf(1L, LocalDateTime.now()));
+    }
+
+    @Test
+    void takeSnapshots_shouldCutSnapshotsBehindTheGracePeriod() {
+        when(jdbcTemplate.update(anyString(), any(Timestamp.class), any(Timestamp.class), eq(InventoryLedger.BEGINNING)))
+                .thenReturn(3);
+
+        assertEquals(3, ledger.takeSnapshots());
+
+        ArgumentCaptor<Timestamp> asOf = ArgumentCaptor.forClass(Timestamp.class);
+        verify(jdbcTemplate).update(anyString(), asOf.capture(), any(Timestamp.class), eq(InventoryLedger.BEGINNING));
+        assertTrue(asOf.getValue().toLocalDateTime().isBefore(LocalDateTime.now().minusMinutes(4)));
+    }
+}
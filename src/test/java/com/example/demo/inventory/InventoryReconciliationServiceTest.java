@@ -0,0 +1,85 @@
+package com.example.demo.inventory;
+
+import com.example.demo.dto.ReconciliationReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryReconciliationServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private InventoryReconciliationService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new InventoryReconciliationService(jdbcTemplate, 3, 10, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void reconcile_shouldCompareEverySliceAndCapReportedMismatches() {
+        Map<String, Object> range = new HashMap<>();
+        range.put("min_id", 1L);
+        range.put("max_id", 25L);
+        when(jdbcTemplate.queryForMap(anyString())).thenReturn(range);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            long from = invocation.getArgument(3);
+            long to = invocation.getArgument(4);
+            for (long id = from; id < to; id++) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getLong(1)).thenReturn(id);
+                when(rs.getLong(2)).thenReturn(10L);
+                when(rs.getLong(3)).thenReturn(id % 10 == 0 ? 9L : 10L);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class),
+                eq(InventoryLedger.BEGINNING), anyLong(), anyLong());
+
+        ReconciliationReport report = service.reconcile();
+
+        assertEquals(25, report.getChecked());
+        assertEquals(2, report.getMismatched());
+        assertEquals(1, report.getMismatches().size());
+        assertTrue(report.isMismatchesTruncated());
+        verify(jdbcTemplate, times(3)).query(anyString(), any(RowCallbackHandler.class),
+                eq(InventoryLedger.BEGINNING), anyLong(), anyLong());
+    }
+
+    @Test
+    void reconcile_shouldReportNothingForAnEmptyCatalog() {
+        Map<String, Object> range = new HashMap<>();
+        range.put("min_id", null);
+        range.put("max_id", null);
+        when(jdbcTemplate.queryForMap(anyString())).thenReturn(range);
+
+        ReconciliationReport report = service.reconcile();
+
+        assertEquals(0, report.getChecked());
+        assertFalse(report.isMismatchesTruncated());
+    }
+}
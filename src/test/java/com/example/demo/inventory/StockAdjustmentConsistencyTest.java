@@ -0,0 +1,220 @@
+package com.example.demo.inventory;
+
+import com.example.demo.ProductRepository;
+import com.example.demo.ProductService;
+import com.example.demo.catalog.CatalogVersion;
+import com.example.demo.catalog.ProductCache;
+import com.example.demo.catalog.ProductChangeFeed;
+import com.example.demo.catalog.ProductCountEstimator;
+import com.example.demo.catalog.ProductEventBus;
+import com.example.demo.catalog.ProductNameIndex;
+import com.example.demo.catalog.ProductNameSearch;
+import com.example.demo.datasource.PrimaryReads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+/**
+ * Mixes {@link ProductService#adjustStock} with reservations and their write-back against
+ * an in-memory H2 {@code product} table and a real {@link InventoryLedger}, checking that
+ * the ledger always agrees with {@code product.quantity}.
+ */
+class StockAdjustmentConsistencyTest {
+
+    private static final long PRODUCT = 1L;
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private StockReservationService reservations;
+    private ProductService productService;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("""
+                CREATE TABLE product (
+                    id BIGINT PRIMARY KEY,
+                    quantity INT NOT NULL,
+                    version BIGINT NOT NULL,
+                    updated_at TIMESTAMP(6)
+                )""");
+        jdbcTemplate.execute("""
+                CREATE TABLE inventory_movement (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    product_id BIGINT NOT NULL,
+                    delta BIGINT NOT NULL,
+                    reason VARCHAR(32) NOT NULL,
+                    occurred_at TIMESTAMP(6) NOT NULL
+                )""");
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        InventoryLedger ledger = new InventoryLedger(jdbcTemplate, Duration.ofMinutes(5));
+
+        ProductRepository repository = mock(ProductRepository.class);
+        when(repository.findQuantityById(anyLong())).thenAnswer(invocation -> jdbcTemplate.queryForList(
+                "SELECT quantity FROM product WHERE id = ?", Integer.class, invocation.<Long>getArgument(0))
+                .stream().findFirst());
+        when(repository.existsById(anyLong())).thenAnswer(invocation ->
+                repository.findQuantityById(invocation.getArgument(0)).isPresent());
+        when(repository.adjustQuantity(anyLong(), anyInt(), any(LocalDateTime.class))).thenAnswer(invocation ->
+                jdbcTemplate.update("UPDATE product SET quantity = quantity + ?, version = version + 1, updated_at = ? "
+                                + "WHERE id = ? AND quantity + ? >= 0",
+                        invocation.<Integer>getArgument(1), Timestamp.valueOf(invocation.<LocalDateTime>getArgument(2)),
+                        invocation.<Long>getArgument(0), invocation.<Integer>getArgument(1)));
+
+        CatalogVersion catalogVersion = mock(CatalogVersion.class);
+        ProductCache productCache = mock(ProductCache.class);
+        ProductEventBus eventBus = mock(ProductEventBus.class);
+        reservations = new StockReservationService(repository, jdbcTemplate, transactionTemplate,
+                new PrimaryReads(transactionTemplate, "", Duration.ZERO), ledger,
+                productCache, catalogVersion, eventBus, new SimpleMeterRegistry(),
+                Duration.ofMinutes(15), Duration.ofHours(2), 100, 512);
+        productService = new ProductService(repository, mock(EntityManager.class), catalogVersion,
+                mock(ProductCountEstimator.class), mock(ProductNameIndex.class), mock(ProductNameSearch.class),
+                reservations, ledger, productCache, mock(ProductChangeFeed.class), eventBus);
+    }
+
+    @Test
+    void adjustStock_shouldNotPickReservedOrConfirmedStock() {
+        stock(10);
+        Reservation confirmed = reservations.reserve(PRODUCT, 5, null).orElseThrow();
+        reservations.confirm(confirmed.getId());
+        reservations.reserve(PRODUCT, 3, null).orElseThrow();
+
+        assertThrows(InsufficientStockException.class, () -> adjustStock(-3));
+        adjustStock(-2);
+
+        assertEquals(3, quantity());
+        assertEquals(quantity(), ledgerSum());
+        assertEquals(0, reservations.availableToPromise(PRODUCT).getAsLong());
+    }
+
+    @Test
+    void adjustStock_shouldReleaseWithdrawnStockWhenTheTransactionRollsBack() {
+        stock(10);
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            productService.adjustStock(PRODUCT, -4);
+            throw new IllegalStateException("rolled back");
+        }));
+
+        assertEquals(10, quantity());
+        assertEquals(10, reservations.availableToPromise(PRODUCT).getAsLong());
+    }
+
+    @Test
+    void confirm_shouldBeRefusedWhenTheRowCannotCoverIt() {
+        stock(5);
+        Reservation reservation = reservations.reserve(PRODUCT, 4, null).orElseThrow();
+        jdbcTemplate.update("UPDATE product SET quantity = 2 WHERE id = ?", PRODUCT);
+        jdbcTemplate.update("INSERT INTO inventory_movement (product_id, delta, reason, occurred_at) VALUES (?, ?, ?, ?)",
+                PRODUCT, -3, MovementReason.CORRECTION.name(), Timestamp.valueOf(LocalDateTime.now()));
+
+        assertThrows(InsufficientStockException.class, () -> reservations.confirm(reservation.getId()));
+
+        assertEquals(2, quantity());
+        assertEquals(quantity(), ledgerSum());
+        assertEquals(2, reservations.availableToPromise(PRODUCT).getAsLong());
+    }
+
+    @Test
+    void concurrentAdjustmentsAndReservations_shouldKeepLedgerAndQuantityInStep() throws Exception {
+        int initial = 500;
+        int threads = 8;
+        int operationsPerThread = 1_000;
+        stock(initial);
+
+        AtomicLong confirmed = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Reservation>>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                List<Reservation> held = new ArrayList<>();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                start.await();
+                for (int i = 0; i < operationsPerThread; i++) {
+                    int choice = random.nextInt(10);
+                    try {
+                        if (choice < 3) {
+                            adjustStock(-(1 + random.nextInt(5)));
+                        } else if (choice < 5) {
+                            adjustStock(1 + random.nextInt(5));
+                        } else if (choice < 8 || held.isEmpty()) {
+                            reservations.reserve(PRODUCT, 1 + random.nextInt(3), null).ifPresent(held::add);
+                        } else {
+                            Reservation reservation = held.remove(held.size() - 1);
+                            if (random.nextBoolean() && reservations.confirm(reservation.getId())) {
+                                confirmed.addAndGet(reservation.getQuantity());
+                            } else {
+                                reservations.release(reservation.getId());
+                            }
+                        }
+                    } catch (InsufficientStockException e) {
+                        // sold out at the moment; keep going
+                    }
+                }
+                return held;
+            }));
+        }
+        start.countDown();
+        for (Future<List<Reservation>> result : results) {
+            result.get(60, TimeUnit.SECONDS).forEach(reservation -> reservations.release(reservation.getId()));
+        }
+        executor.shutdown();
+
+        assertTrue(quantity() >= 0);
+        assertEquals(quantity(), ledgerSum());
+        assertEquals(-confirmed.get(), jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(delta), 0) FROM inventory_movement WHERE reason = 'SALE'", Long.class));
+        assertEquals(quantity(), reservations.availableToPromise(PRODUCT).getAsLong());
+    }
+
+    private void stock(int quantity) {
+        jdbcTemplate.update("INSERT INTO product VALUES (?, ?, 0, NULL)", PRODUCT, quantity);
+        jdbcTemplate.update("INSERT INTO inventory_movement (product_id, delta, reason, occurred_at) VALUES (?, ?, ?, ?)",
+                PRODUCT, quantity, MovementReason.INITIAL_STOCK.name(), Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    /**
+     * Runs like the {@code @Transactional} proxy of the service would.
+     */
+    private void adjustStock(int delta) {
+        transactionTemplate.executeWithoutResult(status -> productService.adjustStock(PRODUCT, delta));
+    }
+
+    private long quantity() {
+        return jdbcTemplate.queryForObject("SELECT quantity FROM product WHERE id = ?", Long.class, PRODUCT);
+    }
+
+    private long ledgerSum() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(SUM(delta), 0) FROM inventory_movement", Long.class);
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.demo.inventory;
+
+import com.example.demo.ProductRepository;
+import com.example.demo.catalog.CatalogVersion;
+import com.example.demo.catalog.ProductCache;
+import com.example.demo.catalog.ProductEvent;
+import com.example.demo.catalog.ProductEventBus;
+import com.example.demo.datasource.PrimaryReads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockReservationServiceTest {
+
+    @Mock
+    private ProductRepository repository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private InventoryLedger ledger;
+
+    @Mock
+    private ProductCache productCache;
+
+    @Mock
+    private ProductEventBus eventBus;
+
+    @Mock
+    private CatalogVersion catalogVersion;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private StockReservationService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new StockReservationService(repository, jdbcTemplate, transactionTemplate,
+                new PrimaryReads(new TransactionTemplate(), "", Duration.ZERO), ledger, productCache, catalogVersion,
+                eventBus, meterRegistry, Duration.ofMinutes(15), Duration.ofHours(2), 100, 512);
+        lenient().doAnswer(invocation -> {
+            Consumer<TransactionStatus> action = invocation.getArgument(0);
+            action.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    void reserve_shouldHoldStockUntilReleased() {
+        when(repository.findQuantityById(1L)).thenReturn(Optional.of(10));
+
+        Reservation reservation = service.reserve(1L, 4, null).orElseThrow();
+
+        assertEquals(6, service.availableToPromise(1L).getAsLong());
+        assertThrows(InsufficientStockException.class, () -> service.reserve(1L, 7, null));
+        assertTrue(service.release(reservation.getId()));
+        assertFalse(service.release(reservation.getId()));
+        assertEquals(10, service.availableToPromise(1L).getAsLong());
+        verify(repository, times(1)).findQuantityById(1L);
+    }
+
+    @Test
+    void reserve_shouldReturnEmptyForUnknownProduct() {
+        when(repository.findQuantityById(99L)).thenReturn(Optional.empty());
+
+        assertTrue(service.reserve(99L, 1, null).isEmpty());
+        assertTrue(service.availableToPromise(99L).isEmpty());
+    }
+
+    @Test
+    void expire_shouldReturnStockOfUnconfirmedReservations() {
+        when(repository.findQuantityById(1L)).thenReturn(Optional.of(5));
+        Reservation reservation = service.reserve(1L, 5, Duration.ofSeconds(1)).orElseThrow();
+
+        service.expire(System.currentTimeMillis() + 2_000);
+
+        assertEquals(Reservation.Status.EXPIRED, reservation.getStatus());
+        assertTrue(service.getReservation(reservation.getId()).isEmpty());
+        assertEquals(5, service.availableToPromise(1L).getAsLong());
+        assertFalse(service.confirm(reservation.getId()));
+    }
+
+    @Test
+    void confirm_shouldDeductTheQuantityFromTheProductRow() {
+        when(repository.findQuantityById(1L)).thenReturn(Optional.of(10), Optional.of(8));
+        Reservation reservation = service.reserve(1L, 2, null).orElseThrow();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1});
+
+        assertTrue(service.confirm(reservation.getId()));
+
+        assertEquals(Reservation.Status.CONFIRMED, reservation.getStatus());
+        assertTrue(service.getReservation(reservation.getId()).isEmpty());
+        verify(ledger).append(List.of(new InventoryLedger.Movement(1L, -2, MovementReason.SALE)));
+        verify(eventBus).publishAll(List.of(ProductEvent.stock(1L, -2)));
+        verify(productCache).evictAll(List.of(1L));
+        verify(catalogVersion).bump();
+        assertEquals(8, service.availableToPromise(1L).getAsLong());
+        assertFalse(service.confirm(reservation.getId()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void confirm_shouldWriteConfirmationsThatArriveDuringAWriteBackInOneBatch() throws Exception {
+        when(repository.findQuantityById(1L)).thenReturn(Optional.of(10));
+        when(repository.findQuantityById(2L)).thenReturn(Optional.of(10));
+        Reservation first = service.reserve(1L, 1, null).orElseThrow();
+        Reservation second = service.reserve(1L, 2, null).orElseThrow();
+        Reservation third = service.reserve(2L, 3, null).orElseThrow();
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> batch = invocation.getArgument(1);
+            if (writing.getCount() > 0) {
+                writing.countDown();
+                assertTrue(resume.await(10, TimeUnit.SECONDS));
+            }
+            return batch.stream().mapToInt(row -> 1).toArray();
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        Future<Boolean> firstConfirmed = executor.submit(() -> service.confirm(first.getId()));
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+        Future<Boolean> secondConfirmed = executor.submit(() -> service.confirm(second.getId()));
+        Future<Boolean> thirdConfirmed = executor.submit(() -> service.confirm(third.getId()));
+        while (meterRegistry.get("inventory.reservations.confirming").gauge().value() < 2) {
+            Thread.sleep(1);
+        }
+        resume.countDown();
+
+        assertTrue(firstConfirmed.get(10, TimeUnit.SECONDS));
+        assertTrue(secondConfirmed.get(10, TimeUnit.SECONDS));
+        assertTrue(thirdConfirmed.get(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        ArgumentCaptor<List<Object[]>> batches = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), batches.capture());
+        assertEquals(1, batches.getAllValues().get(0).size());
+        assertEquals(2, batches.getAllValues().get(1).size());
+        assertEquals(3, meterRegistry.get("inventory.reservations").tag("outcome", "confirmed").counter().count());
+    }
+
+    @Test
+    void confirm_shouldKeepTheReservationHeldWhenTheWriteFails() {
+        when(repository.findQuantityById(1L)).thenReturn(Optional.of(10));
+        Reservation reservation = service.reserve(1L, 3, null).orElseThrow();
+        doThrow(new IllegalStateException("connection lost")).when(jdbcTemplate).batchUpdate(anyString(), anyList());
+
+        assertThrows(IllegalStateException.class, () -> service.confirm(reservation.getId()));
+
+        assertEquals(Reservation.Status.HELD, reservation.getStatus());
+        assertEquals(7, service.availableToPromise(1L).getAsLong());
+        verifyNoInteractions(ledger, eventBus);
+        assertTrue(service.release(reservation.getId()));
+        assertEquals(10, service.availableToPromise(1L).getAsLong());
+    }
+
+    @Test
+    void confirm_shouldRefuseQuantitiesTheRowNoLongerCovers() {
+        when(repository.findQuantityById(1L)).thenReturn(Optional.of(10), Optional.of(1));
+        Reservation reservation = service.reserve(1L, 3, null).orElseThrow();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{0});
+
+        assertThrows(InsufficientStockException.class, () -> service.confirm(reservation.getId()));
+
+        assertEquals(Reservation.Status.RELEASED, reservation.getStatus());
+        assertTrue(service.getReservation(reservation.getId()).isEmpty());
+        verify(ledger).append(List.of());
+        verifyNoInteractions(eventBus, productCache);
+        assertEquals(1, service.availableToPromise(1L).getAsLong());
+        assertEquals(1, meterRegistry.get("inventory.reservations").tag("outcome", "short").counter().count());
+    }
+
+    @Test
+    void withdraw_shouldRejectStockThatIsHeld() {
+        when(repository.findQuantityById(1L)).thenReturn(Optional.of(10));
+        service.reserve(1L, 8, null);
+
+        assertThrows(InsufficientStockException.class, () -> service.withdraw(1L, 3));
+        assertTrue(service.withdraw(1L, 2));
+    }
+
+    @Test
+    void refresh_shouldRereadOnHandQuantity() {
+        when(repository.findQuantityById(1L)).thenReturn(Optional.of(10), Optional.of(20));
+        service.reserve(1L, 4, null);
+
+        service.refresh(1L);
+
+        assertEquals(16, service.availableToPromise(1L).getAsLong());
+    }
+
+    @Test
+    void concurrentReservations_shouldNeverOversell() throws Exception {
+        int stock = 1_000;
+        int threads = 16;
+        int operationsPerThread = 20_000;
+        AtomicInteger row = new AtomicInteger(stock);
+        when(repository.findQuantityById(1L)).thenAnswer(invocation -> Optional.of(row.get()));
+        lenient().when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> batch = invocation.getArgument(1);
+            return batch.stream()
+                    .mapToInt(update -> row.addAndGet(-(int) update[0]) >= 0 ? 1 : 0)
+                    .toArray();
+        });
+
+        AtomicLong confirmed = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Reservation>>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                List<Reservation> held = new ArrayList<>();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                start.await();
+                for (int i = 0; i < operationsPerThread; i++) {
+                    if (!held.isEmpty() && random.nextInt(3) == 0) {
+                        Reservation reservation = held.remove(held.size() - 1);
+                        if (random.nextInt(10) == 0 && service.confirm(reservation.getId())) {
+                            confirmed.addAndGet(reservation.getQuantity());
+                        } else {
+                            assertTrue(service.release(reservation.getId()));
+                        }
+                        continue;
+                    }
+                    try {
+                        service.reserve(1L, 1 + random.nextInt(3), null).ifPresent(held::add);
+                    } catch (InsufficientStockException e) {
+                        // sold out at the moment; keep going
+                    }
+                    assertTrue(service.availableToPromise(1L).getAsLong() >= 0);
+                }
+                return held;
+            }));
+        }
+        start.countDown();
+
+        long stillHeld = 0;
+        for (Future<List<Reservation>> result : results) {
+            for (Reservation reservation : result.get(60, TimeUnit.SECONDS)) {
+                stillHeld += reservation.getQuantity();
+            }
+        }
+        executor.shutdown();
+
+        long available = service.availableToPromise(1L).getAsLong();
+        assertTrue(available >= 0);
+        assertEquals(stock, available + stillHeld + confirmed.get());
+        assertEquals(stock - confirmed.get(), row.get());
+    }
+
+    @Test
+    void reserve_shouldRejectTtlOutsideBounds() {
+        assertThrows(IllegalArgumentException.class, () -> service.reserve(1L, 1, Duration.ofMillis(10)));
+        assertThrows(IllegalArgumentException.class, () -> service.reserve(1L, 1, Duration.ofDays(1)));
+        assertThrows(IllegalArgumentException.class, () -> service.reserve(1L, 0, null));
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void confirm_shouldIgnoreUnknownReservations() {
+        assertFalse(service.confirm(UUID.randomUUID()));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.demo.security;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private BoundedPasswordEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 4, 1, 1, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        encoder.close();
+    }
+
+    @Test
+    void encodeAndMatches_shouldRunOnPoolAndBeTimed() {
+        String hash = encoder.encode("secret");
+
+        assertTrue(encoder.matches("secret", hash));
+        assertFalse(encoder.matches("wrong", hash));
+        assertEquals(1, meterRegistry.get("security.password.hash.time").tag("operation", "encode").timer().count());
+        assertEquals(2, meterRegistry.get("security.password.hash.time").tag("operation", "matches").timer().count());
+        assertEquals(3, meterRegistry.get("security.password.queue.wait").timer().count());
+    }
+
+    @Test
+    void encode_shouldRejectWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SimpleMeterRegistry blockingRegistry = new SimpleMeterRegistry();
+        BoundedPasswordEncoder blocking = new BoundedPasswordEncoder(new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return true;
+            }
+        }, 4, 1, 1, blockingRegistry);
+        try {
+            Thread.ofVirtual().start(() -> blocking.encode("running"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Thread.ofVirtual().start(() -> blocking.encode("queued"));
+            waitUntilQueued(blockingRegistry);
+
+            assertThrows(RejectedExecutionException.class, () -> blocking.encode("rejected"));
+        } finally {
+            release.countDown();
+            blocking.close();
+        }
+    }
+
+    @Test
+    void upgradeEncoding_shouldOnlyAskForRehashWhenCostIsLower() {
+        try (BoundedPasswordEncoder stronger = new BoundedPasswordEncoder(new BCryptPasswordEncoder(5), 5, 1, 1,
+                new SimpleMeterRegistry())) {
+            assertTrue(stronger.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret")));
+            assertFalse(stronger.upgradeEncoding(new BCryptPasswordEncoder(5).encode("secret")));
+        }
+        assertFalse(encoder.upgradeEncoding(new BCryptPasswordEncoder(5).encode("secret")));
+    }
+
+    @Test
+    void strengthOf_shouldReadCostFromHash() {
+        assertEquals(4, BCryptStrength.of(new BCryptPasswordEncoder(4).encode("secret")));
+        assertEquals(-1, BCryptStrength.of("plain"));
+        assertEquals(-1, BCryptStrength.of(null));
+    }
+
+    @Test
+    void calibrate_shouldStayWithinBounds() {
+        assertEquals(4, BCryptStrength.calibrate(Duration.ZERO, 4, 8));
+        assertEquals(6, BCryptStrength.calibrate(Duration.ofHours(1), 4, 6));
+        assertThrows(IllegalArgumentException.class, () -> BCryptStrength.calibrate(Duration.ZERO, 8, 4));
+    }
+
+    private static void waitUntilQueued(SimpleMeterRegistry registry) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (registry.get("security.password.queue.depth").gauge().value() < 1) {
+            assertTrue(System.nanoTime() < deadline, "second hash was never queued");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.demo.security;
+
+import com.example.demo.user.Role;
+import com.example.demo.user.SecurityEpochs;
+import com.example.demo.user.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class JwtAuthFilterTest {
+
+    private JwtService jwtService;
+    private UserDetailsService userDetailsService;
+    private SecurityEpochs securityEpochs;
+    private TokenRevocations tokenRevocations;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        jwtService = new JwtService(new SimpleMeterRegistry(),
+                "test-secret-key-for-jwt-authentication-minimum-32-chars", 3_600_000L, 86_400_000L, 100);
+        userDetailsService = mock(UserDetailsService.class);
+        securityEpochs = mock(SecurityEpochs.class);
+        tokenRevocations = mock(TokenRevocations.class);
+        user = User.builder()
+                .id(7L)
+                .username("alice")
+                .password("encoded")
+                .securityEpoch(2)
+                .isActive(true)
+                .roles(List.of(Role.builder().name(Role.ROLE_ADMIN).build()))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void statelessMode_shouldAuthenticateFromClaimsWithoutLoadingUser() throws Exception {
+        when(securityEpochs.isCurrent(7L, 2L)).thenReturn(true);
+
+        Authentication authentication = filter(true, jwtService.generateToken(user));
+
+        assertNotNull(authentication);
+        assertEquals(new TokenPrincipal(7L, "alice"), authentication.getPrincipal());
+        assertEquals("alice", authentication.getName());
+        assertEquals(List.of(new SimpleGrantedAuthority("ROLE_ADMIN")), List.copyOf(authentication.getAuthorities()));
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void statelessMode_shouldRejectTokenIssuedBeforeSecurityChange() throws Exception {
+        when(securityEpochs.isCurrent(7L, 2L)).thenReturn(false);
+
+        assertNull(filter(true, jwtService.generateToken(user)));
+        verifyNoInteractions(userDetailsService);
+    }
+
+    @Test
+    void statelessMode_shouldNotAcceptRefreshTokens() throws Exception {
+        when(userDetailsService.loadUserByUsername("alice")).thenReturn(user);
+
+        assertNull(filter(true, jwtService.generateRefreshToken(user)));
+        verifyNoInteractions(securityEpochs);
+    }
+
+    @Test
+    void defaultMode_shouldLoadUser() throws Exception {
+        when(userDetailsService.loadUserByUsername("alice")).thenReturn(user);
+
+        Authentication authentication = filter(false, jwtService.generateToken(user));
+
+        assertNotNull(authentication);
+        assertSame(user, authentication.getPrincipal());
+        verify(securityEpochs, never()).isCurrent(any(), anyLong());
+    }
+
+    @Test
+    void revokedToken_shouldNotAuthenticateInEitherMode() throws Exception {
+        String token = jwtService.generateToken(user);
+        when(tokenRevocations.isRevoked(jwtService.extractTokenId(token))).thenReturn(true);
+
+        assertNull(filter(true, token));
+        assertNull(filter(false, token));
+        verifyNoInteractions(userDetailsService, securityEpochs);
+    }
+
+    private Authentication filter(boolean stateless, String token) throws Exception {
+        JwtAuthFilter filter = new JwtAuthFilter(jwtService, userDetailsService, securityEpochs, tokenRevocations, stateless);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users");
+        request.addHeader("Authorization", "Bearer " + token);
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
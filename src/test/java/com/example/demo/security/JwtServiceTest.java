@@ -0,0 +1,107 @@
+package com.example.demo.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceTest {
+
+    private static final String SECRET = "test-secret-key-for-jwt-authentication-minimum-32-chars";
+
+    private SimpleMeterRegistry meterRegistry;
+    private JwtService jwtService;
+    private UserDetails user;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        jwtService = new JwtService(meterRegistry, SECRET, 3_600_000L, 86_400_000L, 100);
+        user = User.withUsername("alice").password("x")
+                .authorities(new SimpleGrantedAuthority("ROLE_ADMIN")).build();
+    }
+
+    @Test
+    void verify_shouldReturnClaimsOfIssuedToken() {
+        String token = jwtService.generateToken(user);
+
+        Claims claims = jwtService.verify(token);
+
+        assertEquals("alice", claims.getSubject());
+        assertEquals(List.of("ADMIN"), jwtService.extractRoles(claims));
+        assertTrue(jwtService.isTokenValid(claims, user));
+    }
+
+    @Test
+    void verify_shouldParseRepeatedTokenOnlyOnce() {
+        String token = jwtService.generateToken(user);
+
+        Claims first = jwtService.verify(token);
+        Claims second = jwtService.verify(token);
+        jwtService.extractUsername(token);
+
+        assertSame(first, second);
+        assertEquals(1, jwtService.cachedTokens());
+        assertEquals(2, meterRegistry.get("cache.gets").tag("cache", JwtService.CACHE_NAME).tag("result", "hit")
+                .functionCounter().count());
+    }
+
+    @Test
+    void verify_shouldRejectTokenSignedWithAnotherKey() {
+        JwtService other = new JwtService(new SimpleMeterRegistry(),
+                "another-secret-key-for-jwt-authentication-minimum-32-chars", 3_600_000L, 86_400_000L, 100);
+        String forged = other.generateToken(user);
+
+        assertThrows(SignatureException.class, () -> jwtService.verify(forged));
+        assertEquals(0, jwtService.cachedTokens());
+    }
+
+    @Test
+    void verify_shouldRejectExpiredTokenWithoutCachingIt() {
+        JwtService shortLived = new JwtService(new SimpleMeterRegistry(), SECRET, -1_000L, 86_400_000L, 100);
+        String expired = shortLived.generateToken(user);
+
+        assertThrows(ExpiredJwtException.class, () -> jwtService.verify(expired));
+        assertEquals(0, jwtService.cachedTokens());
+    }
+
+    @Test
+    void generateToken_shouldCarryUserIdAndSecurityEpochOfUser() {
+        com.example.demo.user.User entity = com.example.demo.user.User.builder()
+                .id(7L).username("alice").password("x").securityEpoch(3).roles(List.of()).build();
+
+        Claims claims = jwtService.verify(jwtService.generateToken(entity));
+
+        assertEquals(7L, jwtService.extractUserId(claims));
+        assertEquals(3L, jwtService.extractSecurityEpoch(claims));
+        assertNull(jwtService.extractUserId(jwtService.verify(jwtService.generateToken(user))));
+        assertNull(jwtService.extractUserId(jwtService.verify(jwtService.generateRefreshToken(entity))));
+        assertEquals(3L, jwtService.extractSecurityEpoch(jwtService.generateRefreshToken(entity)));
+    }
+
+    @Test
+    void generateToken_shouldGiveEveryTokenItsOwnId() {
+        Long access = jwtService.extractTokenId(jwtService.generateToken(user));
+        Long refresh = jwtService.extractTokenId(jwtService.generateRefreshToken(user));
+
+        assertNotNull(access);
+        assertNotNull(refresh);
+        assertNotEquals(access, refresh);
+    }
+
+    @Test
+    void isTokenValid_shouldRejectTokenOfAnotherUser() {
+        UserDetails bob = User.withUsername("bob").password("x").authorities(List.of()).build();
+
+        assertFalse(jwtService.isTokenValid(jwtService.generateToken(user), bob));
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.demo.security;
+
+import com.example.demo.cache.CacheInvalidationBus;
+import com.example.demo.datasource.PrimaryReads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TokenRevocationsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private RevokedTokenRepository repository;
+    private CacheInvalidationBus invalidationBus;
+    private TokenRevocations revocations;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        repository = mock(RevokedTokenRepository.class);
+        invalidationBus = mock(CacheInvalidationBus.class);
+        revocations = new TokenRevocations(repository, new PrimaryReads(new TransactionTemplate(), "", Duration.ZERO),
+                invalidationBus, meterRegistry, 1_000, 0.01);
+    }
+
+    @Test
+    void isRevoked_shouldCheckTableUntilFilterIsBuilt() {
+        when(repository.existsById(1L)).thenReturn(true);
+
+        assertTrue(revocations.isRevoked(1L));
+        assertEquals(1, checks("unfiltered"));
+    }
+
+    @Test
+    void isRevoked_shouldAnswerUnrevokedTokensWithoutTable() {
+        when(repository.findUnexpiredJtis(any())).thenReturn(List.of(1L, 2L));
+        revocations.rebuild();
+
+        for (long jti = 1_000; jti < 1_100; jti++) {
+            revocations.isRevoked(jti);
+        }
+
+        verify(repository, never()).existsById(anyLong());
+        assertEquals(100, checks("negative"));
+    }
+
+    @Test
+    void isRevoked_shouldConfirmPositivesAgainstTable() {
+        when(repository.findUnexpiredJtis(any())).thenReturn(List.of(1L));
+        when(repository.existsById(1L)).thenReturn(true);
+        revocations.rebuild();
+
+        assertTrue(revocations.isRevoked(1L));
+        assertFalse(revocations.isRevoked(null));
+        assertEquals(1, checks("revoked"));
+    }
+
+    @Test
+    void revoke_shouldStoreRememberAndPublish() {
+        revocations.rebuild();
+        Instant expiresAt = Instant.now().plus(1, ChronoUnit.HOURS);
+
+        revocations.revoke(42L, expiresAt);
+
+        verify(repository).save(argThat((RevokedToken token) -> token.getJti() == 42L));
+        verify(invalidationBus).publish(TokenRevocations.REGION, List.of(42L));
+        when(repository.existsById(42L)).thenReturn(true);
+        assertTrue(revocations.isRevoked(42L));
+    }
+
+    @Test
+    void revoke_shouldIgnoreExpiredTokens() {
+        revocations.revoke(42L, Instant.now().minusSeconds(1));
+
+        verify(repository, never()).save(any());
+        verify(invalidationBus, never()).publish(any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void revocationFromOtherNode_shouldBeAddedToFilter() {
+        ArgumentCaptor<Consumer<Collection<Long>>> subscriber = ArgumentCaptor.forClass(Consumer.class);
+        verify(invalidationBus).subscribe(eq(TokenRevocations.REGION), subscriber.capture());
+        revocations.rebuild();
+
+        subscriber.getValue().accept(List.of(42L));
+        when(repository.existsById(42L)).thenReturn(true);
+
+        assertTrue(revocations.isRevoked(42L));
+    }
+
+    @Test
+    void denylist_shouldBeReadOnThePrimary() {
+        PrimaryReads primaryReads = mock(PrimaryReads.class);
+        when(primaryReads.read(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        revocations = new TokenRevocations(repository, primaryReads, invalidationBus, meterRegistry, 1_000, 0.01);
+        when(repository.findUnexpiredJtis(any())).thenReturn(List.of(1L));
+        when(repository.existsById(1L)).thenReturn(true);
+
+        revocations.rebuild();
+        assertTrue(revocations.isRevoked(1L));
+
+        verify(primaryReads, times(3)).read(any());
+    }
+
+    private long checks(String result) {
+        return meterRegistry.get("jwt.revocation.checks").tag("result", result).timer().count();
+    }
+}
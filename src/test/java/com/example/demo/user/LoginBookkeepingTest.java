@@ -0,0 +1,151 @@
+package com.example.demo.user;
+
+import com.example.demo.cache.CacheInvalidationBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs the write-back against an in-memory H2 {@code users} table.
+ */
+class LoginBookkeepingTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private SecurityEpochs securityEpochs;
+    private CacheInvalidationBus invalidationBus;
+    private SimpleMeterRegistry meterRegistry;
+    private LoginBookkeeping bookkeeping;
+
+    @BeforeEach
+    void setUp() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("""
+                CREATE TABLE users (
+                    id BIGINT PRIMARY KEY,
+                    username VARCHAR(50) NOT NULL UNIQUE,
+                    failed_login_attempts INT NOT NULL,
+                    is_locked BOOLEAN NOT NULL,
+                    security_epoch BIGINT NOT NULL,
+                    last_login TIMESTAMP(6)
+                )""");
+        jdbcTemplate.update("INSERT INTO users VALUES (1, 'alice', 3, FALSE, 0, NULL)");
+        securityEpochs = mock(SecurityEpochs.class);
+        invalidationBus = mock(CacheInvalidationBus.class);
+        meterRegistry = new SimpleMeterRegistry();
+        bookkeeping = new LoginBookkeeping(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)),
+                securityEpochs, invalidationBus, meterRegistry);
+    }
+
+    @Test
+    void flush_shouldCoalesceFailuresIntoOneRelativeUpdate() {
+        bookkeeping.recordFailure("alice");
+        assertEquals(1, unflushed());
+
+        bookkeeping.flush();
+
+        Map<String, Object> row = alice();
+        assertEquals(4, row.get("FAILED_LOGIN_ATTEMPTS"));
+        assertEquals(false, row.get("IS_LOCKED"));
+        assertEquals(0L, row.get("SECURITY_EPOCH"));
+        assertEquals(0, unflushed());
+        verify(securityEpochs).evict(1L);
+        verify(invalidationBus).publish(UserService.CACHE_REGION, List.of(1L));
+    }
+
+    @Test
+    void flush_shouldLockAndBumpEpochWhenLimitIsReached() {
+        bookkeeping.recordFailure("alice");
+        bookkeeping.recordFailure("alice");
+
+        bookkeeping.flush();
+
+        Map<String, Object> row = alice();
+        assertEquals(5, row.get("FAILED_LOGIN_ATTEMPTS"));
+        assertEquals(true, row.get("IS_LOCKED"));
+        assertEquals(1L, row.get("SECURITY_EPOCH"));
+    }
+
+    @Test
+    void flush_shouldResetCounterAndKeepFailuresAfterSuccess() {
+        bookkeeping.recordFailure("alice");
+        bookkeeping.recordSuccess("alice");
+        bookkeeping.recordFailure("alice");
+
+        bookkeeping.flush();
+
+        Map<String, Object> row = alice();
+        assertEquals(1, row.get("FAILED_LOGIN_ATTEMPTS"));
+        assertNotNull(row.get("LAST_LOGIN"));
+    }
+
+    @Test
+    void flush_shouldNotTouchFailuresOrCachesForSuccessOnly() {
+        bookkeeping.recordSuccess("alice");
+
+        bookkeeping.flush();
+
+        assertEquals(0, alice().get("FAILED_LOGIN_ATTEMPTS"));
+        assertNotNull(alice().get("LAST_LOGIN"));
+        verifyNoInteractions(securityEpochs, invalidationBus);
+    }
+
+    @Test
+    void flush_shouldKeepOutcomesWhenWriteFails() {
+        bookkeeping.recordFailure("alice");
+        jdbcTemplate.execute("ALTER TABLE users RENAME TO users_moved");
+
+        bookkeeping.flush();
+        assertEquals(1, unflushed());
+
+        jdbcTemplate.execute("ALTER TABLE users_moved RENAME TO users");
+        bookkeeping.flush();
+
+        assertEquals(4, alice().get("FAILED_LOGIN_ATTEMPTS"));
+        assertEquals(0, unflushed());
+    }
+
+    @Test
+    void applyLockout_shouldLockUserWhoseUnwrittenFailuresReachLimit() {
+        User user = User.builder().id(1L).username("alice").failedLoginAttempts(3).build();
+        bookkeeping.recordFailure("alice");
+        bookkeeping.applyLockout(user);
+        assertFalse(user.isLocked());
+
+        bookkeeping.recordFailure("alice");
+        bookkeeping.applyLockout(user);
+
+        assertTrue(user.isLocked());
+    }
+
+    @Test
+    void discard_shouldDropUnwrittenOutcomes() {
+        bookkeeping.recordFailure("alice");
+
+        bookkeeping.discard("alice");
+        bookkeeping.flush();
+
+        assertEquals(3, alice().get("FAILED_LOGIN_ATTEMPTS"));
+    }
+
+    private Map<String, Object> alice() {
+        return jdbcTemplate.queryForMap("SELECT * FROM users WHERE id = 1");
+    }
+
+    private double unflushed() {
+        return meterRegistry.get("users.logins.unflushed").gauge().value();
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.demo.user;
+
+import com.example.demo.cache.CacheInvalidationBus;
+import com.example.demo.datasource.PrimaryReads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class SecurityEpochsTest {
+
+    private UserRepository userRepository;
+    private CacheInvalidationBus invalidationBus;
+    private SecurityEpochs securityEpochs;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        invalidationBus = mock(CacheInvalidationBus.class);
+        securityEpochs = new SecurityEpochs(userRepository, new PrimaryReads(new TransactionTemplate(), "", Duration.ZERO),
+                invalidationBus, new SimpleMeterRegistry(), 100, Duration.ofSeconds(30));
+    }
+
+    @Test
+    void isCurrent_shouldLoadEpochOnceAndCompare() {
+        when(userRepository.findSecurityEpochById(1L)).thenReturn(Optional.of(3L));
+
+        assertTrue(securityEpochs.isCurrent(1L, 3));
+        assertTrue(securityEpochs.isCurrent(1L, 4));
+        assertFalse(securityEpochs.isCurrent(1L, 2));
+
+        verify(userRepository, times(1)).findSecurityEpochById(1L);
+    }
+
+    @Test
+    void isCurrent_shouldRejectTokensOfDeletedUsers() {
+        when(userRepository.findSecurityEpochById(1L)).thenReturn(Optional.empty());
+
+        assertFalse(securityEpochs.isCurrent(1L, 0));
+    }
+
+    @Test
+    void evict_shouldReloadEpochOnNextCheck() {
+        when(userRepository.findSecurityEpochById(1L)).thenReturn(Optional.of(0L), Optional.of(1L));
+        assertTrue(securityEpochs.isCurrent(1L, 0));
+
+        securityEpochs.evict(1L);
+
+        assertFalse(securityEpochs.isCurrent(1L, 0));
+        verify(userRepository, times(2)).findSecurityEpochById(1L);
+    }
+
+    @Test
+    void isCurrent_shouldReloadEpochOnceTheTtlHasPassed() throws InterruptedException {
+        securityEpochs = new SecurityEpochs(userRepository, new PrimaryReads(new TransactionTemplate(), "", Duration.ZERO),
+                invalidationBus, new SimpleMeterRegistry(), 100, Duration.ofMillis(50));
+        when(userRepository.findSecurityEpochById(1L)).thenReturn(Optional.of(0L), Optional.of(1L));
+        assertTrue(securityEpochs.isCurrent(1L, 0));
+
+        Thread.sleep(100);
+
+        assertFalse(securityEpochs.isCurrent(1L, 0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void invalidationFromOtherNode_shouldReloadEpoch() {
+        ArgumentCaptor<Consumer<Collection<Long>>> subscriber = ArgumentCaptor.forClass(Consumer.class);
+        verify(invalidationBus).subscribe(eq(UserService.CACHE_REGION), subscriber.capture());
+        when(userRepository.findSecurityEpochById(1L)).thenReturn(Optional.of(0L), Optional.of(1L));
+        assertTrue(securityEpochs.isCurrent(1L, 0));
+
+        subscriber.getValue().accept(List.of(1L));
+
+        assertFalse(securityEpochs.isCurrent(1L, 0));
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.demo.user;
 
+import com.example.demo.cache.CacheInvalidationBus;
 import com.example.demo.user.dto.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -36,6 +37,15 @@ class UserServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private CacheInvalidationBus invalidationBus;
+
+    @Mock
+    private SecurityEpochs securityEpochs;
+
+    @Mock
+    private LoginBookkeeping loginBookkeeping;
+
     @InjectMocks
     private UserService userService;
 
@@ -286,6 +296,18 @@ class UserServiceTest {
         });
     }
 
+    @Test
+    void updatePassword_shouldStoreRehashedPasswordWithoutRevokingTokens() {
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+        when(userRepository.save(testUser)).thenReturn(testUser);
+
+        UserDetails result = userService.updatePassword(testUser, "rehashed_password");
+
+        assertEquals("rehashed_password", result.getPassword());
+        verify(userRepository).save(testUser);
+        verify(userRepository, never()).bumpSecurityEpoch(any());
+    }
+
     @Test
     void updateUserRoles_shouldUpdateSuccessfully() {
         List<Long> roleIds = Arrays.asList(1L, 2L);
@@ -298,6 +320,8 @@ class UserServiceTest {
 
         assertNotNull(result);
         verify(userRepository, times(1)).save(any(User.class));
+        verify(userRepository).bumpSecurityEpoch(1L);
+        verify(securityEpochs).evict(1L);
     }
 
     @Test
@@ -320,6 +344,9 @@ class UserServiceTest {
         User result = userService.setUserLockStatus(1L, true);
 
         assertTrue(result.isLocked());
+        verify(userRepository).bumpSecurityEpoch(1L);
+        verify(securityEpochs).evict(1L);
+        verify(invalidationBus, times(1)).publish(UserService.CACHE_REGION, List.of(1L));
     }
 
     @Test
@@ -344,6 +371,7 @@ class UserServiceTest {
         User result = userService.setUserActiveStatus(1L, false);
 
         assertFalse(result.isActive());
+        verify(userRepository).bumpSecurityEpoch(1L);
     }
 
     @Test
@@ -353,6 +381,8 @@ class UserServiceTest {
 
         assertDoesNotThrow(() -> userService.deleteUser(1L));
         verify(userRepository, times(1)).deleteById(1L);
+        verify(securityEpochs).evict(1L);
+        verify(invalidationBus, times(1)).publish(UserService.CACHE_REGION, List.of(1L));
     }
 
     @Test
@@ -365,41 +395,39 @@ class UserServiceTest {
     }
 
     @Test
-    void recordSuccessfulLogin_shouldResetAttemptsAndUpdateLastLogin() {
-        testUser.setFailedLoginAttempts(3);
+    void recordSuccessfulLogin_shouldBeWrittenBehind() {
+        userService.recordSuccessfulLogin("testuser");
 
-        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
+        verify(loginBookkeeping).recordSuccess("testuser");
+        verifyNoInteractions(userRepository);
+    }
 
-        userService.recordSuccessfulLogin("testuser");
+    @Test
+    void recordFailedLoginAttempt_shouldBeWrittenBehind() {
+        userService.recordFailedLoginAttempt("testuser");
 
-        assertEquals(0, testUser.getFailedLoginAttempts());
-        assertNotNull(testUser.getLastLogin());
-        verify(userRepository, times(1)).save(testUser);
+        verify(loginBookkeeping).recordFailure("testuser");
+        verifyNoInteractions(userRepository);
     }
 
     @Test
-    void recordFailedLoginAttempt_shouldIncreaseAttempts() {
+    void loadUserByUsername_shouldApplyUnwrittenLockout() {
         when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
-        when(userRepository.save(any(User.class))).thenReturn(testUser);
 
-        userService.recordFailedLoginAttempt("testuser");
+        userService.loadUserByUsername("testuser");
 
-        assertEquals(1, testUser.getFailedLoginAttempts());
-        verify(userRepository, times(1)).save(testUser);
+        verify(loginBookkeeping).applyLockout(testUser);
     }
 
     @Test
-    void recordFailedLoginAttempt_shouldLockUserAfter5Attempts() {
-        testUser.setFailedLoginAttempts(4);
-
-        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(testUser));
+    void setUserLockStatus_shouldDiscardUnwrittenFailuresOnUnlock() {
+        testUser.setLocked(true);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(testUser));
         when(userRepository.save(any(User.class))).thenReturn(testUser);
 
-        userService.recordFailedLoginAttempt("testuser");
+        userService.setUserLockStatus(1L, false);
 
-        assertEquals(5, testUser.getFailedLoginAttempts());
-        assertTrue(testUser.isLocked());
+        verify(loginBookkeeping).discard("testuser");
     }
 
     @Test